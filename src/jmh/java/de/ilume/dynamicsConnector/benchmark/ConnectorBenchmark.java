@@ -0,0 +1,131 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.BulkProperties;
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.EntryCacheProperties;
+import de.ilume.dynamicsConnector.FileProperties;
+import de.ilume.dynamicsConnector.MetadataProperties;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.WriteBatchingProperties;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.BulkService;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.EntryCache;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.FetchXmlService;
+import de.ilume.dynamicsConnector.service.FileService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.MetadataCache;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import de.ilume.dynamicsConnector.service.WriteAggregator;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole connector jobs, from the token to the result map, against a local stub of the token
+ * endpoint and the Dataverse Web API.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectorBenchmark {
+
+    private static final String ACCOUNT = "{\"@odata.etag\":\"W/\\\"1000000\\\"\",\"name\":\"Benchmark Account\","
+            + "\"accountid\":\"f9beedd9-d85a-ef11-bfe2-002248d8793d\"}";
+
+    private MockWebServer server;
+    private DynamicsConnectorFunction function;
+    private DynamicsConnectorRequest getAll;
+    private DynamicsConnectorRequest getEntry;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = new MockResponse().setHeader("Content-Type", "application/json");
+                if ("/token".equals(request.getPath())) {
+                    return response.setBody("{\"access_token\":\"benchmark-token\",\"expires_in\":3600}");
+                }
+                if (request.getPath().contains("(")) {
+                    return response.setBody(ACCOUNT);
+                }
+                return response.setBody("{\"value\":[" + ACCOUNT + "]}");
+            }
+        });
+        server.start();
+
+        // the connector addresses the Dataverse environment directly, send everything to the stub instead
+        WebClient webClient = WebClient.builder()
+                .filter((clientRequest, next) -> next.exchange(ClientRequest.from(clientRequest)
+                        .url(UriComponentsBuilder.fromUri(clientRequest.url())
+                                .scheme("http")
+                                .host(server.getHostName())
+                                .port(server.getPort())
+                                .build(true)
+                                .toUri())
+                        .build()))
+                .build();
+
+        ExecuteRequestService executeRequestService = new ExecuteRequestService(webClient);
+        BatchService batchService = new BatchService(executeRequestService, new ObjectMapper());
+        ResultLimiter resultLimiter = new ResultLimiter(new ObjectMapper(), new ResultProperties());
+        function = new DynamicsConnectorFunction(
+                new GenerateTokenService(webClient, new TokenCache(new TokenCacheProperties())),
+                executeRequestService,
+                batchService,
+                new RequestUrls(new DataverseProperties()),
+                new EntryCache(new EntryCacheProperties(), executeRequestService),
+                new BulkService(executeRequestService, new BulkProperties()),
+                resultLimiter,
+                new ChangeTrackingService(executeRequestService, resultLimiter),
+                new FileService(executeRequestService, new FileProperties()),
+                new WriteAggregator(batchService, new ObjectMapper(), new WriteBatchingProperties()),
+                new FetchXmlService(executeRequestService),
+                new MetadataCache(executeRequestService, new MetadataProperties()));
+
+        Authentication authentication = new Authentication("https://camunda.crm16.dynamics.com/", "client",
+                "secret", ".default", server.url("/token").toString());
+        getAll = new DynamicsConnectorRequest(authentication, "accounts", "getAll", List.of(), "",
+                Map.of(), List.of(), null, null, null, null, null, null, null, null);
+        getEntry = new DynamicsConnectorRequest(authentication, "accounts", "getEntry", List.of("name", "accountid"),
+                "f9beedd9-d85a-ef11-bfe2-002248d8793d", Map.of(), List.of(), null, null, null, null, null, null, null, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Object> getAll() {
+        return function.getRequestData(getAll).block();
+    }
+
+    @Benchmark
+    public Map<String, Object> getEntry() {
+        return function.getRequestData(getEntry).block();
+    }
+}
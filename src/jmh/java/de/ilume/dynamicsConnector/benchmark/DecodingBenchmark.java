@@ -0,0 +1,55 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding getAll responses of different sizes: into a String that is parsed afterwards,
+ * straight into a map and into the records of a page.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+@State(Scope.Benchmark)
+public class DecodingBenchmark {
+
+    private static final String URL = "https://camunda.crm16.dynamics.com/api/data/v9.2/accounts";
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
+
+    @Param({"1024", "102400", "10485760"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExecuteRequestService executeRequestService;
+
+    @Setup
+    public void setUp() {
+        executeRequestService = new ExecuteRequestService(
+                StubResponses.webClient(objectMapper, HttpStatus.OK, StubResponses.accounts(size)));
+    }
+
+    @Benchmark
+    public Map<String, Object> string() throws Exception {
+        return objectMapper.readValue(executeRequestService.getRequest(URL, "token").block(), JSON_OBJECT);
+    }
+
+    @Benchmark
+    public Map<String, Object> map() {
+        return executeRequestService.getJson(URL, "token").block();
+    }
+
+    @Benchmark
+    public ValuePage valuePage() {
+        return executeRequestService.getValuePage(URL, "token", null).block();
+    }
+}
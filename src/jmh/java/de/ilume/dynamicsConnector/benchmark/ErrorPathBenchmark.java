@@ -0,0 +1,45 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning error responses of the Dataverse Web API into the exceptions of the connector.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    private static final String URL = "https://camunda.crm16.dynamics.com/api/data/v9.2/accounts(00000000-0000-0000-0000-000000000000)";
+    private static final byte[] ERROR = ("{\"error\":{\"code\":\"0x80040217\",\"message\":"
+            + "\"account With Id = 00000000-0000-0000-0000-000000000000 Does Not Exist\"}}").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"BAD_REQUEST", "NOT_FOUND", "INTERNAL_SERVER_ERROR"})
+    public HttpStatus status;
+
+    private ExecuteRequestService executeRequestService;
+
+    @Setup
+    public void setUp() {
+        executeRequestService = new ExecuteRequestService(StubResponses.webClient(new ObjectMapper(), status, ERROR));
+    }
+
+    @Benchmark
+    public Throwable getJson() {
+        try {
+            executeRequestService.getJson(URL, "token").block();
+        } catch (RuntimeException e) {
+            return e;
+        }
+        throw new IllegalStateException("Expected an error response");
+    }
+}
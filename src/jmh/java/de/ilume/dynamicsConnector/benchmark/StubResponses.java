@@ -0,0 +1,77 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * WebClients answering every request with a fixed response without any network, so that only the
+ * decoding and error handling of the connector are measured.
+ */
+final class StubResponses {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private StubResponses() {
+    }
+
+    /**
+     * Returns a WebClient that answers every request with the given status and body. The body is handed
+     * out in chunks of 8 KB like it is received from the network.
+     */
+    static WebClient webClient(ObjectMapper objectMapper, HttpStatus status, byte[] body) {
+        ExchangeStrategies strategies = ExchangeStrategies.builder()
+                .codecs(configurer -> {
+                    configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    configurer.defaultCodecs().maxInMemorySize(32 * 1024 * 1024);
+                })
+                .build();
+
+        return WebClient.builder()
+                .exchangeStrategies(strategies)
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(status, strategies)
+                        .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                        .body(chunks(body))
+                        .build()))
+                .build();
+    }
+
+    private static Flux<DataBuffer> chunks(byte[] body) {
+        return Flux.range(0, (body.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(body, i * CHUNK_SIZE,
+                        Math.min(CHUNK_SIZE, body.length - i * CHUNK_SIZE)));
+    }
+
+    /**
+     * Builds a getAll response with roughly the given size in bytes.
+     */
+    static byte[] accounts(int size) {
+        StringBuilder body = new StringBuilder(size + 512)
+                .append("{\"@odata.context\":\"https://camunda.crm16.dynamics.com/api/data/v9.2/$metadata#accounts\",\"value\":[");
+        int i = 0;
+        while (body.length() < size) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"@odata.etag\":\"W/\\\"").append(1000000 + i).append("\\\"\",")
+                    .append("\"accountid\":\"f9beedd9-d85a-ef11-bfe2-").append(String.format("%012d", i)).append("\",")
+                    .append("\"name\":\"Benchmark Account ").append(i).append("\",")
+                    .append("\"revenue\":").append(i * 1000.5).append(',')
+                    .append("\"address1_city\":\"Dortmund\",\"statecode\":0}");
+            i++;
+        }
+        return body.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
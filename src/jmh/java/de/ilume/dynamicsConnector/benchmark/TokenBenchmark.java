@@ -0,0 +1,64 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures obtaining an access token from a local token endpoint, once served from the token cache
+ * and once with a request per job.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private MockWebServer server;
+    private GenerateTokenService generateTokenService;
+    private String accessUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"token_type\":\"Bearer\",\"expires_in\":3599,\"access_token\":\"benchmark-token\"}");
+            }
+        });
+        server.start();
+        accessUrl = server.url("/token").toString();
+
+        TokenCacheProperties properties = new TokenCacheProperties();
+        properties.setEnabled(cached);
+        generateTokenService = new GenerateTokenService(WebClient.create(), new TokenCache(properties));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String getToken() {
+        return generateTokenService.getToken("https://camunda.crm16.dynamics.com/", "client", "secret",
+                ".default", accessUrl).block();
+    }
+}
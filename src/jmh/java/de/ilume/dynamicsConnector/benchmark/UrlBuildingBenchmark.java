@@ -0,0 +1,42 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up the cached URLs of an entity set and building the getEntry URL with and without "$select".
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlBuildingBenchmark {
+
+    private static final String BASE = "https://camunda.crm16.dynamics.com/.";
+    private static final String ID = "f9beedd9-d85a-ef11-bfe2-002248d8793d";
+
+    private final RequestUrls requestUrls = new RequestUrls(new DataverseProperties());
+    private final List<String> fields = List.of("name", "accountnumber", "telephone1", "address1_city",
+            "revenue", "statecode", "modifiedon", "primarycontactid");
+
+    @Benchmark
+    public String collection() {
+        return requestUrls.entitySet(BASE, "accounts").collection();
+    }
+
+    @Benchmark
+    public String entry() {
+        return requestUrls.entitySet(BASE, "accounts").entry(ID);
+    }
+
+    @Benchmark
+    public String entryWithSelect() {
+        return requestUrls.entitySet(BASE, "accounts").entry(ID, fields);
+    }
+}
@@ -0,0 +1,29 @@
+package de.ilume.dynamicsConnector;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Settings for bulk writes through CreateMultiple, UpdateMultiple and UpsertMultiple
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "dynamics.connector.bulk")
+public class BulkProperties {
+
+    /**
+     * Records sent per request unless the job sets its own chunk size. Dataverse accepts up to 1000.
+     */
+    @Min(1)
+    @Max(1000)
+    private int chunkSize = 100;
+
+    /**
+     * Chunks of one job sent at the same time.
+     */
+    @Min(1)
+    private int parallelism = 4;
+}
@@ -0,0 +1,196 @@
+package de.ilume.dynamicsConnector;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.transport.HttpDestination;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+/**
+ * Records the duration, status and response size of every token and Dataverse request as well as the
+ * requests in flight and the saturation of the shared Jetty client.
+ *
+ * Requests are tagged with the connector operation taken from the Reactor context (see {@link #operation(String)}),
+ * the entity set taken from the URL, the HTTP method and the status. Token requests mark themselves with the
+ * {@link #CLIENT} attribute.
+ */
+public class ClientMetrics {
+
+    /** Request attribute naming the called service, {@link #DATAVERSE} if absent */
+    public static final String CLIENT = ClientMetrics.class.getName() + ".client";
+    public static final String DATAVERSE = "dataverse";
+    public static final String TOKEN = "token";
+
+    private static final String OPERATION = ClientMetrics.class.getName() + ".operation";
+    private static final String API_PATH = "/api/data/";
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public ClientMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns the Reactor context tagging all requests of a chain with the given connector operation.
+     */
+    public static Context operation(String operation) {
+        return Context.of(OPERATION, operation == null ? NONE : operation);
+    }
+
+    /**
+     * Returns the connector operation of a chain, "none" outside of an operation.
+     */
+    public static String operation(ContextView context) {
+        return context.getOrDefault(OPERATION, NONE);
+    }
+
+    /**
+     * Registers gauges for the connections, queued requests and threads of the given Jetty client, and
+     * counters for the bytes sent and received on its connections.
+     */
+    public void bind(HttpClient httpClient) {
+        ConnectionStatistics statistics = new ConnectionStatistics();
+        httpClient.addBean(statistics);
+        FunctionCounter.builder("dynamics.connector.http.bytes", statistics, ConnectionStatistics::getReceivedBytes)
+                .description("Bytes received on the connections, before responses are decompressed")
+                .baseUnit("bytes")
+                .tag("direction", "received")
+                .register(registry);
+        FunctionCounter.builder("dynamics.connector.http.bytes", statistics, ConnectionStatistics::getSentBytes)
+                .description("Bytes sent on the connections")
+                .baseUnit("bytes")
+                .tag("direction", "sent")
+                .register(registry);
+
+        connectionGauge(httpClient, "active", AbstractConnectionPool::getActiveConnectionCount);
+        connectionGauge(httpClient, "idle", AbstractConnectionPool::getIdleConnectionCount);
+        connectionGauge(httpClient, "pending", AbstractConnectionPool::getPendingConnectionCount);
+        connectionGauge(httpClient, "max", AbstractConnectionPool::getMaxConnectionCount);
+
+        Gauge.builder("dynamics.connector.http.queued", httpClient, client -> client.getDestinations().stream()
+                        .filter(HttpDestination.class::isInstance)
+                        .mapToInt(destination -> ((HttpDestination) destination).getQueuedRequestCount())
+                        .sum())
+                .description("Requests waiting for a connection")
+                .register(registry);
+
+        if (httpClient.getExecutor() instanceof ThreadPool.SizedThreadPool threadPool) {
+            Gauge.builder("dynamics.connector.http.threads", threadPool, ThreadPool::getThreads)
+                    .tag("state", "current")
+                    .register(registry);
+            Gauge.builder("dynamics.connector.http.threads", threadPool, ThreadPool::getIdleThreads)
+                    .tag("state", "idle")
+                    .register(registry);
+            Gauge.builder("dynamics.connector.http.threads", threadPool, ThreadPool.SizedThreadPool::getMaxThreads)
+                    .tag("state", "max")
+                    .register(registry);
+        }
+    }
+
+    private void connectionGauge(HttpClient httpClient, String state, ToIntFunction<AbstractConnectionPool> count) {
+        Gauge.builder("dynamics.connector.http.connections", httpClient, client -> client.getDestinations().stream()
+                        .map(Destination::getConnectionPool)
+                        .filter(AbstractConnectionPool.class::isInstance)
+                        .mapToInt(pool -> count.applyAsInt((AbstractConnectionPool) pool))
+                        .sum())
+                .tag("state", state)
+                .register(registry);
+    }
+
+    /**
+     * Returns the filter measuring each request until its response headers arrive and counting the
+     * bytes of the response body.
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> Mono.deferContextual(context -> {
+            String client = request.attribute(CLIENT).map(String.class::cast).orElse(DATAVERSE);
+            Tags tags = Tags.of(
+                    "client", client,
+                    "operation", context.getOrDefault(OPERATION, NONE),
+                    "entity.set", entitySet(request.url()));
+
+            AtomicInteger active = inFlight.computeIfAbsent(client, key ->
+                    registry.gauge("dynamics.connector.requests.active", Tags.of("client", key), new AtomicInteger()));
+            AtomicReference<String> status = new AtomicReference<>("CANCELLED");
+            Timer.Sample sample = Timer.start(registry);
+            active.incrementAndGet();
+
+            return next.exchange(request)
+                    .doOnNext(response -> status.set(String.valueOf(response.statusCode().value())))
+                    .doOnError(throwable -> status.set(throwable instanceof TimeoutException ? "TIMEOUT" : "IO_ERROR"))
+                    .doFinally(signal -> {
+                        active.decrementAndGet();
+                        sample.stop(Timer.builder("dynamics.connector.requests")
+                                .description("Duration until the response headers of a token or Dataverse request arrive")
+                                .tags(tags)
+                                .tag("method", request.method().name())
+                                .tag("status", status.get())
+                                .publishPercentileHistogram()
+                                .register(registry));
+                    })
+                    .map(response -> countBody(response, tags));
+        });
+    }
+
+    private ClientResponse countBody(ClientResponse response, Tags tags) {
+        DistributionSummary summary = DistributionSummary.builder("dynamics.connector.response.size")
+                .description("Size of the received response bodies")
+                .baseUnit("bytes")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+
+        return response.mutate()
+                .body(body -> {
+                    AtomicLong size = new AtomicLong();
+                    return body
+                            .doOnNext(buffer -> size.addAndGet(buffer.readableByteCount()))
+                            .doOnComplete(() -> summary.record(size.get()));
+                })
+                .build();
+    }
+
+    /**
+     * Returns the entity set addressed by a Web API URL, e.g. "accounts" for
+     * https://org.crm.dynamics.com/api/data/v9.2/accounts(id), or "none" for other URLs.
+     */
+    static String entitySet(URI url) {
+        String path = url.getRawPath();
+        int api = path == null ? -1 : path.indexOf(API_PATH);
+        if (api < 0) {
+            return NONE;
+        }
+        int start = path.indexOf('/', api + API_PATH.length());
+        if (start < 0 || start == path.length() - 1) {
+            return NONE;
+        }
+        int end = start + 1;
+        while (end < path.length() && path.charAt(end) != '(' && path.charAt(end) != '/') {
+            end++;
+        }
+        return path.substring(start + 1, end);
+    }
+}
@@ -0,0 +1,17 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for sharing identical reads that are in flight at the same time
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.coalescing")
+public class CoalescingProperties {
+
+    /**
+     * Whether a read joins an identical read already in flight instead of sending its own request.
+     */
+    private boolean enabled = true;
+}
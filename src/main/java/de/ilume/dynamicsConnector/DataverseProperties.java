@@ -0,0 +1,17 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for addressing the Dataverse Web API
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.dataverse")
+public class DataverseProperties {
+
+    /**
+     * Version of the Web API, appended to the base URL of the environment as /api/data/{version}.
+     */
+    private String apiVersion = "v9.2";
+}
@@ -1,19 +1,44 @@
 package de.ilume.dynamicsConnector;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.dto.Paging;
+import de.ilume.dynamicsConnector.dto.Projection;
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
 import de.ilume.dynamicsConnector.exception.CredentialsException;
+import de.ilume.dynamicsConnector.exception.UnauthorizedException;
+import de.ilume.dynamicsConnector.metadata.EntityMetadata;
+import de.ilume.dynamicsConnector.metadata.RequestSchema;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.ODataLiteral;
+import de.ilume.dynamicsConnector.odata.QueryOptions;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.BulkService;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.EntryCache;
 import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.FetchXmlService;
+import de.ilume.dynamicsConnector.service.FileService;
+import de.ilume.dynamicsConnector.service.MetadataCache;
+import de.ilume.dynamicsConnector.service.WriteAggregator;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
 import io.camunda.connector.api.annotation.OutboundConnector;
 import io.camunda.connector.api.outbound.OutboundConnectorContext;
 import io.camunda.connector.api.outbound.OutboundConnectorFunction;
 import io.camunda.connector.generator.java.annotation.ElementTemplate;
 import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
 import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.extern.apachecommons.CommonsLog;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.*;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,18 +50,23 @@ import org.springframework.stereotype.Component;
  */
 @OutboundConnector(
         name = "IlumeDynamicsConnector",
-        inputVariables = {"authentication", "target", "operation", "fields", "accountId", "requestBody"},
+        inputVariables = {"authentication", "target", "operation", "fields", "accountId", "requestBody", "batchOperations", "paging", "valueOnly", "bulk", "query", "projection", "deltaLink", "file", "fetchXml"},
         type = "getDynamicsData")
 @ElementTemplate(
         id = "ilume.connector.dynamics.v2",
         name = "IlumeDynamicsConnector",
-        version = 4,
+        version = 5,
         description = "Connects to a microsoft dataverse instance and runs different request.",
         icon = "ilume_logo.svg",
         documentationRef = "https://bitbucket.org/sma-bitbucket-cloud/camunda-8-bedarfsanforderung/src/master/CustomPostgreSqlConnector/README.md",
         propertyGroups = {
                 @ElementTemplate.PropertyGroup(id = "authenticationGroup", label = "Enter Authentication Details"),
-                @ElementTemplate.PropertyGroup(id = "operationGroup", label = "HTTP Endpoint")
+                @ElementTemplate.PropertyGroup(id = "operationGroup", label = "HTTP Endpoint"),
+                @ElementTemplate.PropertyGroup(id = "queryGroup", label = "Query"),
+                @ElementTemplate.PropertyGroup(id = "pagingGroup", label = "Paging"),
+                @ElementTemplate.PropertyGroup(id = "bulkGroup", label = "Bulk Write"),
+                @ElementTemplate.PropertyGroup(id = "fileGroup", label = "File"),
+                @ElementTemplate.PropertyGroup(id = "resultGroup", label = "Result")
         },
         inputDataClass = DynamicsConnectorRequest.class)
 @CommonsLog(topic = "jsonEncoderLogger")
@@ -45,140 +75,382 @@ import org.springframework.stereotype.Component;
 @Component
 public class DynamicsConnectorFunction implements OutboundConnectorFunction {
 
+    /**
+     * Upper bound for a single job, so that an unresponsive environment cannot hold a job worker forever
+     */
+    private static final Duration EXECUTION_TIMEOUT = Duration.ofMinutes(5);
+
+    private static final Map<String, String> LEGACY_TARGETS = Map.of("account", "accounts");
+
+    /**
+     * Operations returning records, the projection of the job applies to their result
+     */
+    private static final Set<String> CHECKED_OPERATIONS = Set.of("getAll", "getEntry", "createEntry", "updateEntry", "getChanges");
+    private static final Set<String> ENTRY_OPERATIONS = Set.of("getEntry", "updateEntry", "deleteEntry", "uploadFile", "downloadFile");
+    private static final Set<String> RECORD_OPERATIONS = Set.of("getAll", "getEntry", "createEntry", "updateEntry", "deleteEntry", "getChanges", "fetchXml");
+
     private GenerateTokenService generateTokenService;
     private ExecuteRequestService executeRequestService;
+    private BatchService batchService;
+    private RequestUrls requestUrls;
+    private EntryCache entryCache;
+    private BulkService bulkService;
+    private ResultLimiter resultLimiter;
+    private ChangeTrackingService changeTrackingService;
+    private FileService fileService;
+    private WriteAggregator writeAggregator;
+    private FetchXmlService fetchXmlService;
+    private MetadataCache metadataCache;
 
     /**
      * Automatically executed when connector is triggered.
-     * Binds Workflow variables present in parameter to {@link DynamicsConnectorRequest} Object
+     * Binds Workflow variables present in parameter to {@link DynamicsConnectorRequest} Object.
+     * The connector SDK expects a synchronous result, so this is the only place where the
+     * reactive request chain is blocked on.
      * @param context Context of the workflow, contains variables
      * @return Object containing any Information returned by this connector*/
     @Override
     public Object execute(OutboundConnectorContext context) throws Exception {
         final var connectorRequest = context.bindVariables(DynamicsConnectorRequest.class);
-        return getRequestData(connectorRequest);
+        return getRequestData(connectorRequest).block(EXECUTION_TIMEOUT);
     }
 
     /**
      * Takes a {@link DynamicsConnectorRequest} and returns the dataset of the request depending
-     * on the selected operation present in the Request Object
+     * on the selected operation present in the Request Object. Token acquisition, the request itself
+     * and the mapping of the response are composed into a single chain, so no thread is held while
+     * waiting for the token endpoint or the Dataverse Web API.
      *
      * @param connectorRequest Request Object containing required Information
      * @return Depending on the selected operation inside the Request Object an API request is
-     * made before the corresponding response is returned and its body send to the camunda process
-     * @throws Exception Should an error occur during the request process a fitting exception is thrown to indicate
-     * the issue
+     * made before the corresponding response is returned and its body send to the camunda process.
+     * Should an error occur during the request process the Mono completes with a fitting exception
+     * to indicate the issue
      */
-    private Map<String, Object> getRequestData(final DynamicsConnectorRequest connectorRequest) throws Exception {
+    public Mono<Map<String, Object>> getRequestData(final DynamicsConnectorRequest connectorRequest) {
         // TODO: implement authentication logic
-        connectorRequest.operation();
+        Authentication authentication = connectorRequest.authentication();
+        return generateTokenService.getToken(authentication.base(), authentication.client(), authentication.secret(),
+                        authentication.scope(), authentication.access())
+                .flatMap(accessToken -> executeOperation(connectorRequest, accessToken))
+                // a cached token the Web API rejects, e.g. after it was revoked, is replaced once; the records
+                // of a bulk write may already be written with it, so it is not repeated
+                .onErrorResume(throwable -> throwable instanceof UnauthorizedException
+                        && !"bulk".equals(connectorRequest.operation()), throwable -> {
+                    log.warn("Access token rejected, retrying with a new token");
+                    generateTokenService.evictToken(authentication.base(), authentication.client(),
+                            authentication.secret(), authentication.scope(), authentication.access());
+                    return generateTokenService.getToken(authentication.base(), authentication.client(),
+                                    authentication.secret(), authentication.scope(), authentication.access())
+                            .flatMap(accessToken -> executeOperation(connectorRequest, accessToken));
+                })
+                .flatMap(result -> isCollected(connectorRequest)
+                        ? Mono.just(result)
+                        : resultLimiter.limit(result, connectorRequest.projection(), RECORD_OPERATIONS.contains(connectorRequest.operation())))
+                .contextWrite(ClientMetrics.operation(connectorRequest.operation()))
+                .contextWrite(ThrottlingFilter.clientId(connectorRequest.authentication().client()));
+    }
 
-        String accessToken = generateTokenService.getToken(
-                connectorRequest.authentication().base(),
-                connectorRequest.authentication().client(),
-                connectorRequest.authentication().secret(),
-                connectorRequest.authentication().scope(),
-        connectorRequest.authentication().access()).block();
+    private Mono<Map<String, Object>> executeOperation(final DynamicsConnectorRequest connectorRequest, final String accessToken) {
+        final EntitySetUrl entitySetUrl;
+        try {
+            entitySetUrl = requestUrls.entitySet(connectorRequest.authentication().base(),
+                    entitySet(connectorRequest.target()));
+            String id = connectorRequest.accountId();
+            // getEntry without an ID still reads the collection, a write must never address it
+            if (ENTRY_OPERATIONS.contains(connectorRequest.operation())
+                    && (!"getEntry".equals(connectorRequest.operation()) || (id != null && !id.isEmpty()))) {
+                ODataLiteral.key(id);
+            }
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new BadRequestException(e.getMessage()));
+        }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        StringBuilder requestUrl = new StringBuilder("");
-        Map<String, Object> requestHeaders = new HashMap<String, Object>();
-        Map<String, Object> requestBody = connectorRequest.requestBody();
+        if (metadataCache.isEnabled() && CHECKED_OPERATIONS.contains(connectorRequest.operation())) {
+            return metadataCache.entity(entitySetUrl, accessToken)
+                    .onErrorResume(throwable -> !(throwable instanceof BadRequestException), throwable -> {
+                        // without the definition the request is sent unchecked, as if the cache was disabled
+                        log.warn("Failed to load the definition of " + entitySetUrl.entitySet(), throwable);
+                        return Mono.empty();
+                    })
+                    .flatMap(entity -> Mono.fromCallable(() -> checked(connectorRequest, entity))
+                            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestException(e.getMessage())))
+                    .defaultIfEmpty(connectorRequest)
+                    .flatMap(request -> executeOperation(request, entitySetUrl, accessToken));
+        }
+        return executeOperation(connectorRequest, entitySetUrl, accessToken);
+    }
 
-        String result;
+    /**
+     * Checks the fields and request body against the definition of the table, so that invalid requests
+     * fail before they are sent, and converts the request body to the types of its columns.
+     */
+    private static DynamicsConnectorRequest checked(final DynamicsConnectorRequest connectorRequest, final EntityMetadata entity) {
+        RequestSchema.checkFields(entity, connectorRequest.fields());
+        return switch (connectorRequest.operation()) {
+            case "createEntry" -> connectorRequest.withRequestBody(RequestSchema.serialize(entity, connectorRequest.requestBody(), true));
+            case "updateEntry" -> connectorRequest.withRequestBody(RequestSchema.serialize(entity, connectorRequest.requestBody(), false));
+            default -> connectorRequest;
+        };
+    }
 
-        if(connectorRequest.target().equals("account")){
-            requestUrl = new StringBuilder("https://camunda.crm16.dynamics.com/api/data/v9.2/accounts");
-        }
+    private Mono<Map<String, Object>> executeOperation(final DynamicsConnectorRequest connectorRequest,
+                                                       final EntitySetUrl entitySetUrl, final String accessToken) {
+        final String requestUrl = entitySetUrl.collection();
+        Map<String, Object> requestHeaders = new HashMap<String, Object>();
+        Map<String, Object> requestBody = connectorRequest.requestBody();
 
         switch(connectorRequest.operation()) {
             case "getAll":
-                result = executeRequestService.getRequest(String.valueOf(requestUrl), accessToken).block();
-
-                log.info("requestUrl: " + requestUrl);
-                log.info("Request Body: " + result);
-                return objectMapper.readValue(result, new TypeReference<Map<String, Object>>() {
-                });
+                final String collectionUrl;
+                try {
+                    String options = QueryOptions.compile(connectorRequest.fields(), connectorRequest.query());
+                    collectionUrl = options.isEmpty() ? requestUrl : requestUrl + "?" + options;
+                } catch (IllegalArgumentException e) {
+                    return Mono.error(new BadRequestException(e.getMessage()));
+                }
 
-            case "getEntry":
-                if(!connectorRequest.accountId().isEmpty()){
-                    requestUrl.append("(").append(connectorRequest.accountId()).append(")");
+                if (connectorRequest.paging() != null) {
+                    log.info("requestUrl: " + collectionUrl);
+                    return getPages(collectionUrl, accessToken, connectorRequest.paging(),
+                            Boolean.TRUE.equals(connectorRequest.valueOnly()), connectorRequest.projection());
+                }
+                if (Boolean.TRUE.equals(connectorRequest.valueOnly())) {
+                    log.info("requestUrl: " + collectionUrl);
+                    return executeRequestService.getValuePage(collectionUrl, accessToken, null)
+                            .map(DynamicsConnectorFunction::toValueMap);
                 }
 
-                if (!connectorRequest.fields().isEmpty()){
-                    requestUrl.append("?$select=");
+                return executeRequestService.getJson(URI.create(collectionUrl), accessToken)
+                        .map(result -> logResponse(collectionUrl, result));
 
-                    for (int i = 0; i < connectorRequest.fields().size(); i++) {
-                        requestUrl.append(connectorRequest.fields().get(i));
-                        if (i != connectorRequest.fields().size() - 1){
-                            requestUrl.append(",");
-                        }
-                    }
-                }
+            case "fetchXml":
+                log.info("requestUrl: " + requestUrl + "?fetchXml=...");
+                return getFetchPages(entitySetUrl, connectorRequest.fetchXml(), accessToken,
+                        connectorRequest.paging() == null ? new Paging(null, null, null) : connectorRequest.paging(),
+                        connectorRequest.projection());
 
-                result = executeRequestService.getRequest(String.valueOf(requestUrl), accessToken).block();
+            case "getChanges":
+                log.info("requestUrl: " + (connectorRequest.deltaLink() == null ? requestUrl : connectorRequest.deltaLink()));
+                Paging changePaging = connectorRequest.paging() == null ? new Paging(null, null, null) : connectorRequest.paging();
+                return changeTrackingService.changes(entitySetUrl, connectorRequest.fields(), connectorRequest.deltaLink(),
+                                changePaging.pageSize(), changePaging.maxRecords(), connectorRequest.projection(), accessToken)
+                        .doOnNext(result -> ((List<?>) result.get("deleted")).forEach(id ->
+                                entryCache.invalidate(entitySetUrl, String.valueOf(id))));
 
-                log.info("requestUrl: " + requestUrl);
-                log.info("Request Body: " + result);
-                return objectMapper.readValue(result, new TypeReference<Map<String, Object>>() {
-                });
+            case "getEntry":
+                String entryUrl = entitySetUrl.entry(connectorRequest.accountId(), connectorRequest.fields());
+
+                return entryCache.getEntry(connectorRequest.authentication().client(), entitySetUrl,
+                                connectorRequest.accountId(), connectorRequest.fields(), accessToken)
+                        .map(result -> logResponse(entryUrl, result));
 
             case "createEntry":
+                if (writeAggregator.isEnabled()) {
+                    return writeAggregator.submit(connectorRequest.authentication().client(), entitySetUrl, accessToken,
+                                    new BatchOperation("createEntry", null, requestBody, null))
+                            .map(result -> logResponse(requestUrl, result));
+                }
                 requestHeaders.put("Content-Type", "application/json");
                 requestHeaders.put("Prefer", "return=representation");
 
-                result = executeRequestService.postRequest(String.valueOf(requestUrl), accessToken,
-                        requestHeaders, requestBody).block();
-
-                if (result.equals("Request Status Code: 204 No Content")) {
-                    log.info("Request Status Code: 204 No Content");
-                    return Map.of();
-                }
-
-                log.info("requestUrl: " + requestUrl);
-                log.info("Response Body: " + result);
-                return objectMapper.readValue(result, new TypeReference<Map<String, Object>>() {
-                });
+                return executeRequestService.postJson(requestUrl, accessToken,
+                        requestHeaders, requestBody)
+                        .map(result -> logResponse(requestUrl, result))
+                        .switchIfEmpty(noContent(requestUrl));
 
             case "updateEntry":
                 requestHeaders.put("Content-Type", "application/json");
                 requestHeaders.put("If-Match", "*");
                 requestHeaders.put("Prefer", "return=representation");
 
-                requestUrl.append("(").append(connectorRequest.accountId()).append(")");
+                String updateUrl = entitySetUrl.entry(connectorRequest.accountId());
 
-                result = executeRequestService.patchRequest(String.valueOf(requestUrl), accessToken,
-                        requestHeaders, requestBody).block();
-
-                if (result.equals("Request Status Code: 204 No Content")) {
-                    log.info("Request Status Code: 204 No Content");
-                    return Map.of();
+                if (writeAggregator.isEnabled()) {
+                    return writeAggregator.submit(connectorRequest.authentication().client(), entitySetUrl, accessToken,
+                                    new BatchOperation("updateEntry", connectorRequest.accountId(), requestBody, null))
+                            .map(result -> logResponse(updateUrl, result))
+                            .doFinally(signal -> entryCache.invalidate(entitySetUrl, connectorRequest.accountId()));
                 }
-
-                log.info("requestUrl: " + requestUrl);
-                log.info("Request Body: " + result);
-                return objectMapper.readValue(result, new TypeReference<Map<String, Object>>() {
-                });
+                return executeRequestService.patchJson(updateUrl, accessToken,
+                        requestHeaders, requestBody)
+                        .map(result -> logResponse(updateUrl, result))
+                        .switchIfEmpty(noContent(updateUrl))
+                        .doFinally(signal -> entryCache.invalidate(entitySetUrl, connectorRequest.accountId()));
 
             case "deleteEntry":
                 requestHeaders.put("Content-Type", "application/json");
 
-                requestUrl.append("(").append(connectorRequest.accountId()).append(")");
+                String deleteUrl = entitySetUrl.entry(connectorRequest.accountId());
+
+                return executeRequestService.deleteJson(deleteUrl, accessToken, requestHeaders)
+                        .map(result -> logResponse(deleteUrl, result))
+                        .switchIfEmpty(noContent(deleteUrl))
+                        .doFinally(signal -> entryCache.invalidate(entitySetUrl, connectorRequest.accountId()));
+
+            case "batch":
+                log.info("requestUrl: " + entitySetUrl.batch());
+                return batchService.execute(entitySetUrl.serviceUrl(), entitySetUrl.entitySet(), accessToken,
+                                connectorRequest.batchOperations())
+                        .doFinally(signal -> {
+                            if (connectorRequest.batchOperations() != null) {
+                                connectorRequest.batchOperations().forEach(operation ->
+                                        entryCache.invalidate(entitySetUrl, operation.accountId()));
+                            }
+                        });
+
+            case "bulk":
+                log.info("requestUrl: " + requestUrl);
+                return bulkService.execute(entitySetUrl, accessToken, connectorRequest.bulk())
+                        .doFinally(signal -> entryCache.invalidate(entitySetUrl));
+
+            case "uploadFile":
+                log.info("requestUrl: " + entitySetUrl.entry(connectorRequest.accountId()));
+                return fileService.upload(entitySetUrl, connectorRequest.accountId(), connectorRequest.file(), accessToken)
+                        .doFinally(signal -> entryCache.invalidate(entitySetUrl, connectorRequest.accountId()));
+
+            case "downloadFile":
+                log.info("requestUrl: " + entitySetUrl.entry(connectorRequest.accountId()));
+                return fileService.download(entitySetUrl, connectorRequest.accountId(), connectorRequest.file(), accessToken);
 
-                result = executeRequestService.deleteRequest(String.valueOf(requestUrl), accessToken, requestHeaders, requestBody).block();
+            default:
+                return Mono.error(new CredentialsException("Error during request execution: Credentials not valid"));
+        }
+    }
+
+    /**
+     * Maps the target to the entity set, "account" is kept as an alias of "accounts" for existing processes.
+     */
+    private static String entitySet(final String target) {
+        return LEGACY_TARGETS.getOrDefault(target, target);
+    }
+
+    /**
+     * Reads the pages of a collection according to the selected paging mode. Further pages are only
+     * requested while records are still needed.
+     */
+    private Mono<Map<String, Object>> getPages(final String requestUrl, final String accessToken, final Paging paging,
+                                               final boolean valueOnly, final Projection projection) {
+        String mode = paging.mode() == null ? "firstPage" : paging.mode();
+        Integer maxRecords = paging.maxRecords();
+        if (maxRecords != null && maxRecords < 0) {
+            return Mono.error(new BadRequestException("Maximum records must not be negative"));
+        }
 
-                if (result.equals("Request Status Code: 204 No Content")) {
-                    log.info("Request Status Code: 204 No Content");
-                    return Map.of();
+        switch (mode) {
+            case "firstPage":
+                if (valueOnly) {
+                    return executeRequestService.getValuePage(requestUrl, accessToken, paging.pageSize())
+                            .map(DynamicsConnectorFunction::toValueMap);
                 }
+                return executeRequestService.getPage(requestUrl, accessToken, paging.pageSize());
 
-                log.info("requestUrl: " + requestUrl);
-                log.info("Request Body: " + result);
-                return objectMapper.readValue(result, new TypeReference<Map<String, Object>>() {
+            case "all":
+                Flux<Map<String, Object>> records = executeRequestService.getPages(requestUrl, accessToken, paging.pageSize())
+                        .concatMapIterable(ValuePage::records);
+                return resultLimiter.collect(records, projection, maxRecords);
+
+            case "count":
+                return count(executeRequestService.getPages(requestUrl, accessToken, paging.pageSize()), maxRecords);
+
+            default:
+                return Mono.error(new BadRequestException("Unsupported paging mode: " + mode));
+        }
+    }
+
+    /**
+     * Reads the pages of a FetchXML query. The paging modes are the same as for "getAll", pages are
+     * followed through their paging cookie.
+     */
+    private Mono<Map<String, Object>> getFetchPages(final EntitySetUrl entitySetUrl, final String fetchXml,
+                                                    final String accessToken, final Paging paging, final Projection projection) {
+        String mode = paging.mode() == null ? "firstPage" : paging.mode();
+        Integer maxRecords = paging.maxRecords();
+        if (maxRecords != null && maxRecords < 0) {
+            return Mono.error(new BadRequestException("Maximum records must not be negative"));
+        }
+        Flux<ValuePage> pages = fetchXmlService.pages(entitySetUrl, fetchXml, paging.pageSize(), accessToken);
+
+        switch (mode) {
+            case "firstPage":
+                return pages.next().map(page -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("value", page.records());
+                    result.put("moreRecords", page.nextLink() != null);
+                    return result;
                 });
 
+            case "all":
+                return resultLimiter.collect(pages.concatMapIterable(ValuePage::records), projection, maxRecords);
+
+            case "count":
+                return count(pages, maxRecords);
+
             default:
-                throw new CredentialsException("Error during request execution: Credentials not valid");
+                return Mono.error(new BadRequestException("Unsupported paging mode: " + mode));
+        }
+    }
+
+    /**
+     * Counts the records of all pages, holding no more than one page in memory.
+     */
+    private static Mono<Map<String, Object>> count(final Flux<ValuePage> pages, final Integer maxRecords) {
+        return pages
+                .scan(new PageCount(0, 0, true), (total, page) -> new PageCount(
+                        total.records() + page.records().size(),
+                        total.pages() + 1,
+                        page.nextLink() != null))
+                .skip(1)
+                .takeUntil(total -> maxRecords != null && total.records() >= maxRecords)
+                .last(new PageCount(0, 0, false))
+                .map(total -> {
+                    boolean truncated = maxRecords != null && total.records() >= maxRecords
+                            && (total.records() > maxRecords || total.more());
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("count", truncated ? maxRecords.longValue() : total.records());
+                    result.put("pages", total.pages());
+                    result.put("truncated", truncated);
+                    return result;
+                });
+    }
+
+    /**
+     * Whether the records of the job are projected and limited while they are read
+     */
+    private static boolean isCollected(final DynamicsConnectorRequest connectorRequest) {
+        if ("getChanges".equals(connectorRequest.operation())) {
+            return true;
         }
+        return ("getAll".equals(connectorRequest.operation()) || "fetchXml".equals(connectorRequest.operation()))
+                && connectorRequest.paging() != null
+                && "all".equals(connectorRequest.paging().mode());
+    }
+
+    private record PageCount(long records, long pages, boolean more) {
+    }
+
+    private static Map<String, Object> toValueMap(final ValuePage page) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("value", page.records());
+        if (page.nextLink() != null) {
+            result.put("@odata.nextLink", page.nextLink());
+        }
+        return result;
+    }
+
+    private static Map<String, Object> logResponse(final CharSequence requestUrl, final Map<String, Object> result) {
+        log.info("requestUrl: " + requestUrl);
+        if (log.isDebugEnabled()) {
+            log.debug("Response Body: " + result);
+        }
+        return result;
+    }
+
+    private static Mono<Map<String, Object>> noContent(final CharSequence requestUrl) {
+        return Mono.fromSupplier(() -> {
+            log.info("requestUrl: " + requestUrl);
+            log.info("Request Status Code: 204 No Content");
+            return Map.of();
+        });
     }
-}
\ No newline at end of file
+}
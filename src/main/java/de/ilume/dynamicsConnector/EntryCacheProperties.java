@@ -0,0 +1,35 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for caching the entries read by "getEntry"
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.entry-cache")
+public class EntryCacheProperties {
+
+    /**
+     * Whether entries read by "getEntry" are kept and revalidated with their ETag on the next read.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of cached entries, the least recently read ones are evicted first.
+     */
+    private int maxEntries = 1000;
+
+    /**
+     * How long an entry is kept after it has last been read or revalidated.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long an entry is returned without asking the Web API whether it has changed. Zero revalidates every read.
+     * Only writes of this connector instance are noticed within this period.
+     */
+    private Duration freshFor = Duration.ZERO;
+}
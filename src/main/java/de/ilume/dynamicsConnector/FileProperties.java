@@ -0,0 +1,24 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for moving files between the connector runtime and file or image columns
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.files")
+public class FileProperties {
+
+    /**
+     * Directory of the runtime files are read from and written to. Paths of a job are resolved against it and
+     * may not leave it. File transfers are rejected if not set.
+     */
+    private String directory;
+
+    /**
+     * Bytes sent per "UploadBlock" and requested per range when downloading. The Web API accepts at most 4MB per block.
+     */
+    private DataSize blockSize = DataSize.ofMegabytes(4);
+}
@@ -0,0 +1,73 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for the HTTP client shared by the token and the Dataverse requests
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.http")
+public class HttpClientProperties {
+
+    /**
+     * Maximum number of threads handling I/O and response callbacks.
+     */
+    private int maxThreads = 200;
+
+    /**
+     * Maximum number of open connections per host.
+     */
+    private int maxConnectionsPerHost = 64;
+
+    /**
+     * Maximum number of requests waiting for a free connection per host.
+     */
+    private int maxQueuedRequestsPerHost = 1024;
+
+    /**
+     * Time allowed to establish a connection, including the TLS handshake.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Time allowed until the response headers have been received.
+     */
+    private Duration responseTimeout = Duration.ofSeconds(60);
+
+    /**
+     * How long an idle connection is kept open for reuse.
+     */
+    private Duration keepAlive = Duration.ofSeconds(60);
+
+    /**
+     * Whether requests to the hosts in {@link #http2Hosts} are sent over HTTP/2.
+     */
+    private boolean http2Enabled = true;
+
+    /**
+     * Host suffixes that are addressed over HTTP/2 when using https.
+     */
+    private List<String> http2Hosts = new ArrayList<>(List.of(".dynamics.com"));
+
+    /**
+     * Number of TLS sessions kept for abbreviated handshakes.
+     */
+    private int tlsSessionCacheSize = 1024;
+
+    /**
+     * How long a TLS session can be resumed.
+     */
+    private Duration tlsSessionTimeout = Duration.ofHours(8);
+
+    /**
+     * Largest response body that is decoded. Responses are decoded straight from the received buffers, this
+     * only limits how much is buffered for a single response.
+     */
+    private DataSize maxResponseSize = DataSize.ofMegabytes(16);
+}
@@ -0,0 +1,49 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for isolating the Dataverse environments and token endpoints from each other
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.isolation")
+public class IsolationProperties {
+
+    /**
+     * Whether requests pass a circuit breaker and a bulkhead per environment.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Requests in flight per environment, further requests fail at once.
+     */
+    private int maxConcurrentCalls = 64;
+
+    /**
+     * Percentage of failed requests (5xx, connection errors and timeouts) within the window that opens the circuit.
+     */
+    private int failureRateThreshold = 50;
+
+    /**
+     * Number of most recent requests the failure rate is computed from.
+     */
+    private int slidingWindowSize = 20;
+
+    /**
+     * Requests needed in the window before the circuit can open.
+     */
+    private int minimumCalls = 10;
+
+    /**
+     * How long an open circuit fails requests at once before probing the environment again.
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    /**
+     * Probe requests let through while half open. The circuit closes once all of them succeeded.
+     */
+    private int halfOpenCalls = 3;
+}
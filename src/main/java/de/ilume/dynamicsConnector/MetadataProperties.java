@@ -0,0 +1,33 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for caching the table definitions used to check requests before they are sent
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.metadata")
+public class MetadataProperties {
+
+    /**
+     * Whether fields and request bodies are checked against the table definitions and request bodies are
+     * converted to the types of their columns. Needs read access to the EntityDefinitions of the environment.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How long a table definition is used before it is reloaded in the background. Until then changes of
+     * the table are not noticed.
+     */
+    private Duration refreshInterval = Duration.ofHours(1);
+
+    /**
+     * Entity sets whose definitions are loaded as soon as the first job addresses an environment.
+     */
+    private List<String> warmup = new ArrayList<>();
+}
@@ -0,0 +1,83 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings for the representation and encoding negotiated for Dataverse requests
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.payload")
+public class PayloadProperties {
+
+    /**
+     * Profile of all operations not listed in {@link #operations}.
+     */
+    private String profile = "minimal";
+
+    /**
+     * Profile per connector operation, e.g. "getAll: lean".
+     */
+    private Map<String, String> operations = new HashMap<>();
+
+    /**
+     * Available profiles by name.
+     */
+    private Map<String, Profile> profiles = new LinkedHashMap<>(Map.of(
+            "minimal", new Profile("minimal", null, "gzip"),
+            "lean", new Profile("none", null, "gzip"),
+            "formatted", new Profile("minimal", "OData.Community.Display.V1.FormattedValue", "gzip")));
+
+    /**
+     * Whether request bodies of at least {@link #requestCompressionThreshold} are sent gzip compressed.
+     */
+    private boolean requestCompression = false;
+
+    /**
+     * Smallest request body that is compressed.
+     */
+    private DataSize requestCompressionThreshold = DataSize.ofKilobytes(32);
+
+    /**
+     * Returns the profile of the given operation, the "minimal" profile if the configured one does not exist
+     */
+    public Profile profile(String operation) {
+        String name = operation == null ? profile : operations.getOrDefault(operation, profile);
+        Profile selected = profiles.get(name);
+        return selected != null ? selected : profiles.getOrDefault("minimal", new Profile());
+    }
+
+    @Data
+    public static class Profile {
+
+        /**
+         * "none", "minimal" or "full", sent as "odata.metadata" of the Accept header. Server default if empty.
+         */
+        private String metadata;
+
+        /**
+         * Annotations requested with "Prefer: odata.include-annotations", e.g. "*" or
+         * "OData.Community.Display.V1.FormattedValue". None if empty.
+         */
+        private String includeAnnotations;
+
+        /**
+         * Accepted response encodings, "gzip" or "identity" for uncompressed responses.
+         */
+        private String acceptEncoding = "gzip";
+
+        public Profile() {
+        }
+
+        public Profile(String metadata, String includeAnnotations, String acceptEncoding) {
+            this.metadata = metadata;
+            this.includeAnnotations = includeAnnotations;
+            this.acceptEncoding = acceptEncoding;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the inbound connector polling entity sets for changes
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.polling")
+public class PollingProperties {
+
+    /**
+     * Directory the delta links of the polled entity sets are written to, so that polling resumes after a restart.
+     * Kept in memory only if not set.
+     */
+    private String checkpointDirectory;
+
+    /**
+     * Time between two polls unless the process sets its own interval.
+     */
+    private Duration interval = Duration.ofSeconds(30);
+
+    /**
+     * Shortest accepted interval.
+     */
+    private Duration minInterval = Duration.ofSeconds(5);
+
+    /**
+     * Changes correlated per poll unless the process sets its own maximum. Remaining changes follow on the next polls.
+     */
+    private int maxEventsPerTick = 100;
+
+    /**
+     * Changes read ahead per polled entity set. Further pages are only read once these have been correlated,
+     * at least one page is read per poll.
+     */
+    private int maxPendingChanges = 1000;
+
+    /**
+     * Recently correlated changes remembered per polled entity set, so that changes read twice are dropped.
+     */
+    private int deduplicationWindow = 10000;
+}
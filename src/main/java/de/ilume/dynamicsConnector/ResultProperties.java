@@ -0,0 +1,24 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the results handed back to the process
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.result")
+public class ResultProperties {
+
+    /**
+     * Largest result, measured as serialized JSON. Jobs can only lower it.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(3);
+
+    /**
+     * What happens to larger results: "fail" fails the job, "truncate" drops records from the end and marks
+     * the result with "truncated".
+     */
+    private String onOversize = "fail";
+}
@@ -0,0 +1,52 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for pacing the Dataverse requests of each environment and application user below the
+ * service protection limits
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.throttling")
+public class ThrottlingProperties {
+
+    /**
+     * Whether requests are paced and throttled requests (429) are retried within the job.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Highest request rate per environment and application user. The rate is lowered after each 429 and
+     * slowly raised again while requests succeed.
+     */
+    private double requestsPerSecond = 20;
+
+    /**
+     * Lowest request rate the limiter backs off to.
+     */
+    private double minRequestsPerSecond = 1;
+
+    /**
+     * Requests that may be sent at once after a quiet period.
+     */
+    private int burst = 20;
+
+    /**
+     * How often a throttled request is retried before the job fails.
+     */
+    private int maxRetries = 3;
+
+    /**
+     * Backoff of the first retry when the response has no Retry-After header, doubled for every further retry.
+     * Also the upper bound of the jitter added to Retry-After.
+     */
+    private Duration initialBackoff = Duration.ofSeconds(1);
+
+    /**
+     * Longest wait before a retry.
+     */
+    private Duration maxBackoff = Duration.ofMinutes(1);
+}
@@ -0,0 +1,24 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for caching access tokens between connector jobs
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.token-cache")
+public class TokenCacheProperties {
+
+    /**
+     * Whether tokens are reused until shortly before they expire. When disabled every job requests a new token.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How long before its expiry a cached token is refreshed. Capped at half of the token lifetime.
+     */
+    private Duration refreshSkew = Duration.ofMinutes(5);
+}
@@ -1,14 +1,138 @@
 package de.ilume.dynamicsConnector;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.isolation.IsolationFilter;
+import de.ilume.dynamicsConnector.payload.PayloadFilter;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientConnectionFactory;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.transport.HttpClientTransportDynamic;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.JettyClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.net.URI;
+
+/**
+ * Provides the {@link WebClient} shared by all token and Dataverse requests. It is backed by a single
+ * Jetty client so that connections and TLS sessions are reused across jobs, and decodes JSON with the
+ * application wide {@link ObjectMapper}. Dataverse requests are paced by the {@link ThrottlingFilter},
+ * the representation and encoding of each operation are negotiated by the {@link PayloadFilter},
+ * and every request is measured by {@link ClientMetrics} and traced through the {@link ObservationRegistry}.
+ */
 @Configuration
+@ConfigurationPropertiesScan
 public class WebclientConfig {
 
+    @Bean(destroyMethod = "stop")
+    public HttpClient jettyHttpClient(HttpClientProperties properties) {
+        SslContextFactory.Client sslContextFactory = new SslContextFactory.Client();
+        sslContextFactory.setSessionCachingEnabled(true);
+        sslContextFactory.setSslSessionCacheSize(properties.getTlsSessionCacheSize());
+        sslContextFactory.setSslSessionTimeout((int) properties.getTlsSessionTimeout().toSeconds());
+
+        QueuedThreadPool executor = new QueuedThreadPool(properties.getMaxThreads());
+        executor.setName("dynamics-http");
+
+        ClientConnector connector = new ClientConnector();
+        connector.setExecutor(executor);
+        connector.setSslContextFactory(sslContextFactory);
+
+        // HTTP/1.1 stays the default, HTTP/2 is selected per request by http2Filter
+        HttpClientTransportDynamic transport = new HttpClientTransportDynamic(connector,
+                HttpClientConnectionFactory.HTTP11,
+                new ClientConnectionFactoryOverHTTP2.HTTP2(new HTTP2Client(connector)));
+
+        HttpClient httpClient = new HttpClient(transport);
+        httpClient.setExecutor(executor);
+        httpClient.setMaxConnectionsPerDestination(properties.getMaxConnectionsPerHost());
+        httpClient.setMaxRequestsQueuedPerDestination(properties.getMaxQueuedRequestsPerHost());
+        httpClient.setConnectTimeout(properties.getConnectTimeout().toMillis());
+        httpClient.setIdleTimeout(properties.getKeepAlive().toMillis());
+        return httpClient;
+    }
+
+    @Bean
+    public ClientMetrics clientMetrics(MeterRegistry meterRegistry, HttpClient jettyHttpClient) {
+        ClientMetrics clientMetrics = new ClientMetrics(meterRegistry);
+        clientMetrics.bind(jettyHttpClient);
+        return clientMetrics;
+    }
+
+    @Bean
+    public IsolationFilter isolationFilter(IsolationProperties properties, MeterRegistry meterRegistry) {
+        return new IsolationFilter(properties, meterRegistry);
+    }
+
+    @Bean
+    public PayloadFilter payloadFilter(PayloadProperties properties, MeterRegistry meterRegistry) {
+        return new PayloadFilter(properties, meterRegistry);
+    }
+
     @Bean
-    public WebClient webClient(){
-        return WebClient.builder().build();
+    public WebClient webClient(HttpClient jettyHttpClient, ObjectMapper objectMapper, HttpClientProperties properties,
+                               ThrottlingProperties throttlingProperties, ClientMetrics clientMetrics,
+                               IsolationFilter isolationFilter, PayloadFilter payloadFilter,
+                               ObservationRegistry observationRegistry){
+        return WebClient.builder()
+                .clientConnector(new JettyClientHttpConnector(jettyHttpClient))
+                // creates a span per request and propagates the trace context to the called services
+                .observationRegistry(observationRegistry)
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().maxInMemorySize((int) properties.getMaxResponseSize().toBytes());
+                })
+                // outermost, a request rejected by the circuit breaker or bulkhead is neither paced nor retried
+                .filter(isolationFilter)
+                // so that every retry of a throttled request is measured and timed out on its own
+                .filter(new ThrottlingFilter(throttlingProperties))
+                .filter(clientMetrics.filter())
+                .filter(http2Filter(properties))
+                .filter(payloadFilter)
+                .filter(responseTimeoutFilter(properties))
+                .build();
+    }
+
+    private static ExchangeFilterFunction http2Filter(HttpClientProperties properties) {
+        return (request, next) -> {
+            if (!properties.isHttp2Enabled() || !isHttp2Host(request.url(), properties)) {
+                return next.exchange(request);
+            }
+            return next.exchange(ClientRequest.from(request)
+                    .httpRequest(httpRequest -> {
+                        if (httpRequest.getNativeRequest() instanceof Request jettyRequest) {
+                            jettyRequest.version(HttpVersion.HTTP_2);
+                        }
+                    })
+                    .build());
+        };
+    }
+
+    private static boolean isHttp2Host(URI url, HttpClientProperties properties) {
+        if (!"https".equalsIgnoreCase(url.getScheme()) || url.getHost() == null) {
+            return false;
+        }
+        String host = url.getHost().toLowerCase();
+        return properties.getHttp2Hosts().stream().anyMatch(host::endsWith);
+    }
+
+    private static ExchangeFilterFunction responseTimeoutFilter(HttpClientProperties properties) {
+        return (request, next) -> next.exchange(request).timeout(properties.getResponseTimeout());
     }
 }
@@ -0,0 +1,29 @@
+package de.ilume.dynamicsConnector;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for combining the writes of concurrent jobs into $batch requests
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamics.connector.write-batching")
+public class WriteBatchingProperties {
+
+    /**
+     * Whether "createEntry" and "updateEntry" are collected into batches. When disabled every write is its own request.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How long a batch collects writes after the first one arrived, added to the latency of every collected write.
+     */
+    private Duration window = Duration.ofMillis(20);
+
+    /**
+     * Writes that are sent at once without waiting for the window to close. At most 1000.
+     */
+    private int maxSize = 100;
+}
@@ -0,0 +1,67 @@
+package de.ilume.dynamicsConnector.aot;
+
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.dto.BulkWrite;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.dto.FetchPage;
+import de.ilume.dynamicsConnector.dto.FileTransfer;
+import de.ilume.dynamicsConnector.dto.Paging;
+import de.ilume.dynamicsConnector.dto.Projection;
+import de.ilume.dynamicsConnector.dto.Query;
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.inbound.DynamicsPollingConnector;
+import de.ilume.dynamicsConnector.inbound.DynamicsPollingRequest;
+import io.camunda.connector.api.annotation.InboundConnector;
+import io.camunda.connector.api.annotation.OutboundConnector;
+import io.camunda.connector.api.inbound.InboundConnectorExecutable;
+import io.camunda.connector.api.outbound.OutboundConnectorFunction;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection and resource hints for running the connector in a GraalVM native image. Registered through
+ * META-INF/spring/aot.factories, so they also apply when the connector is bundled into another runtime.
+ *
+ * The connector SDK binds the job variables to {@link DynamicsConnectorRequest} and validates it through
+ * reflection, and Jackson decodes the Web API responses into {@link ValuePage} and {@link FetchPage}. The
+ * runtime discovers the connectors through their annotations or the service loader files in META-INF/services
+ * and either takes them from the application context or creates them through their no-args constructor.
+ */
+public class ConnectorRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] BOUND_TYPES = {
+            DynamicsConnectorRequest.class,
+            Authentication.class,
+            BatchOperation.class,
+            BulkWrite.class,
+            FileTransfer.class,
+            Paging.class,
+            Projection.class,
+            Query.class,
+            DynamicsPollingRequest.class,
+            ValuePage.class,
+            FetchPage.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BOUND_TYPES);
+
+        hints.reflection()
+                .registerType(DynamicsConnectorFunction.class,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(DynamicsPollingConnector.class,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(OutboundConnector.class, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(InboundConnector.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        hints.resources()
+                .registerPattern("META-INF/services/" + OutboundConnectorFunction.class.getName())
+                .registerPattern("META-INF/services/" + InboundConnectorExecutable.class.getName())
+                .registerPattern("logback-spring.xml");
+    }
+}
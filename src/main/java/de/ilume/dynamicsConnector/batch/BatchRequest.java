@@ -0,0 +1,184 @@
+package de.ilume.dynamicsConnector.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.ODataLiteral;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Multipart body of an OData $batch request. Operations sharing a change set name are written into
+ * one change set at the position of their first occurrence, all others become individual parts.
+ * Every operation carries its index + 1 as Content-ID so that responses can be matched back.
+ */
+public final class BatchRequest {
+
+    /**
+     * Maximum number of operations the Dataverse Web API accepts in one batch
+     */
+    public static final int MAX_OPERATIONS = 1000;
+
+    private static final String CRLF = "\r\n";
+
+    private final String boundary;
+    private final String body;
+    private final List<List<Integer>> parts;
+
+    private BatchRequest(String boundary, String body, List<List<Integer>> parts) {
+        this.boundary = boundary;
+        this.body = body;
+        this.parts = parts;
+    }
+
+    /**
+     * Builds the batch body for the given operations
+     *
+     * @param serviceUrl URL of the Web API, e.g. https://org.crm.dynamics.com/api/data/v9.2
+     * @param entitySet Entity set the operations are executed on
+     * @param operations Operations in the order they were requested
+     * @param objectMapper Used to serialize request bodies
+     * @return The batch request
+     * @throws BadRequestException If the operations cannot be sent as batch
+     */
+    public static BatchRequest create(String serviceUrl, String entitySet, List<BatchOperation> operations,
+                                      ObjectMapper objectMapper) throws BadRequestException, JsonProcessingException {
+        if (operations == null || operations.isEmpty()) {
+            throw new BadRequestException("A batch request needs at least one operation");
+        }
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new BadRequestException("A batch request supports at most " + MAX_OPERATIONS + " operations");
+        }
+
+        // group operations by change set, keeping the position of the first occurrence
+        Map<String, List<Integer>> changeSets = new LinkedHashMap<>();
+        List<List<Integer>> parts = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            String changeSet = operations.get(i).changeSet();
+            if (changeSet == null || changeSet.isEmpty()) {
+                parts.add(List.of(i));
+            } else {
+                List<Integer> members = changeSets.get(changeSet);
+                if (members == null) {
+                    members = new ArrayList<>();
+                    changeSets.put(changeSet, members);
+                    parts.add(members);
+                }
+                members.add(i);
+            }
+        }
+
+        String boundary = "batch_" + UUID.randomUUID();
+        StringBuilder body = new StringBuilder();
+        for (List<Integer> part : parts) {
+            body.append("--").append(boundary).append(CRLF);
+            BatchOperation first = operations.get(part.get(0));
+            if (first.changeSet() == null || first.changeSet().isEmpty()) {
+                appendOperation(body, serviceUrl, entitySet, part.get(0), first, objectMapper);
+                continue;
+            }
+
+            String changeSetBoundary = "changeset_" + UUID.randomUUID();
+            body.append("Content-Type: multipart/mixed; boundary=").append(changeSetBoundary).append(CRLF)
+                    .append(CRLF);
+            for (Integer index : part) {
+                BatchOperation operation = operations.get(index);
+                if ("getEntry".equals(operation.operation())) {
+                    throw new BadRequestException("Operation " + (index + 1) + ": getEntry cannot be part of a change set");
+                }
+                body.append("--").append(changeSetBoundary).append(CRLF);
+                appendOperation(body, serviceUrl, entitySet, index, operation, objectMapper);
+            }
+            body.append("--").append(changeSetBoundary).append("--").append(CRLF);
+        }
+        body.append("--").append(boundary).append("--").append(CRLF);
+
+        return new BatchRequest(boundary, body.toString(), List.copyOf(parts));
+    }
+
+    private static void appendOperation(StringBuilder body, String serviceUrl, String entitySet, int index,
+                                        BatchOperation operation, ObjectMapper objectMapper)
+            throws BadRequestException, JsonProcessingException {
+        String entityUrl = serviceUrl + "/" + entitySet;
+        String method;
+        String url;
+        boolean sendsBody = false;
+
+        switch (operation.operation() == null ? "" : operation.operation()) {
+            case "getEntry" -> {
+                method = "GET";
+                url = entityUrl + "(" + requireId(index, operation) + ")";
+            }
+            case "createEntry" -> {
+                method = "POST";
+                url = entityUrl;
+                sendsBody = true;
+            }
+            case "updateEntry" -> {
+                method = "PATCH";
+                url = entityUrl + "(" + requireId(index, operation) + ")";
+                sendsBody = true;
+            }
+            case "deleteEntry" -> {
+                method = "DELETE";
+                url = entityUrl + "(" + requireId(index, operation) + ")";
+            }
+            default -> throw new BadRequestException("Operation " + (index + 1) + ": unsupported batch operation "
+                    + operation.operation());
+        }
+
+        body.append("Content-Type: application/http").append(CRLF)
+                .append("Content-Transfer-Encoding: binary").append(CRLF)
+                .append("Content-ID: ").append(index + 1).append(CRLF)
+                .append(CRLF)
+                .append(method).append(' ').append(url).append(" HTTP/1.1").append(CRLF);
+
+        if ("PATCH".equals(method)) {
+            body.append("If-Match: *").append(CRLF);
+        }
+        if (sendsBody) {
+            Map<String, Object> requestBody = operation.requestBody() == null ? Map.of() : operation.requestBody();
+            body.append("Content-Type: application/json; type=entry").append(CRLF)
+                    .append("Prefer: return=representation").append(CRLF)
+                    .append(CRLF)
+                    .append(objectMapper.writeValueAsString(requestBody)).append(CRLF);
+        } else {
+            body.append(CRLF);
+        }
+    }
+
+    private static String requireId(int index, BatchOperation operation) throws BadRequestException {
+        if (operation.accountId() == null || operation.accountId().isEmpty()) {
+            throw new BadRequestException("Operation " + (index + 1) + ": " + operation.operation() + " needs an id");
+        }
+        try {
+            return ODataLiteral.key(operation.accountId());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Operation " + (index + 1) + ": " + e.getMessage());
+        }
+    }
+
+    public String boundary() {
+        return boundary;
+    }
+
+    public String contentType() {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+
+    public String body() {
+        return body;
+    }
+
+    /**
+     * @return The indices of the operations per top level part, in the order they were written
+     */
+    public List<List<Integer>> parts() {
+        return parts;
+    }
+}
@@ -0,0 +1,129 @@
+package de.ilume.dynamicsConnector.batch;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the multipart/mixed response of an OData $batch request
+ */
+public final class BatchResponse {
+
+    private BatchResponse() {
+    }
+
+    /**
+     * Response to a single operation inside a batch
+     *
+     * @param contentId The Content-ID of the operation, null if the response did not carry one
+     * @param status The HTTP status code
+     * @param headers The HTTP headers of the response
+     * @param body The response body, empty if there was none
+     */
+    public record Item(String contentId, int status, HttpHeaders headers, String body) {
+
+        public boolean isSuccess() {
+            return status < 400;
+        }
+    }
+
+    /**
+     * Splits the response body into its parts.
+     *
+     * @param contentType Content type of the batch response, contains the boundary
+     * @param body The batch response body
+     * @return One list per top level part. Change sets return one item per operation, or a single
+     * item if the change set failed as a whole
+     */
+    public static List<List<Item>> parse(MediaType contentType, String body) {
+        String boundary = boundary(contentType);
+        List<List<Item>> result = new ArrayList<>();
+        for (String part : split(normalize(body), boundary)) {
+            result.add(parsePart(part));
+        }
+        return result;
+    }
+
+    private static List<Item> parsePart(String part) {
+        int separator = part.indexOf("\n\n");
+        HttpHeaders mimeHeaders = parseHeaders(separator < 0 ? part : part.substring(0, separator));
+        String content = separator < 0 ? "" : part.substring(separator + 2);
+
+        MediaType partType = mimeHeaders.getContentType();
+        if (partType != null && "multipart".equalsIgnoreCase(partType.getType())) {
+            List<Item> items = new ArrayList<>();
+            for (String changeSetPart : split(content, boundary(partType))) {
+                items.addAll(parsePart(changeSetPart));
+            }
+            return items;
+        }
+        return List.of(parseHttpResponse(mimeHeaders.getFirst("Content-ID"), content));
+    }
+
+    private static Item parseHttpResponse(String contentId, String content) {
+        int separator = content.indexOf("\n\n");
+        String head = separator < 0 ? content : content.substring(0, separator);
+        String body = separator < 0 ? "" : content.substring(separator + 2).strip();
+
+        int lineEnd = head.indexOf('\n');
+        String statusLine = lineEnd < 0 ? head : head.substring(0, lineEnd);
+        String[] status = statusLine.strip().split(" ", 3);
+        if (status.length < 2) {
+            throw new IllegalArgumentException("Invalid status line in batch response: " + statusLine);
+        }
+
+        HttpHeaders headers = parseHeaders(lineEnd < 0 ? "" : head.substring(lineEnd + 1));
+        return new Item(contentId, Integer.parseInt(status[1]), headers, body);
+    }
+
+    private static HttpHeaders parseHeaders(String block) {
+        HttpHeaders headers = new HttpHeaders();
+        for (String line : block.split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.add(line.substring(0, colon).strip(), line.substring(colon + 1).strip());
+            }
+        }
+        return headers;
+    }
+
+    private static List<String> split(String body, String boundary) {
+        String delimiter = "--" + boundary;
+        List<String> parts = new ArrayList<>();
+
+        int start = body.indexOf(delimiter);
+        while (start >= 0) {
+            int contentStart = start + delimiter.length();
+            if (body.startsWith("--", contentStart)) {
+                break;
+            }
+            int next = body.indexOf(delimiter, contentStart);
+            if (next < 0) {
+                break;
+            }
+            String part = body.substring(contentStart, next).strip();
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+            start = next;
+        }
+        return parts;
+    }
+
+    private static String boundary(MediaType contentType) {
+        String boundary = contentType == null ? null : contentType.getParameter("boundary");
+        if (boundary == null || boundary.isEmpty()) {
+            throw new IllegalArgumentException("Batch response without boundary: " + contentType);
+        }
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary;
+    }
+
+    private static String normalize(String body) {
+        return body == null ? "" : body.replace("\r\n", "\n");
+    }
+}
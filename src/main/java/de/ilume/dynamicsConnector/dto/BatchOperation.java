@@ -0,0 +1,19 @@
+package de.ilume.dynamicsConnector.dto;
+
+import java.util.Map;
+
+/**
+ * Single operation inside a batch request
+ *
+ * @param operation The operation to execute, one of "getEntry", "createEntry", "updateEntry" or "deleteEntry"
+ * @param accountId The entry addressed by the operation, not needed for "createEntry"
+ * @param requestBody Data sent with "createEntry" and "updateEntry"
+ * @param changeSet Optional name of a change set. All operations of a change set are executed atomically,
+ * either all of them succeed or none is applied
+ */
+public record BatchOperation(
+        String operation,
+        String accountId,
+        Map<String, Object> requestBody,
+        String changeSet
+) {}
@@ -0,0 +1,61 @@
+package de.ilume.dynamicsConnector.dto;
+
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records written with one of the bulk actions of the Dataverse Web API
+ *
+ * @param action "create" (CreateMultiple), "update" (UpdateMultiple) or "upsert" (UpsertMultiple)
+ * @param entityName Logical name of the table, e.g. "account". Derived from the entity set if empty
+ * @param alternateKey Columns of the alternate key used to address the records of "update" and "upsert".
+ * If empty, the records are addressed by their primary key column
+ * @param records The records to write
+ * @param chunkSize Records sent per request, at most 1000
+ */
+public record BulkWrite(
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "bulk"),
+                group = "bulkGroup",
+                label = "Bulk action",
+                type = TemplateProperty.PropertyType.Dropdown,
+                choices = {
+                        @TemplateProperty.DropdownPropertyChoice(value = "create", label = "Create (CreateMultiple)"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "update", label = "Update (UpdateMultiple)"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "upsert", label = "Upsert (UpsertMultiple)"),
+                })
+        String action,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "bulk"),
+                group = "bulkGroup",
+                label = "Table logical name",
+                optional = true,
+                description = "Logical name of the table, e.g. \"account\". Derived from the entity set if empty.")
+        String entityName,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "bulk"),
+                group = "bulkGroup",
+                label = "Alternate key",
+                optional = true,
+                description = "Columns of the alternate key addressing the records of update and upsert (as a FEEL expression).")
+        List<String> alternateKey,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "bulk"),
+                group = "bulkGroup",
+                label = "Records",
+                description = "List of the records to write (as a FEEL expression).")
+        List<Map<String, Object>> records,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "bulk"),
+                group = "bulkGroup",
+                label = "Chunk size",
+                optional = true,
+                description = "Records sent per request, at most 1000.")
+        Integer chunkSize) {
+}
@@ -11,27 +11,34 @@ import java.util.Map;
  * Wrapper object for incoming requests to the connector
  *
  * @param authentication holds authorization values
- * @param target Sets the type of the changes your requests will execute (ex. "account" for table change requests)
+ * @param target Entity set your requests are executed on (ex. "accounts" or "contacts"), "account" is kept as alias of "accounts"
  * @param operation The selected operation your request will execute
  * @param fields Specifies through a list of Strings (as a FEEL expression) which fields should be listed inside
  * the returned record of your request
- * @param accountId Specify which entry you want to address with your request by stating its account ID
+ * @param accountId Specify which entry you want to address with your request by stating its ID
  * @param requestBody Specify additional data you want to add to your request (as a FEEL expression)
+ * @param batchOperations List of operations sent together as one batch request (as a FEEL expression)
+ * @param paging Controls how the pages of "getAll" and "fetchXml" are read, the page size also applies to "getChanges"
+ * @param valueOnly Only return the records of "getAll" and skip all other properties of the response while decoding
+ * @param bulk Records written by "bulk" through CreateMultiple, UpdateMultiple or UpsertMultiple
+ * @param query Filter, sort order, limit, expansion and aggregation of "getAll"
+ * @param projection Fields, annotations and maximum size of the result handed back to the process
+ * @param deltaLink Delta link returned by the previous "getChanges", or its next link to continue a truncated read.
+ * Empty for the initial read
+ * @param file Column and local file of "uploadFile" and "downloadFile"
+ * @param fetchXml FetchXML query of "fetchXml", read page by page through its paging cookie
  */
 public record DynamicsConnectorRequest(
         @NotNull Authentication authentication,
 
         @NotEmpty @TemplateProperty(
                 group = "operationGroup",
-                type = TemplateProperty.PropertyType.Dropdown,
-                choices = {
-                        @TemplateProperty.DropdownPropertyChoice(value = "account", label = "account"),
-                }
-        )
+                label = "Entity Set",
+                defaultValue = "accounts",
+                description = "Entity set addressed by the request, e.g. \"accounts\" or \"contacts\".")
         String target,
 
         @NotEmpty @TemplateProperty(
-                condition = @TemplateProperty.PropertyCondition(property = "target", equals = "account"),
                 group = "operationGroup",
                 type = TemplateProperty.PropertyType.Dropdown,
                 choices = {
@@ -40,21 +47,27 @@ public record DynamicsConnectorRequest(
                         @TemplateProperty.DropdownPropertyChoice(value = "createEntry", label = "Create Table Entry"),
                         @TemplateProperty.DropdownPropertyChoice(value = "updateEntry", label = "Update Table Entry"),
                         @TemplateProperty.DropdownPropertyChoice(value = "deleteEntry", label = "Delete Table Entry"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "batch", label = "Run Batch Request"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "bulk", label = "Bulk Write Records"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "getChanges", label = "Get Changes (Change Tracking)"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "uploadFile", label = "Upload File"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "downloadFile", label = "Download File"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "fetchXml", label = "Run FetchXML Query"),
                 }
         )
         String operation,
 
         @TemplateProperty(
-                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getEntry"),
+                condition = @TemplateProperty.PropertyCondition(property = "operation", oneOf = {"getEntry", "getAll", "getChanges"}),
                 group = "operationGroup",
                 label = "Fields",
                 description = "Specify through a String list which fields should be listed inside the returned record of your request.")
         List<String> fields,
 
         @TemplateProperty(
-                condition = @TemplateProperty.PropertyCondition(property = "operation", oneOf = {"getEntry", "updateEntry", "deleteEntry"}),
+                condition = @TemplateProperty.PropertyCondition(property = "operation", oneOf = {"getEntry", "updateEntry", "deleteEntry", "uploadFile", "downloadFile"}),
                 group = "operationGroup",
-                label = "Account ID")
+                label = "Entry ID")
         String accountId,
 
         @TemplateProperty(
@@ -62,5 +75,59 @@ public record DynamicsConnectorRequest(
                 label = "Request Body",
                 description = "Enter a FEEL expression for the request body."
         )
-        Map<String, Object> requestBody
-) {}
+        Map<String, Object> requestBody,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "batch"),
+                group = "operationGroup",
+                label = "Batch Operations",
+                description = "List of operations with \"operation\", \"accountId\", \"requestBody\" and an optional \"changeSet\". Operations of the same change set are applied atomically."
+        )
+        List<BatchOperation> batchOperations,
+
+        Paging paging,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getAll"),
+                group = "operationGroup",
+                label = "Records only",
+                optional = true,
+                type = TemplateProperty.PropertyType.Boolean,
+                description = "Only return the records under \"value\" (and \"@odata.nextLink\"), all other properties are skipped.")
+        Boolean valueOnly,
+
+        BulkWrite bulk,
+
+        Query query,
+
+        Projection projection,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getChanges"),
+                group = "operationGroup",
+                label = "Delta link",
+                optional = true,
+                description = "\"deltaLink\" returned by the previous read, or its \"nextLink\" to continue a truncated read. "
+                        + "Leave empty for the initial read of all rows.")
+        String deltaLink,
+
+        FileTransfer file,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "fetchXml"),
+                group = "queryGroup",
+                label = "FetchXML",
+                type = TemplateProperty.PropertyType.Text,
+                description = "FetchXML query on the entity set, e.g. with link entities, outer joins or aggregates. "
+                        + "Pages are read as set under \"Paging\".")
+        String fetchXml
+) {
+
+    /**
+     * Returns a copy of this request with the given request body
+     */
+    public DynamicsConnectorRequest withRequestBody(Map<String, Object> requestBody) {
+        return new DynamicsConnectorRequest(authentication, target, operation, fields, accountId, requestBody,
+                batchOperations, paging, valueOnly, bulk, query, projection, deltaLink, file, fetchXml);
+    }
+}
@@ -0,0 +1,30 @@
+package de.ilume.dynamicsConnector.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projection of a FetchXML response onto its records and the annotations needed to read the next page.
+ *
+ * @param value The records of the page
+ * @param pagingCookie Paging cookie of the page, passed on to the next page
+ * @param moreRecords Whether there are further pages
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record FetchPage(
+        List<Map<String, Object>> value,
+        @JsonProperty("@Microsoft.Dynamics.CRM.fetchxmlpagingcookie") String pagingCookie,
+        @JsonProperty("@Microsoft.Dynamics.CRM.morerecords") Boolean moreRecords
+) {
+
+    public List<Map<String, Object>> records() {
+        return value == null ? List.of() : value;
+    }
+
+    public boolean hasMoreRecords() {
+        return Boolean.TRUE.equals(moreRecords);
+    }
+}
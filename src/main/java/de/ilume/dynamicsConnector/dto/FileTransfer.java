@@ -0,0 +1,70 @@
+package de.ilume.dynamicsConnector.dto;
+
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+
+/**
+ * File moved between the connector runtime and a file or image column of an entry
+ *
+ * @param column Logical name of the file or image column, e.g. "sample_filecolumn"
+ * @param path Path of the file, relative to the file directory of the runtime
+ * @param fileName Name the uploaded file is stored with, the name of the local file if empty
+ * @param mimeType MIME type of the uploaded file, e.g. "application/pdf"
+ * @param entityName Logical name of the table, e.g. "account". Derived from the entity set if empty
+ * @param rangeStart First byte downloaded, the file is downloaded from the start if empty
+ * @param rangeEnd Last byte downloaded (inclusive), the file is downloaded to the end if empty
+ */
+public record FileTransfer(
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", oneOf = {"uploadFile", "downloadFile"}),
+                group = "fileGroup",
+                label = "Column",
+                description = "Logical name of the file or image column.")
+        String column,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", oneOf = {"uploadFile", "downloadFile"}),
+                group = "fileGroup",
+                label = "Path",
+                description = "Path of the file, relative to the file directory of the connector runtime.")
+        String path,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "uploadFile"),
+                group = "fileGroup",
+                label = "File name",
+                optional = true,
+                description = "Name the file is stored with, the name of the local file if empty.")
+        String fileName,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "uploadFile"),
+                group = "fileGroup",
+                label = "MIME type",
+                optional = true,
+                description = "e.g. \"application/pdf\", \"application/octet-stream\" if empty.")
+        String mimeType,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "uploadFile"),
+                group = "fileGroup",
+                label = "Table logical name",
+                optional = true,
+                description = "Logical name of the table, e.g. \"account\". Derived from the entity set if empty.")
+        String entityName,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "downloadFile"),
+                group = "fileGroup",
+                label = "Range start",
+                optional = true,
+                description = "First byte to download.")
+        Long rangeStart,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "downloadFile"),
+                group = "fileGroup",
+                label = "Range end",
+                optional = true,
+                description = "Last byte to download (inclusive).")
+        Long rangeEnd) {
+}
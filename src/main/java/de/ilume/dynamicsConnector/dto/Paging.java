@@ -0,0 +1,39 @@
+package de.ilume.dynamicsConnector.dto;
+
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+
+/**
+ * Controls how the records of "getAll" and "fetchXml" are read when the Dataverse Web API splits them into pages
+ *
+ * @param mode "firstPage" only returns the first page, "all" follows "@odata.nextLink" and returns the records of all
+ * pages, "count" follows all pages but only returns the number of records, holding no more than one page in memory
+ * @param pageSize Number of records per page, requested through "Prefer: odata.maxpagesize"
+ * @param maxRecords Maximum number of records to read, further pages are not requested
+ */
+public record Paging(
+        @TemplateProperty(
+                group = "pagingGroup",
+                label = "Paging mode",
+                optional = true,
+                type = TemplateProperty.PropertyType.Dropdown,
+                choices = {
+                        @TemplateProperty.DropdownPropertyChoice(value = "firstPage", label = "First page only"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "all", label = "All pages"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "count", label = "Count records"),
+                })
+        String mode,
+
+        @TemplateProperty(
+                group = "pagingGroup",
+                label = "Page size",
+                optional = true,
+                description = "Number of records requested per page.")
+        Integer pageSize,
+
+        @TemplateProperty(
+                group = "pagingGroup",
+                label = "Maximum records",
+                optional = true,
+                description = "Stop reading further pages once this number of records has been read.")
+        Integer maxRecords) {
+}
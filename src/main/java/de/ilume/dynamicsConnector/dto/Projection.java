@@ -0,0 +1,49 @@
+package de.ilume.dynamicsConnector.dto;
+
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+
+import java.util.List;
+
+/**
+ * Shapes the result before it is handed back to the process
+ *
+ * @param paths Fields kept in each record, nested fields separated by dots, e.g. "primarycontactid.fullname".
+ * All fields are kept if empty
+ * @param stripAnnotations Remove annotations like "@odata.etag" from the records and "@odata.context" from the result
+ * @param maxSize Largest result in bytes, capped by the runtime configuration
+ * @param onOversize "fail" or "truncate"
+ */
+public record Projection(
+        @TemplateProperty(
+                group = "resultGroup",
+                label = "Keep fields",
+                optional = true,
+                description = "Fields kept in each returned record, nested fields separated by dots (as a FEEL expression).")
+        List<String> paths,
+
+        @TemplateProperty(
+                group = "resultGroup",
+                label = "Strip annotations",
+                optional = true,
+                type = TemplateProperty.PropertyType.Boolean,
+                description = "Remove \"@odata.*\" and other annotations from the result.")
+        Boolean stripAnnotations,
+
+        @TemplateProperty(
+                group = "resultGroup",
+                label = "Maximum result size",
+                optional = true,
+                description = "Largest result in bytes of serialized JSON.")
+        Integer maxSize,
+
+        @TemplateProperty(
+                group = "resultGroup",
+                label = "If the result is too large",
+                optional = true,
+                type = TemplateProperty.PropertyType.Dropdown,
+                choices = {
+                        @TemplateProperty.DropdownPropertyChoice(value = "fail", label = "Fail the job"),
+                        @TemplateProperty.DropdownPropertyChoice(value = "truncate", label = "Drop records and mark the result as truncated"),
+                })
+        String onOversize) {
+}
@@ -0,0 +1,93 @@
+package de.ilume.dynamicsConnector.dto;
+
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+
+import java.util.List;
+
+/**
+ * Query options of "getAll", compiled to the OData query string so that the records are filtered, sorted and
+ * aggregated by the Web API instead of the process
+ *
+ * @param filter Conditions a record has to meet, all of them have to apply
+ * @param orderBy Sort order, e.g. ["name", "revenue desc"]
+ * @param top Maximum number of records returned
+ * @param expand Related records returned with each record
+ * @param apply Aggregation of the records, applied after the filter
+ */
+public record Query(
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getAll"),
+                group = "queryGroup",
+                label = "Filter",
+                optional = true,
+                description = "List of conditions with \"field\", \"operator\" (eq, ne, gt, ge, lt, le, contains, startswith, endswith, in) \"value\" and an optional \"type\" of the value (string, guid, dateTime, date, number, boolean) (as a FEEL expression).")
+        List<FilterCondition> filter,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getAll"),
+                group = "queryGroup",
+                label = "Order by",
+                optional = true,
+                description = "List of fields, optionally followed by \"asc\" or \"desc\" (as a FEEL expression).")
+        List<String> orderBy,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getAll"),
+                group = "queryGroup",
+                label = "Top",
+                optional = true,
+                description = "Maximum number of records returned.")
+        Integer top,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getAll"),
+                group = "queryGroup",
+                label = "Expand",
+                optional = true,
+                description = "List of navigation properties with \"property\" and an optional \"select\" list (as a FEEL expression).")
+        List<Expand> expand,
+
+        @TemplateProperty(
+                condition = @TemplateProperty.PropertyCondition(property = "operation", equals = "getAll"),
+                group = "queryGroup",
+                label = "Aggregation",
+                optional = true,
+                description = "Map with an optional \"groupBy\" list and \"aggregates\" with \"field\", \"method\" (sum, average, min, max, countdistinct, count) and \"alias\" (as a FEEL expression).")
+        Aggregation apply) {
+
+    /**
+     * @param field Field or navigation path, e.g. "name" or "primarycontactid/fullname"
+     * @param operator eq, ne, gt, ge, lt, le, contains, startswith, endswith or in
+     * @param value Compared value, a list for "in"
+     * @param type Literal type of the value: string, guid, dateTime, date, number or boolean, by default derived from
+     *             the JSON type, so a text value is compared as a string
+     */
+    public record FilterCondition(String field, String operator, Object value, String type) {
+
+        public FilterCondition(String field, String operator, Object value) {
+            this(field, operator, value, null);
+        }
+    }
+
+    /**
+     * @param property Navigation property, e.g. "primarycontactid"
+     * @param select Fields of the related records, all fields if empty
+     */
+    public record Expand(String property, List<String> select) {
+    }
+
+    /**
+     * @param groupBy Fields the records are grouped by, a single group if empty
+     * @param aggregates Aggregated values of each group
+     */
+    public record Aggregation(List<String> groupBy, List<Aggregate> aggregates) {
+    }
+
+    /**
+     * @param field Aggregated field, not needed for "count"
+     * @param method sum, average, min, max, countdistinct or count
+     * @param alias Name of the aggregated value in the result
+     */
+    public record Aggregate(String field, String method, String alias) {
+    }
+}
@@ -0,0 +1,27 @@
+package de.ilume.dynamicsConnector.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projection of a collection response onto its records and the link to the next page.
+ * All other properties are skipped while decoding instead of being materialized.
+ *
+ * @param value The records of the page
+ * @param nextLink URL of the next page, null on the last page
+ * @param deltaLink URL returning the changes since this response, only on the last page of a change tracking request
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ValuePage(
+        List<Map<String, Object>> value,
+        @JsonProperty("@odata.nextLink") String nextLink,
+        @JsonProperty("@odata.deltaLink") String deltaLink
+) {
+
+    public List<Map<String, Object>> records() {
+        return value == null ? List.of() : value;
+    }
+}
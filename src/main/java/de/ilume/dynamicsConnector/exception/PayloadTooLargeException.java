@@ -0,0 +1,10 @@
+package de.ilume.dynamicsConnector.exception;
+
+public class PayloadTooLargeException extends Exception{
+    public PayloadTooLargeException() {
+        super();
+    }
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package de.ilume.dynamicsConnector.exception;
+
+public class ServiceUnavailableException extends Exception{
+    public ServiceUnavailableException() {
+        super();
+    }
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package de.ilume.dynamicsConnector.exception;
+
+public class TooManyRequestsException extends Exception{
+    public TooManyRequestsException() {
+        super();
+    }
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package de.ilume.dynamicsConnector.exception;
+
+public class UnauthorizedException extends Exception{
+    public UnauthorizedException() {
+        super();
+    }
+    public UnauthorizedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,180 @@
+package de.ilume.dynamicsConnector.inbound;
+
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Polls an entity set for changes and hands them to the process one change at a time.
+ *
+ * Each poll reads the changes since the last checkpoint through change tracking and correlates at most
+ * "maxEventsPerTick" of them. Changes that do not fit into the poll, or whose correlation failed, stay
+ * pending and are correlated by the following polls before new changes are read, so a slow engine is
+ * never handed more than the maximum per poll. Once "maxPendingChanges" are pending no further pages are
+ * read, the next link of the last page read is kept and the read continues from it when they are correlated. The delta link is only checkpointed once all changes read
+ * with the previous one have been correlated, so after a restart changes may be read again, but none are
+ * lost. Changes correlated recently are remembered by ID and ETag and dropped when read again.
+ *
+ * Not thread-safe, the polls of a poller must not overlap.
+ */
+public class ChangePoller {
+
+    private static final Logger logger = LogManager.getLogger(ChangePoller.class);
+
+    private final ChangeTrackingService changeTrackingService;
+    private final CheckpointStore checkpointStore;
+    private final Settings settings;
+    private final Supplier<Mono<String>> accessToken;
+    private final Predicate<Map<String, Object>> correlate;
+
+    private final Deque<Map<String, Object>> pending = new ArrayDeque<>();
+    private final Set<String> correlated;
+    private String pendingDeltaLink;
+    private String nextLink;
+
+    /**
+     * @param settings What is polled and how many changes are correlated per poll
+     * @param accessToken Supplies the access token for each poll
+     * @param correlate Hands a change to the process, returns false if it has to be correlated again later
+     */
+    public ChangePoller(ChangeTrackingService changeTrackingService, CheckpointStore checkpointStore, Settings settings,
+                        Supplier<Mono<String>> accessToken, Predicate<Map<String, Object>> correlate) {
+        this.changeTrackingService = changeTrackingService;
+        this.checkpointStore = checkpointStore;
+        this.settings = settings;
+        this.accessToken = accessToken;
+        this.correlate = correlate;
+        this.correlated = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > settings.deduplicationWindow();
+            }
+        });
+    }
+
+    /**
+     * Reads the changes if none are pending and correlates up to the maximum per poll.
+     *
+     * @return Number of changes handed to the process
+     */
+    public Mono<Integer> poll() {
+        return Mono.defer(() -> pending.isEmpty() && pendingDeltaLink == null ? readChanges() : Mono.<Void>empty())
+                // correlating blocks on the engine
+                .then(Mono.fromCallable(this::correlatePending).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<Void> readChanges() {
+        String deltaLink = checkpointStore.get(settings.checkpointKey());
+        // without emitting the initial rows their pages are only followed up to the delta link
+        boolean emit = deltaLink != null || settings.emitInitialRows();
+        String link = nextLink != null ? nextLink : deltaLink;
+        nextLink = null;
+        return Mono.defer(accessToken)
+                .flatMapMany(token -> changeTrackingService.pages(settings.entitySetUrl(), settings.fields(), link,
+                        settings.pageSize(), token))
+                .doOnNext(page -> {
+                    if (emit) {
+                        enqueue(page.records());
+                    }
+                    if (page.deltaLink() != null) {
+                        pendingDeltaLink = page.deltaLink();
+                    } else if (pending.size() >= settings.maxPendingChanges()) {
+                        nextLink = page.nextLink();
+                    }
+                })
+                // the following pages are read once the pending changes have been correlated
+                .takeUntil(page -> nextLink != null)
+                .then(Mono.fromRunnable(() -> logger.debug("Read {} changes of {}", pending.size(),
+                        settings.entitySetUrl().collection())));
+    }
+
+    private void enqueue(List<Map<String, Object>> records) {
+        String entitySet = settings.entitySetUrl().entitySet();
+        for (Map<String, Object> record : records) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("entitySet", entitySet);
+            if (ChangeTrackingService.isDeleted(record)) {
+                event.put("type", "deleted");
+                event.put("id", record.get("id"));
+            } else {
+                event.put("type", "changed");
+                event.put("id", record.get(settings.idField()));
+                event.put("record", record);
+            }
+            pending.add(event);
+        }
+    }
+
+    private int correlatePending() {
+        int emitted = 0;
+        while (emitted < settings.maxEventsPerTick() && !pending.isEmpty()) {
+            Map<String, Object> event = pending.peek();
+            String key = deduplicationKey(event);
+            if (!correlated.contains(key)) {
+                boolean handled;
+                try {
+                    handled = correlate.test(event);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to correlate change " + event.get("id") + ", retrying with the next poll", e);
+                    handled = false;
+                }
+                if (!handled) {
+                    break;
+                }
+                correlated.add(key);
+                emitted++;
+            }
+            pending.poll();
+        }
+
+        if (pending.isEmpty() && pendingDeltaLink != null) {
+            checkpointStore.put(settings.checkpointKey(), pendingDeltaLink);
+            pendingDeltaLink = null;
+        }
+        return emitted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String deduplicationKey(Map<String, Object> event) {
+        if (event.get("record") instanceof Map<?, ?> record) {
+            Object version = record.get("@odata.etag");
+            if (version == null) {
+                version = record.get("versionnumber");
+            }
+            return event.get("id") + "/" + (version != null ? version : ((Map<String, Object>) record).hashCode());
+        }
+        return event.get("id") + "/" + event.get("type");
+    }
+
+    public int pendingChanges() {
+        return pending.size();
+    }
+
+    /**
+     * @param entitySetUrl URLs of the polled entity set
+     * @param fields Fields of the changed rows, all fields if empty
+     * @param pageSize Rows per page, null to use the server default
+     * @param idField Primary key column of the rows
+     * @param maxEventsPerTick Changes correlated per poll
+     * @param maxPendingChanges Changes read ahead, further pages are read once they have been correlated
+     * @param deduplicationWindow Recently correlated changes remembered to drop changes read twice
+     * @param emitInitialRows Whether the rows existing when polling starts are correlated
+     * @param checkpointKey Identifies the checkpoint of the polled entity set
+     */
+    public record Settings(EntitySetUrl entitySetUrl, List<String> fields, Integer pageSize, String idField,
+                           int maxEventsPerTick, int maxPendingChanges, int deduplicationWindow, boolean emitInitialRows, String checkpointKey) {
+    }
+}
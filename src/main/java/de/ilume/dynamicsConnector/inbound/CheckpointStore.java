@@ -0,0 +1,80 @@
+package de.ilume.dynamicsConnector.inbound;
+
+import de.ilume.dynamicsConnector.PollingProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the delta link up to which the changes of a polled entity set have been correlated. If a checkpoint
+ * directory is configured every checkpoint is also written to a file, replaced atomically, so that polling
+ * resumes where it stopped after a restart.
+ */
+@Component
+public class CheckpointStore {
+
+    private static final Logger logger = LogManager.getLogger(CheckpointStore.class);
+
+    private final ConcurrentMap<String, String> checkpoints = new ConcurrentHashMap<>();
+    private final Path directory;
+
+    @Autowired
+    public CheckpointStore(PollingProperties properties) {
+        this(properties.getCheckpointDirectory() == null ? null : Path.of(properties.getCheckpointDirectory()));
+    }
+
+    /**
+     * @param directory Directory the checkpoints are written to, null to keep them in memory only
+     */
+    public CheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The delta link of the last checkpoint, null if the entity set has not been polled yet
+     */
+    public String get(String key) {
+        return checkpoints.computeIfAbsent(key, this::read);
+    }
+
+    public void put(String key, String deltaLink) {
+        checkpoints.put(key, deltaLink);
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.writeString(temp, deltaLink, StandardCharsets.UTF_8);
+            Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write checkpoint " + key, e);
+        }
+    }
+
+    private String read(String key) {
+        if (directory == null || !Files.exists(file(key))) {
+            return null;
+        }
+        try {
+            return Files.readString(file(key), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Failed to read checkpoint " + key + ", polling starts over", e);
+            return null;
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".checkpoint");
+    }
+}
@@ -0,0 +1,39 @@
+package de.ilume.dynamicsConnector.inbound;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the beans of the application context to connectors the runtime creates through their no-args constructor,
+ * e.g. after discovering them through the service loader, so that they use the same configured clients and stores
+ * as the connectors taken from the context.
+ */
+@Component
+public class ConnectorBeans implements ApplicationContextAware, DisposableBean {
+
+    private static volatile ApplicationContext applicationContext;
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) {
+        applicationContext = context;
+    }
+
+    @Override
+    public void destroy() {
+        applicationContext = null;
+    }
+
+    /**
+     * @throws IllegalStateException if the connector is created outside of a running application context
+     */
+    public static <T> T get(Class<T> type) {
+        ApplicationContext context = applicationContext;
+        if (context == null) {
+            throw new IllegalStateException("No application context to take the " + type.getSimpleName()
+                    + " from, the connector has to run inside the Spring connector runtime of this application");
+        }
+        return context.getBean(type);
+    }
+}
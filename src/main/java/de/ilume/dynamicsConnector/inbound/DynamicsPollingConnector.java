@@ -0,0 +1,179 @@
+package de.ilume.dynamicsConnector.inbound;
+
+import de.ilume.dynamicsConnector.ClientMetrics;
+import de.ilume.dynamicsConnector.PollingProperties;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.exception.UnauthorizedException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.BulkService;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
+import io.camunda.connector.api.annotation.InboundConnector;
+import io.camunda.connector.api.inbound.CorrelationResult;
+import io.camunda.connector.api.inbound.Health;
+import io.camunda.connector.api.inbound.InboundConnectorContext;
+import io.camunda.connector.api.inbound.InboundConnectorExecutable;
+import io.camunda.connector.generator.dsl.BpmnType;
+import io.camunda.connector.generator.java.annotation.ElementTemplate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Inbound connector starting or continuing process instances for the changes of an entity set. The entity set
+ * is polled through change tracking on a fixed interval and every created, changed or deleted row is correlated
+ * as one event with the variables "entitySet", "type" ("changed" or "deleted"), "id" and "record".
+ *
+ * Polls never overlap: a tick arriving while the previous poll is still correlating is dropped.
+ * See {@link ChangePoller} for checkpointing and deduplication.
+ */
+@InboundConnector(name = "IlumeDynamicsPollingConnector", type = "io.ilume:dynamics-polling:1")
+@ElementTemplate(
+        id = "ilume.connector.dynamics.polling.v1",
+        name = "IlumeDynamicsPollingConnector",
+        version = 1,
+        description = "Starts or continues process instances for the rows created, changed or deleted in a microsoft dataverse table.",
+        icon = "ilume_logo.svg",
+        documentationRef = "https://bitbucket.org/sma-bitbucket-cloud/camunda-8-bedarfsanforderung/src/master/CustomPostgreSqlConnector/README.md",
+        propertyGroups = {
+                @ElementTemplate.PropertyGroup(id = "authenticationGroup", label = "Enter Authentication Details"),
+                @ElementTemplate.PropertyGroup(id = "pollingGroup", label = "Polling")
+        },
+        elementTypes = {
+                @ElementTemplate.ConnectorElementType(
+                        appliesTo = BpmnType.START_EVENT,
+                        elementType = BpmnType.START_EVENT,
+                        templateIdOverride = "ilume.connector.dynamics.polling.start.v1",
+                        templateNameOverride = "IlumeDynamicsPollingConnector Start Event"),
+                @ElementTemplate.ConnectorElementType(
+                        appliesTo = {BpmnType.INTERMEDIATE_THROW_EVENT, BpmnType.INTERMEDIATE_CATCH_EVENT},
+                        elementType = BpmnType.INTERMEDIATE_CATCH_EVENT,
+                        templateIdOverride = "ilume.connector.dynamics.polling.intermediate.v1",
+                        templateNameOverride = "IlumeDynamicsPollingConnector Intermediate Catch Event")
+        },
+        inputDataClass = DynamicsPollingRequest.class)
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+@Component
+public class DynamicsPollingConnector implements InboundConnectorExecutable<InboundConnectorContext> {
+
+    private static final Logger logger = LogManager.getLogger(DynamicsPollingConnector.class);
+
+    private final ChangeTrackingService changeTrackingService;
+    private final GenerateTokenService generateTokenService;
+    private final RequestUrls requestUrls;
+    private final CheckpointStore checkpointStore;
+    private final PollingProperties properties;
+
+    private Disposable polling;
+
+    /**
+     * Used when the runtime instantiates the connector found by the service loader instead of taking it from
+     * the application context. The connector still polls through the beans of the context, it fails if there is none.
+     */
+    public DynamicsPollingConnector() {
+        this(ConnectorBeans.get(ChangeTrackingService.class), ConnectorBeans.get(GenerateTokenService.class),
+                ConnectorBeans.get(RequestUrls.class), ConnectorBeans.get(CheckpointStore.class),
+                ConnectorBeans.get(PollingProperties.class));
+    }
+
+    @Autowired
+    public DynamicsPollingConnector(ChangeTrackingService changeTrackingService, GenerateTokenService generateTokenService,
+                                    RequestUrls requestUrls, CheckpointStore checkpointStore, PollingProperties properties) {
+        this.changeTrackingService = changeTrackingService;
+        this.generateTokenService = generateTokenService;
+        this.requestUrls = requestUrls;
+        this.checkpointStore = checkpointStore;
+        this.properties = properties;
+    }
+
+    @Override
+    public void activate(InboundConnectorContext context) {
+        DynamicsPollingRequest request = context.bindProperties(DynamicsPollingRequest.class);
+        Authentication authentication = request.authentication();
+        EntitySetUrl entitySetUrl = requestUrls.entitySet(authentication.base(), request.target());
+
+        ChangePoller poller = new ChangePoller(changeTrackingService, checkpointStore, settings(request, entitySetUrl),
+                () -> generateTokenService.getToken(authentication.base(), authentication.client(),
+                        authentication.secret(), authentication.scope(), authentication.access()),
+                event -> isCorrelated(context.correlateWithResult(event)));
+
+        Duration interval = interval(request);
+        logger.info("Polling " + entitySetUrl.collection() + " for changes every " + interval);
+        polling = Flux.interval(Duration.ZERO, interval)
+                .onBackpressureDrop(tick -> logger.debug("Skipping poll, the previous one is still running"))
+                .concatMap(tick -> poller.poll()
+                        .doOnNext(emitted -> context.reportHealth(Health.up()))
+                        .onErrorResume(throwable -> {
+                            logger.warn("Failed to poll " + entitySetUrl.collection(), throwable);
+                            if (throwable instanceof UnauthorizedException) {
+                                // the next poll requests a new token instead of sending the rejected one again
+                                generateTokenService.evictToken(authentication.base(), authentication.client(),
+                                        authentication.secret(), authentication.scope(), authentication.access());
+                            }
+                            context.reportHealth(Health.down(throwable));
+                            return Mono.empty();
+                        })
+                        .contextWrite(ClientMetrics.operation("poll"))
+                        .contextWrite(ThrottlingFilter.clientId(authentication.client())), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void deactivate() {
+        if (polling != null) {
+            polling.dispose();
+        }
+    }
+
+    /**
+     * A change whose activation condition does not apply is consumed as well, it would not apply on a retry either
+     */
+    private static boolean isCorrelated(CorrelationResult result) {
+        return result instanceof CorrelationResult.Success
+                || result instanceof CorrelationResult.Failure.ActivationConditionNotMet;
+    }
+
+    private ChangePoller.Settings settings(DynamicsPollingRequest request, EntitySetUrl entitySetUrl) {
+        String idField = request.idField() == null || request.idField().isEmpty()
+                ? BulkService.entityName(entitySetUrl.entitySet()) + "id"
+                : request.idField();
+        int maxEventsPerTick = request.maxEventsPerTick() != null && request.maxEventsPerTick() > 0
+                ? request.maxEventsPerTick()
+                : properties.getMaxEventsPerTick();
+        return new ChangePoller.Settings(entitySetUrl, request.fields(), request.pageSize(), idField, maxEventsPerTick,
+                Math.max(properties.getMaxPendingChanges(), maxEventsPerTick), properties.getDeduplicationWindow(), Boolean.TRUE.equals(request.emitInitialRows()),
+                checkpointKey(request, entitySetUrl));
+    }
+
+    private Duration interval(DynamicsPollingRequest request) {
+        Duration interval = request.interval() != null ? request.interval() : properties.getInterval();
+        return interval.compareTo(properties.getMinInterval()) < 0 ? properties.getMinInterval() : interval;
+    }
+
+    /**
+     * The delta link depends on the environment, the application user, the entity set and the selected fields
+     */
+    private static String checkpointKey(DynamicsPollingRequest request, EntitySetUrl entitySetUrl) {
+        String source = entitySetUrl.collection() + "|" + request.authentication().client() + "|" + request.fields();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
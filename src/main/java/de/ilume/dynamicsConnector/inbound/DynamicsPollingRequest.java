@@ -0,0 +1,76 @@
+package de.ilume.dynamicsConnector.inbound;
+
+import de.ilume.dynamicsConnector.dto.Authentication;
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Properties of a start event or intermediate catch event polling an entity set for changes
+ *
+ * @param authentication holds authorization values
+ * @param target Entity set polled for changes (ex. "accounts" or "contacts")
+ * @param fields Fields of the changed rows passed to the process, all fields if empty
+ * @param interval Time between two polls as ISO-8601 duration, e.g. "PT30S"
+ * @param maxEventsPerTick Changes correlated per poll, the remaining changes follow on the next polls
+ * @param pageSize Number of rows per page read from the Web API
+ * @param idField Primary key column of the rows, derived from the entity set if empty ("accounts" to "accountid")
+ * @param emitInitialRows Whether the rows existing when polling starts are correlated as well. Otherwise only
+ *                        changes made afterwards are
+ */
+public record DynamicsPollingRequest(
+        @NotNull Authentication authentication,
+
+        @NotEmpty @TemplateProperty(
+                group = "pollingGroup",
+                label = "Entity Set",
+                defaultValue = "accounts",
+                description = "Entity set polled for changes, e.g. \"accounts\" or \"contacts\". Change tracking has to be enabled for its table.")
+        String target,
+
+        @TemplateProperty(
+                group = "pollingGroup",
+                label = "Fields",
+                optional = true,
+                description = "Fields of the changed rows passed to the process, all fields if empty.")
+        List<String> fields,
+
+        @TemplateProperty(
+                group = "pollingGroup",
+                label = "Interval",
+                optional = true,
+                description = "Time between two polls as ISO-8601 duration, e.g. \"PT30S\".")
+        Duration interval,
+
+        @TemplateProperty(
+                group = "pollingGroup",
+                label = "Maximum changes per poll",
+                optional = true,
+                description = "Changes correlated per poll, the remaining changes follow on the next polls.")
+        Integer maxEventsPerTick,
+
+        @TemplateProperty(
+                group = "pollingGroup",
+                label = "Page size",
+                optional = true,
+                description = "Number of rows requested per page.")
+        Integer pageSize,
+
+        @TemplateProperty(
+                group = "pollingGroup",
+                label = "ID field",
+                optional = true,
+                description = "Primary key column of the rows, e.g. \"accountid\". Derived from the entity set if empty.")
+        String idField,
+
+        @TemplateProperty(
+                group = "pollingGroup",
+                label = "Emit existing rows",
+                optional = true,
+                type = TemplateProperty.PropertyType.Boolean,
+                description = "Also correlate the rows existing when polling starts, otherwise only later changes are.")
+        Boolean emitInitialRows) {
+}
@@ -0,0 +1,134 @@
+package de.ilume.dynamicsConnector.isolation;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one environment. While closed the outcome of the most recent requests is kept in a
+ * ring buffer, and the circuit opens once the failure rate reaches the threshold. An open circuit rejects
+ * all requests until the open duration has passed, then lets a few probe requests through (half open):
+ * if all of them succeed the circuit closes, a single failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoTime;
+
+    private final boolean[] failures;
+    private int recorded;
+    private int next;
+    private int failed;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public CircuitBreaker(int failureRateThreshold, int slidingWindowSize, int minimumCalls, long openNanos, int halfOpenCalls) {
+        this(failureRateThreshold, slidingWindowSize, minimumCalls, openNanos, halfOpenCalls, System::nanoTime);
+    }
+
+    public CircuitBreaker(int failureRateThreshold, int slidingWindowSize, int minimumCalls, long openNanos,
+                          int halfOpenCalls, LongSupplier nanoTime) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.failures = new boolean[Math.max(slidingWindowSize, 1)];
+        this.minimumCalls = Math.min(Math.max(minimumCalls, 1), failures.length);
+        this.openNanos = openNanos;
+        this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return Whether a request may be sent. Every permitted request has to report its outcome.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoTime.getAsLong() - openUntil < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenCalls) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && failed * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * Returns the permit of a request without outcome, e.g. a cancelled or throttled one.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openUntil >= 0) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == failures.length) {
+            if (failures[next]) {
+                failed--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failed++;
+        }
+        next = (next + 1) % failures.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = nanoTime.getAsLong() + openNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failed = 0;
+    }
+}
@@ -0,0 +1,173 @@
+package de.ilume.dynamicsConnector.isolation;
+
+import de.ilume.dynamicsConnector.IsolationProperties;
+import de.ilume.dynamicsConnector.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Isolates the environments from each other, so that a degraded environment cannot take up the capacity
+ * of the connector. Every environment gets a bulkhead capping its requests in flight, each until its response
+ * body has been read, and a {@link CircuitBreaker} failing its requests at once after repeated server errors,
+ * connection errors or timeouts. Rejected requests fail with {@link ServiceUnavailableException} without being sent.
+ *
+ * The environment is the host of the request, for the token endpoint the host and tenant, since all
+ * tenants share the same host. 4xx responses, including throttled ones, do not count as failures.
+ *
+ * State is exposed per environment as "dynamics.connector.circuit.state" (0 closed, 1 half open, 2 open),
+ * "dynamics.connector.bulkhead.active" and "dynamics.connector.isolation.rejected" tagged with the reason.
+ */
+public class IsolationFilter implements ExchangeFilterFunction {
+
+    private static final Logger logger = LogManager.getLogger(IsolationFilter.class);
+
+    private final IsolationProperties properties;
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Environment> environments = new ConcurrentHashMap<>();
+
+    public IsolationFilter(IsolationProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!properties.isEnabled()) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> {
+            Environment environment = environments.computeIfAbsent(environment(request.url()), this::register);
+
+            if (environment.active.incrementAndGet() > properties.getMaxConcurrentCalls()) {
+                environment.active.decrementAndGet();
+                environment.full.increment();
+                return Mono.error(new ServiceUnavailableException("Too many requests in flight to " + environment.name
+                        + ", the environment responds too slowly"));
+            }
+            if (!environment.circuitBreaker.tryAcquire()) {
+                environment.active.decrementAndGet();
+                environment.open.increment();
+                return Mono.error(new ServiceUnavailableException("Requests to " + environment.name
+                        + " are suspended after repeated failures"));
+            }
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicBoolean responded = new AtomicBoolean();
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    environment.active.decrementAndGet();
+                }
+            };
+            return next.exchange(request)
+                    .doOnNext(response -> {
+                        if (done.compareAndSet(false, true)) {
+                            if (response.statusCode().is5xxServerError()) {
+                                failure(environment);
+                            } else if (response.statusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+                                environment.circuitBreaker.onIgnored();
+                            } else {
+                                environment.circuitBreaker.onSuccess();
+                            }
+                        }
+                    })
+                    // the request stays in flight until its body has been read, released or cancelled
+                    .map(response -> {
+                        responded.set(true);
+                        return response.mutate().body(body -> body.doFinally(signal -> release.run())).build();
+                    })
+                    .doOnError(throwable -> {
+                        if (done.compareAndSet(false, true)) {
+                            failure(environment);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (done.compareAndSet(false, true)) {
+                            environment.circuitBreaker.onIgnored();
+                        }
+                        if (!responded.get()) {
+                            release.run();
+                        }
+                    });
+        });
+    }
+
+    private void failure(Environment environment) {
+        CircuitBreaker.State before = environment.circuitBreaker.state();
+        environment.circuitBreaker.onFailure();
+        if (before != CircuitBreaker.State.OPEN && environment.circuitBreaker.state() == CircuitBreaker.State.OPEN) {
+            logger.warn("Circuit of " + environment.name + " opened, requests fail for " + properties.getOpenDuration());
+        }
+    }
+
+    /**
+     * Host of the request, followed by the tenant for requests to the token endpoint
+     */
+    public static String environment(URI url) {
+        String host = url.getHost() == null ? "" : url.getHost();
+        if (host.startsWith("login.")) {
+            String path = url.getPath() == null ? "" : url.getPath();
+            int end = path.indexOf('/', 1);
+            return host + (end > 0 ? path.substring(0, end) : path);
+        }
+        return host;
+    }
+
+    public CircuitBreaker.State state(String environment) {
+        Environment existing = environments.get(environment);
+        return existing == null ? CircuitBreaker.State.CLOSED : existing.circuitBreaker.state();
+    }
+
+    private Environment register(String name) {
+        Environment environment = new Environment(name, new CircuitBreaker(properties.getFailureRateThreshold(),
+                properties.getSlidingWindowSize(), properties.getMinimumCalls(), properties.getOpenDuration().toNanos(),
+                properties.getHalfOpenCalls()), rejected(name, "circuit_open"), rejected(name, "bulkhead_full"));
+        Gauge.builder("dynamics.connector.circuit.state", environment.circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("State of the circuit breaker: 0 closed, 1 half open, 2 open")
+                .tag("environment", name)
+                .register(registry);
+        Gauge.builder("dynamics.connector.bulkhead.active", environment.active, AtomicInteger::get)
+                .description("Requests in flight to the environment")
+                .tag("environment", name)
+                .register(registry);
+        return environment;
+    }
+
+    private Counter rejected(String environment, String reason) {
+        return Counter.builder("dynamics.connector.isolation.rejected")
+                .description("Requests failed without being sent")
+                .tag("environment", environment)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static final class Environment {
+        private final String name;
+        private final CircuitBreaker circuitBreaker;
+        private final Counter open;
+        private final Counter full;
+        private final AtomicInteger active = new AtomicInteger();
+
+        private Environment(String name, CircuitBreaker circuitBreaker, Counter open, Counter full) {
+            this.name = name;
+            this.circuitBreaker = circuitBreaker;
+            this.open = open;
+            this.full = full;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package de.ilume.dynamicsConnector.metadata;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Definition of a table as far as it is needed to check and convert requests.
+ *
+ * @param logicalName Logical name of the table, e.g. account
+ * @param entitySetName Name of its entity set, e.g. accounts
+ * @param primaryIdAttribute Column holding the ID of a row
+ * @param attributes Columns by logical name
+ * @param lookups Navigation properties of each lookup column by its logical name, several for
+ *                lookups that can reference more than one table
+ */
+public record EntityMetadata(
+        String logicalName,
+        String entitySetName,
+        String primaryIdAttribute,
+        Map<String, Attribute> attributes,
+        Map<String, List<Lookup>> lookups
+) {
+
+    /**
+     * A column of the table
+     *
+     * @param logicalName Logical name of the column
+     * @param type Value of "AttributeType", e.g. String, Money, DateTime, Lookup or Picklist
+     * @param validForCreate Whether the column can be set when a row is created
+     * @param validForUpdate Whether the column can be changed
+     * @param validForRead Whether the column can be selected
+     */
+    public record Attribute(String logicalName, String type, boolean validForCreate, boolean validForUpdate,
+                            boolean validForRead) {
+
+        public boolean isLookup() {
+            return "Lookup".equals(type) || "Customer".equals(type) || "Owner".equals(type);
+        }
+    }
+
+    /**
+     * A single-valued navigation property set through "@odata.bind"
+     *
+     * @param navigationProperty Name of the navigation property, e.g. parentcustomerid_account
+     * @param referencedEntitySet Entity set of the referenced table, e.g. accounts
+     */
+    public record Lookup(String navigationProperty, String referencedEntitySet) {
+    }
+}
@@ -0,0 +1,209 @@
+package de.ilume.dynamicsConnector.metadata;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks fields and request bodies against the definition of a table before they are sent, and converts
+ * the values of a request body to the types the Web API expects for their columns: dates as ISO 8601 with
+ * offset, money and decimals as numbers, option sets as integers and lookups as "@odata.bind" references.
+ * All problems of a request are reported at once.
+ */
+public final class RequestSchema {
+
+    private static final Pattern REFERENCE = Pattern.compile("/?([A-Za-z_][A-Za-z0-9_]*)\\(([0-9A-Fa-f-]{36})\\)");
+    private static final Pattern LOOKUP_VALUE = Pattern.compile("_([a-z0-9_]+)_value");
+
+    private RequestSchema() {
+    }
+
+    /**
+     * Checks that all fields can be selected. Lookups have to be selected as "_{column}_value".
+     *
+     * @throws IllegalArgumentException listing the fields that cannot be selected
+     */
+    public static void checkFields(EntityMetadata entity, List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return;
+        }
+        List<String> problems = new ArrayList<>();
+        for (String field : fields) {
+            Matcher lookupValue = LOOKUP_VALUE.matcher(field == null ? "" : field);
+            EntityMetadata.Attribute attribute = lookupValue.matches()
+                    ? entity.attributes().get(lookupValue.group(1))
+                    : entity.attributes().get(field);
+            if (attribute == null) {
+                problems.add(field + " is not a column of " + entity.logicalName());
+            } else if (lookupValue.matches() && !attribute.isLookup()) {
+                problems.add(field + " is not a lookup, select it as " + attribute.logicalName());
+            } else if (!attribute.validForRead()) {
+                problems.add(field + " cannot be read");
+            } else if (attribute.isLookup() && !lookupValue.matches()) {
+                problems.add(field + " is a lookup, select it as _" + field + "_value");
+            }
+        }
+        fail(entity, problems);
+    }
+
+    /**
+     * Checks a request body and converts its values to the types of their columns
+     *
+     * @param body Request body of "createEntry" or "updateEntry"
+     * @param create Whether the body creates a row, otherwise it updates one
+     * @return The converted body, lookups are replaced by their "@odata.bind" references
+     * @throws IllegalArgumentException listing all unknown columns, columns that cannot be written and invalid values
+     */
+    public static Map<String, Object> serialize(EntityMetadata entity, Map<String, Object> body, boolean create) {
+        if (body == null || body.isEmpty()) {
+            return body;
+        }
+        List<String> problems = new ArrayList<>();
+        Map<String, Object> serialized = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : body.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            EntityMetadata.Attribute attribute = entity.attributes().get(key);
+            if (attribute == null) {
+                // annotations, references and deep inserts through navigation properties are passed on
+                if (key.contains("@") || value instanceof Map<?, ?> || value instanceof List<?>) {
+                    serialized.put(key, value);
+                } else {
+                    problems.add(key + " is not a column of " + entity.logicalName());
+                }
+                continue;
+            }
+            if (create ? !attribute.validForCreate() : !attribute.validForUpdate()) {
+                problems.add(key + " cannot be " + (create ? "set on create" : "updated"));
+                continue;
+            }
+            try {
+                if (attribute.isLookup()) {
+                    EntityMetadata.Lookup lookup = lookup(entity, key, value);
+                    serialized.put(lookup.navigationProperty() + "@odata.bind",
+                            value == null ? null : "/" + lookup.referencedEntitySet() + "(" + id(value) + ")");
+                } else {
+                    serialized.put(key, value == null ? null : convert(attribute.type(), value));
+                }
+            } catch (IllegalArgumentException | ArithmeticException | DateTimeParseException e) {
+                problems.add(key + ": " + e.getMessage());
+            }
+        }
+        fail(entity, problems);
+        return serialized;
+    }
+
+    private static Object convert(String type, Object value) {
+        return switch (type) {
+            case "String", "Memo", "EntityName" -> {
+                if (!(value instanceof CharSequence)) {
+                    throw new IllegalArgumentException("expected text, got " + value);
+                }
+                yield value.toString();
+            }
+            case "Money", "Decimal", "Double" -> decimal(value);
+            case "Integer", "BigInt" -> wholeNumber(value).longValueExact();
+            case "Picklist", "State", "Status" -> wholeNumber(value).intValueExact();
+            case "Boolean" -> {
+                if (value instanceof Boolean) {
+                    yield value;
+                }
+                String text = value.toString().toLowerCase(Locale.ROOT);
+                if (!text.equals("true") && !text.equals("false")) {
+                    throw new IllegalArgumentException("expected true or false, got " + value);
+                }
+                yield Boolean.valueOf(text);
+            }
+            case "DateTime" -> dateTime(value);
+            case "Uniqueidentifier" -> UUID.fromString(value.toString()).toString();
+            default -> value;
+        };
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof Boolean || value instanceof Map<?, ?> || value instanceof List<?>) {
+            throw new IllegalArgumentException("expected a number, got " + value);
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected a number, got " + value);
+        }
+    }
+
+    private static BigDecimal wholeNumber(Object value) {
+        BigDecimal number = decimal(value);
+        if (number.stripTrailingZeros().scale() > 0) {
+            throw new IllegalArgumentException("expected a whole number, got " + value);
+        }
+        return number;
+    }
+
+    private static String dateTime(Object value) {
+        if (value instanceof Number epochMillis) {
+            return Instant.ofEpochMilli(epochMillis.longValue()).toString();
+        }
+        if (value instanceof TemporalAccessor temporal && !(value instanceof LocalDate)) {
+            return Instant.from(temporal).toString();
+        }
+        String text = value.toString().trim();
+        if (text.length() == 10) {
+            // date only columns
+            return LocalDate.parse(text).toString();
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant().toString();
+        } catch (DateTimeParseException e) {
+            try {
+                return ZonedDateTime.parse(text).toInstant().toString();
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("expected an ISO 8601 date or date and time with offset, got " + value);
+            }
+        }
+    }
+
+    private static EntityMetadata.Lookup lookup(EntityMetadata entity, String column, Object value) {
+        List<EntityMetadata.Lookup> lookups = entity.lookups().getOrDefault(column, List.of());
+        if (lookups.isEmpty()) {
+            throw new IllegalArgumentException("lookup without navigation property");
+        }
+        Matcher reference = value == null ? null : REFERENCE.matcher(value.toString().trim());
+        if (reference != null && reference.matches()) {
+            String entitySet = reference.group(1);
+            return lookups.stream()
+                    .filter(lookup -> lookup.referencedEntitySet().equals(entitySet))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("cannot reference " + entitySet));
+        }
+        if (lookups.size() > 1) {
+            throw new IllegalArgumentException("references one of " + lookups.stream()
+                    .map(EntityMetadata.Lookup::referencedEntitySet).toList() + ", pass the value as entityset(id)");
+        }
+        return lookups.get(0);
+    }
+
+    private static String id(Object value) {
+        String text = value.toString().trim();
+        Matcher reference = REFERENCE.matcher(text);
+        return UUID.fromString(reference.matches() ? reference.group(2) : text).toString();
+    }
+
+    private static void fail(EntityMetadata entity, List<String> problems) {
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Invalid request for " + entity.entitySetName() + ": "
+                    + String.join(", ", problems));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package de.ilume.dynamicsConnector.odata;
+
+import java.util.List;
+
+/**
+ * URLs of one entity set of an environment, built once and shared by all jobs addressing it.
+ *
+ * @param serviceUrl URL of the Web API, e.g. https://org.crm.dynamics.com/api/data/v9.2
+ * @param entitySet Name of the entity set, e.g. accounts
+ * @param collection URL of the entity set
+ */
+public record EntitySetUrl(String serviceUrl, String entitySet, String collection) {
+
+    public EntitySetUrl(String serviceUrl, String entitySet) {
+        this(serviceUrl, entitySet, serviceUrl + "/" + entitySet);
+    }
+
+    /**
+     * URL of a single entry, the collection itself if the ID is empty
+     *
+     * @throws IllegalArgumentException if the ID is neither a GUID nor an alternate key, see {@link ODataLiteral#key}
+     */
+    public String entry(String id) {
+        return id == null || id.isEmpty() ? collection : collection + "(" + ODataLiteral.key(id) + ")";
+    }
+
+    /**
+     * URL of a single entry limited to the given fields
+     *
+     * @param id ID of the entry, the collection itself is addressed if empty
+     * @param fields Fields listed in "$select", all fields are returned if empty
+     */
+    public String entry(String id, List<String> fields) {
+        String select = RequestUrls.select(fields);
+        return select.isEmpty() ? entry(id) : entry(id) + "?$select=" + select;
+    }
+
+    public String batch() {
+        return serviceUrl + "/$batch";
+    }
+}
@@ -0,0 +1,140 @@
+package de.ilume.dynamicsConnector.odata;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FetchXML query sent through the "fetchXml" query option of an entity set. The query is parsed once
+ * with external entities disabled, every page is written from it with its own "page", "count" and
+ * "paging-cookie" attributes.
+ *
+ * Queries with "top" or "aggregate" cannot be paged and are sent as they are.
+ */
+public final class FetchXml {
+
+    private final Document document;
+
+    private FetchXml(Document document) {
+        this.document = document;
+    }
+
+    /**
+     * Parses a FetchXML query
+     *
+     * @throws IllegalArgumentException if the query is not well-formed or its root is not "fetch"
+     */
+    public static FetchXml parse(String fetchXml) {
+        if (fetchXml == null || fetchXml.isBlank()) {
+            throw new IllegalArgumentException("FetchXML query is empty");
+        }
+        Document document = document(fetchXml);
+        if (!"fetch".equals(document.getDocumentElement().getTagName())) {
+            throw new IllegalArgumentException("FetchXML query has to start with <fetch>, not <"
+                    + document.getDocumentElement().getTagName() + ">");
+        }
+        return new FetchXml(document);
+    }
+
+    /**
+     * Whether the query can be read page by page, false for queries with "top" or "aggregate"
+     */
+    public boolean isPageable() {
+        Element fetch = document.getDocumentElement();
+        return !fetch.hasAttribute("top") && !"true".equalsIgnoreCase(fetch.getAttribute("aggregate"));
+    }
+
+    /**
+     * Writes the query string of one page, without the leading "?"
+     *
+     * @param page Number of the page, starting with 1
+     * @param pageSize Records per page, the "count" of the query or the server default if null
+     * @param pagingCookie Paging cookie of the previous page, null for the first page
+     */
+    public String page(int page, Integer pageSize, String pagingCookie) {
+        Document copy = (Document) document.cloneNode(true);
+        Element fetch = copy.getDocumentElement();
+        if (isPageable()) {
+            fetch.setAttribute("page", Integer.toString(page));
+            if (pageSize != null) {
+                fetch.setAttribute("count", Integer.toString(pageSize));
+            }
+            if (pagingCookie != null) {
+                fetch.setAttribute("paging-cookie", pagingCookie);
+            } else {
+                fetch.removeAttribute("paging-cookie");
+            }
+        }
+        return "fetchXml=" + QueryOptions.encode(write(copy));
+    }
+
+    /**
+     * Extracts the paging cookie to send with the next page from the
+     * "@Microsoft.Dynamics.CRM.fetchxmlpagingcookie" annotation of a page
+     *
+     * @param annotation Value of the annotation, e.g. {@code <cookie pagenumber="2" pagingcookie="%253ccookie..." />}
+     * @return The decoded paging cookie, null if the annotation carries none
+     */
+    public static String pagingCookie(String annotation) {
+        if (annotation == null || annotation.isBlank()) {
+            return null;
+        }
+        String encoded = document(annotation).getDocumentElement().getAttribute("pagingcookie");
+        if (encoded.isEmpty()) {
+            return null;
+        }
+        // the cookie is URL encoded twice
+        return URLDecoder.decode(URLDecoder.decode(encoded, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static Document document(String xml) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setXIncludeAware(false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            // fail without printing parse errors to stderr
+            builder.setErrorHandler(new DefaultHandler());
+            return builder.parse(new InputSource(new StringReader(xml)));
+        } catch (SAXException | IOException e) {
+            throw new IllegalArgumentException("Invalid FetchXML: " + e.getMessage());
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser not available", e);
+        }
+    }
+
+    private static String write(Document document) {
+        try {
+            TransformerFactory factory = TransformerFactory.newInstance();
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+            Transformer transformer = factory.newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            StringWriter writer = new StringWriter();
+            transformer.transform(new DOMSource(document), new StreamResult(writer));
+            return writer.toString();
+        } catch (TransformerException e) {
+            throw new IllegalStateException("Failed to write FetchXML query", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.ilume.dynamicsConnector.odata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps only the configured fields of decoded records and optionally removes their annotations. Paths
+ * address the fields of a record, so for collections they are applied to every record under "value".
+ */
+public final class JsonProjection {
+
+    private static final String VALUE = "value";
+    private static final String NEXT_LINK = "@odata.nextLink";
+
+    private final Node root;
+    private final boolean stripAnnotations;
+
+    private JsonProjection(Node root, boolean stripAnnotations) {
+        this.root = root;
+        this.stripAnnotations = stripAnnotations;
+    }
+
+    /**
+     * @param paths Kept fields, nested fields separated by dots. All fields are kept if empty
+     * @param stripAnnotations Whether properties containing "@" (annotations) are removed
+     */
+    public static JsonProjection of(List<String> paths, boolean stripAnnotations) {
+        Node root = null;
+        if (paths != null && !paths.isEmpty()) {
+            root = new Node();
+            for (String path : paths) {
+                Node node = root;
+                for (String name : path.split("\\.")) {
+                    if (name.isEmpty()) {
+                        throw new IllegalArgumentException("Invalid path: " + path);
+                    }
+                    node = node.children.computeIfAbsent(name, key -> new Node());
+                }
+            }
+        }
+        return new JsonProjection(root, stripAnnotations);
+    }
+
+    public boolean isIdentity() {
+        return root == null && !stripAnnotations;
+    }
+
+    /**
+     * Projects a single record.
+     */
+    public Map<String, Object> record(Map<String, Object> record) {
+        return isIdentity() ? record : project(record, root);
+    }
+
+    /**
+     * Projects a result: each record of a collection under "value" or the result itself if it is a single record.
+     * "@odata.nextLink" is kept, since it is needed to read the following page.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> result(Map<String, Object> result) {
+        if (isIdentity() || !(result.get(VALUE) instanceof List<?> records)) {
+            return record(result);
+        }
+        Map<String, Object> projected = new LinkedHashMap<>();
+        result.forEach((key, value) -> {
+            if (key.equals(VALUE)) {
+                List<Object> kept = new ArrayList<>(records.size());
+                records.forEach(item -> kept.add(item instanceof Map<?, ?> map ? record((Map<String, Object>) map) : item));
+                projected.put(key, kept);
+            } else if (key.equals(NEXT_LINK) || !isAnnotation(key)) {
+                projected.put(key, value);
+            }
+        });
+        return projected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> project(Map<String, Object> record, Node node) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        record.forEach((key, value) -> {
+            if (isAnnotation(key)) {
+                return;
+            }
+            if (node == null || node.children.isEmpty()) {
+                projected.put(key, projectValue(value, null));
+            } else if (node.children.containsKey(key)) {
+                projected.put(key, projectValue(value, node.children.get(key)));
+            }
+        });
+        return projected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object projectValue(Object value, Node node) {
+        if (value instanceof Map<?, ?> map) {
+            return node == null && !stripAnnotations ? value : project((Map<String, Object>) map, node);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> projected = new ArrayList<>(list.size());
+            list.forEach(item -> projected.add(projectValue(item, node)));
+            return projected;
+        }
+        return value;
+    }
+
+    private boolean isAnnotation(String key) {
+        return stripAnnotations && key.indexOf('@') >= 0;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+    }
+}
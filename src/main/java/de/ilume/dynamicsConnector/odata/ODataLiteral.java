@@ -0,0 +1,154 @@
+package de.ilume.dynamicsConnector.odata;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Formats values as OData literals, e.g. for key segments and query options
+ */
+public final class ODataLiteral {
+
+    private static final Pattern GUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern KEY_VALUE = Pattern.compile(
+            "([A-Za-z_][A-Za-z0-9_]*)=(" + GUID.pattern() + "|'((?:[^']|'')*)'|-?[0-9]+(?:\\.[0-9]+)?)");
+
+    private ODataLiteral() {
+    }
+
+    /**
+     * Formats a value by its Java type: strings are enclosed in single quotes with embedded quotes doubled, numbers,
+     * booleans, GUIDs, dates and timestamps are written as they are and null becomes "null".
+     * A string is always written as a string, use {@link #format(Object, String)} for GUIDs or dates given as text.
+     */
+    public static String format(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof UUID || value instanceof LocalDate) {
+            return value.toString();
+        }
+        if (value instanceof OffsetDateTime timestamp) {
+            return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(timestamp);
+        }
+        if (value instanceof ZonedDateTime timestamp) {
+            return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(timestamp);
+        }
+        if (value instanceof Instant instant) {
+            return instant.toString();
+        }
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    /**
+     * Formats a value as a literal of the given type: string, guid, dateTime, date, number or boolean.
+     * Without a type the value is formatted by its Java type.
+     *
+     * @throws IllegalArgumentException if the value is not a valid literal of the type
+     */
+    public static String format(Object value, String type) {
+        if (type == null || type.isBlank() || value == null) {
+            return format(value);
+        }
+        String text = value.toString();
+        switch (type.toLowerCase(Locale.ROOT)) {
+            case "string":
+                return "'" + text.replace("'", "''") + "'";
+            case "guid":
+                if (!GUID.matcher(text).matches()) {
+                    throw new IllegalArgumentException("Invalid guid: " + text);
+                }
+                return text;
+            case "datetime":
+                if (value instanceof OffsetDateTime || value instanceof ZonedDateTime || value instanceof Instant) {
+                    return format(value);
+                }
+                try {
+                    return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(OffsetDateTime.parse(text));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid dateTime, expected e.g. 2024-01-31T12:00:00Z: " + text);
+                }
+            case "date":
+                try {
+                    return LocalDate.parse(text).toString();
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid date, expected e.g. 2024-01-31: " + text);
+                }
+            case "number":
+                if (value instanceof Number) {
+                    return text;
+                }
+                try {
+                    return new BigDecimal(text).toPlainString();
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number: " + text);
+                }
+            case "boolean":
+                if (!text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false")) {
+                    throw new IllegalArgumentException("Invalid boolean: " + text);
+                }
+                return text.toLowerCase(Locale.ROOT);
+            default:
+                throw new IllegalArgumentException("Invalid literal type: " + type);
+        }
+    }
+
+    /**
+     * Checks the key segment of an entry given by the process: a GUID or an alternate key of quoted strings,
+     * numbers and GUIDs, e.g. accountnumber='A-1',name='Contoso Ltd'. Quoted values are percent-encoded,
+     * so the key cannot leave its segment of the URL.
+     *
+     * @throws IllegalArgumentException if the ID is empty or not a valid key
+     */
+    public static String key(String id) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Missing entry ID");
+        }
+        if (GUID.matcher(id).matches()) {
+            return id;
+        }
+        StringBuilder key = new StringBuilder();
+        Matcher matcher = KEY_VALUE.matcher(id);
+        int end = 0;
+        while (matcher.find(end) && matcher.start() == end) {
+            key.append(matcher.group(1)).append('=');
+            key.append(matcher.group(3) == null ? matcher.group(2) : "'" + QueryOptions.encode(matcher.group(3)) + "'");
+            end = matcher.end();
+            if (end == id.length()) {
+                return key.toString();
+            }
+            if (id.charAt(end) != ',') {
+                break;
+            }
+            key.append(',');
+            end++;
+        }
+        throw new IllegalArgumentException("Invalid entry ID, expected a GUID or an alternate key such as accountnumber='A-1': " + id);
+    }
+
+    /**
+     * Builds the key segment of an entry addressed by an alternate key, e.g. accountnumber='A-1',name='Contoso'
+     */
+    public static String alternateKey(Iterable<String> columns, Map<String, Object> values) {
+        StringBuilder key = new StringBuilder();
+        for (String column : columns) {
+            if (!values.containsKey(column)) {
+                throw new IllegalArgumentException("Missing value of key column " + column);
+            }
+            if (!key.isEmpty()) {
+                key.append(',');
+            }
+            key.append(column).append('=').append(format(values.get(column)));
+        }
+        return key.toString();
+    }
+}
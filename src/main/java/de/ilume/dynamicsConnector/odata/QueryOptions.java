@@ -0,0 +1,164 @@
+package de.ilume.dynamicsConnector.odata;
+
+import de.ilume.dynamicsConnector.dto.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a {@link Query} to the query string of an OData request. Field names are checked and values
+ * are written as OData literals, so that neither can change the structure of the query, and the result
+ * is percent-encoded.
+ */
+public final class QueryOptions {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(/[A-Za-z_][A-Za-z0-9_]*)*");
+    private static final Set<String> COMPARISONS = Set.of("eq", "ne", "gt", "ge", "lt", "le");
+    private static final Set<String> FUNCTIONS = Set.of("contains", "startswith", "endswith");
+    private static final Set<String> AGGREGATIONS = Set.of("sum", "average", "min", "max", "countdistinct");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private QueryOptions() {
+    }
+
+    /**
+     * Builds the query string, without the leading "?"
+     *
+     * @param select Fields listed in "$select", all fields are returned if empty
+     * @param query Further query options, may be null
+     * @return The encoded query string, empty if there are no query options
+     * @throws IllegalArgumentException if a field name, operator or aggregation method is invalid
+     */
+    public static String compile(List<String> select, Query query) {
+        StringJoiner options = new StringJoiner("&");
+        if (select != null && !select.isEmpty()) {
+            select.forEach(QueryOptions::name);
+            options.add("$select=" + encode(RequestUrls.select(select)));
+        }
+        if (query == null) {
+            return options.toString();
+        }
+
+        String filter = filter(query.filter());
+        if (query.apply() != null) {
+            // $apply is evaluated before $filter, so the filter has to become the first transformation
+            String apply = apply(query.apply());
+            options.add("$apply=" + encode(filter.isEmpty() ? apply : "filter(" + filter + ")/" + apply));
+        } else if (!filter.isEmpty()) {
+            options.add("$filter=" + encode(filter));
+        }
+        if (query.orderBy() != null && !query.orderBy().isEmpty()) {
+            StringJoiner orderBy = new StringJoiner(",");
+            for (String order : query.orderBy()) {
+                String[] parts = order.trim().split("\\s+");
+                if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("asc") && !parts[1].equalsIgnoreCase("desc"))) {
+                    throw new IllegalArgumentException("Invalid order: " + order);
+                }
+                orderBy.add(parts.length == 2 ? name(parts[0]) + " " + parts[1].toLowerCase(Locale.ROOT) : name(parts[0]));
+            }
+            options.add("$orderby=" + encode(orderBy.toString()));
+        }
+        if (query.top() != null) {
+            if (query.top() < 1) {
+                throw new IllegalArgumentException("Top must be positive");
+            }
+            options.add("$top=" + query.top());
+        }
+        if (query.expand() != null && !query.expand().isEmpty()) {
+            StringJoiner expand = new StringJoiner(",");
+            for (Query.Expand item : query.expand()) {
+                String property = name(item.property());
+                if (item.select() != null && !item.select().isEmpty()) {
+                    item.select().forEach(QueryOptions::name);
+                    property += "($select=" + RequestUrls.select(item.select()) + ")";
+                }
+                expand.add(property);
+            }
+            options.add("$expand=" + encode(expand.toString()));
+        }
+        return options.toString();
+    }
+
+    private static String filter(List<Query.FilterCondition> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return "";
+        }
+        StringJoiner filter = new StringJoiner(" and ");
+        for (Query.FilterCondition condition : conditions) {
+            String field = name(condition.field());
+            String operator = condition.operator() == null ? "eq" : condition.operator().toLowerCase(Locale.ROOT);
+
+            if (COMPARISONS.contains(operator)) {
+                filter.add(field + " " + operator + " " + ODataLiteral.format(condition.value(), condition.type()));
+            } else if (FUNCTIONS.contains(operator)) {
+                filter.add(operator + "(" + field + "," + ODataLiteral.format(condition.value(), condition.type()) + ")");
+            } else if (operator.equals("in")) {
+                if (!(condition.value() instanceof Collection<?> values) || values.isEmpty()) {
+                    throw new IllegalArgumentException("Operator in needs a list of values for " + field);
+                }
+                StringJoiner any = new StringJoiner(" or ", "(", ")");
+                values.forEach(value -> any.add(field + " eq " + ODataLiteral.format(value, condition.type())));
+                filter.add(any.toString());
+            } else {
+                throw new IllegalArgumentException("Invalid operator: " + condition.operator());
+            }
+        }
+        return filter.toString();
+    }
+
+    private static String apply(Query.Aggregation aggregation) {
+        if (aggregation.aggregates() == null || aggregation.aggregates().isEmpty()) {
+            throw new IllegalArgumentException("Aggregation needs at least one aggregate");
+        }
+        StringJoiner aggregates = new StringJoiner(",", "aggregate(", ")");
+        for (Query.Aggregate aggregate : aggregation.aggregates()) {
+            String method = aggregate.method() == null ? "" : aggregate.method().toLowerCase(Locale.ROOT);
+            String alias = name(aggregate.alias());
+            if (method.equals("count")) {
+                aggregates.add("$count as " + alias);
+            } else if (AGGREGATIONS.contains(method)) {
+                aggregates.add(name(aggregate.field()) + " with " + method + " as " + alias);
+            } else {
+                throw new IllegalArgumentException("Invalid aggregation method: " + aggregate.method());
+            }
+        }
+
+        if (aggregation.groupBy() == null || aggregation.groupBy().isEmpty()) {
+            return aggregates.toString();
+        }
+        StringJoiner groupBy = new StringJoiner(",", "groupby((", "),");
+        aggregation.groupBy().forEach(field -> groupBy.add(name(field)));
+        return groupBy + aggregates.toString() + ")";
+    }
+
+    private static String name(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid field name: " + name);
+        }
+        return name;
+    }
+
+    /**
+     * Percent-encodes a query option value. Besides unreserved characters only the characters the OData
+     * syntax needs are kept, "+" is encoded as it would otherwise be read as a space.
+     */
+    static String encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        StringBuilder encoded = new StringBuilder(bytes.length + 16);
+        for (byte b : bytes) {
+            int c = b & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "-._~$'(),/:@*;".indexOf(c) >= 0) {
+                encoded.append((char) c);
+            } else {
+                encoded.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        return encoded.toString();
+    }
+}
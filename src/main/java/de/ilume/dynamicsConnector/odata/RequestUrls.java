@@ -0,0 +1,83 @@
+package de.ilume.dynamicsConnector.odata;
+
+import de.ilume.dynamicsConnector.DataverseProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the URLs of the Dataverse Web API requests. The URLs of an entity set are built once per
+ * environment and entity set and then reused by all following jobs.
+ */
+@Component
+public class RequestUrls {
+
+    private static final int MAX_CACHED = 1024;
+    private static final Pattern ENTITY_SET = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final ConcurrentMap<Key, EntitySetUrl> cache = new ConcurrentHashMap<>();
+    private final DataverseProperties properties;
+
+    public RequestUrls(DataverseProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the URLs of an entity set
+     *
+     * @param base URL of the environment as entered for the authentication, e.g. https://org.crm.dynamics.com/.
+     * @param entitySet Name of the entity set, e.g. accounts
+     * @throws IllegalArgumentException if the base URL is empty or the entity set is not a valid name
+     */
+    public EntitySetUrl entitySet(String base, String entitySet) {
+        Key key = new Key(base, entitySet);
+        EntitySetUrl url = cache.get(key);
+        if (url != null) {
+            return url;
+        }
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        return cache.computeIfAbsent(key, k -> new EntitySetUrl(serviceUrl(k.base()), validate(k.entitySet())));
+    }
+
+    private String serviceUrl(String base) {
+        if (base == null || base.isBlank()) {
+            throw new IllegalArgumentException("Base URL must not be empty");
+        }
+        // the base URL is entered as the prefix of the token scope and usually ends with "/."
+        int end = base.length();
+        while (end > 0 && (base.charAt(end - 1) == '/' || base.charAt(end - 1) == '.')) {
+            end--;
+        }
+        return base.substring(0, end).trim() + "/api/data/" + properties.getApiVersion();
+    }
+
+    private static String validate(String entitySet) {
+        if (entitySet == null || !ENTITY_SET.matcher(entitySet).matches()) {
+            throw new IllegalArgumentException("Invalid entity set: " + entitySet);
+        }
+        return entitySet;
+    }
+
+    /**
+     * Joins the fields for "$select", sized exactly so that only the resulting String is allocated.
+     *
+     * @return The comma separated fields, empty if there are none
+     */
+    public static String select(List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return "";
+        }
+        if (fields.size() == 1) {
+            return fields.get(0);
+        }
+        return String.join(",", fields);
+    }
+
+    private record Key(String base, String entitySet) {
+    }
+}
@@ -0,0 +1,154 @@
+package de.ilume.dynamicsConnector.payload;
+
+import de.ilume.dynamicsConnector.ClientMetrics;
+import de.ilume.dynamicsConnector.PayloadProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates the representation of Dataverse responses with the {@link PayloadProperties.Profile} of the
+ * running operation: the OData metadata level of the Accept header, the annotations requested with
+ * "Prefer: odata.include-annotations" and the accepted encoding. Responses are decompressed by the Jetty client.
+ *
+ * Request bodies are measured as "dynamics.connector.request.size", tagged with the operation and the stage,
+ * "raw" as serialized and "sent" after compression. If enabled, bodies above the threshold are sent gzip
+ * compressed with "Content-Encoding: gzip". Token requests are left untouched.
+ */
+public class PayloadFilter implements ExchangeFilterFunction {
+
+    static final String INCLUDE_ANNOTATIONS = "odata.include-annotations";
+
+    private final PayloadProperties properties;
+    private final MeterRegistry registry;
+
+    public PayloadFilter(PayloadProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (ClientMetrics.TOKEN.equals(request.attribute(ClientMetrics.CLIENT).orElse(null))) {
+            return next.exchange(request);
+        }
+        return Mono.deferContextual(context -> {
+            String operation = ClientMetrics.operation(context);
+            PayloadProperties.Profile profile = properties.profile(operation);
+            ClientRequest.Builder builder = ClientRequest.from(request).headers(headers -> negotiate(request, headers, profile));
+            if (hasBody(request.method())) {
+                builder.body(measured(request.body(), operation));
+            }
+            return next.exchange(builder.build());
+        });
+    }
+
+    private static void negotiate(ClientRequest request, HttpHeaders headers, PayloadProperties.Profile profile) {
+        if (StringUtils.hasText(profile.getAcceptEncoding()) && !headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, profile.getAcceptEncoding());
+        }
+        // binary file content and change tracking, which relies on the context of deleted rows, keep their representation
+        if (request.method() != HttpMethod.GET || request.url().getRawPath().endsWith("/$value") || tracksChanges(headers)) {
+            return;
+        }
+        if (StringUtils.hasText(profile.getMetadata())) {
+            headers.set(HttpHeaders.ACCEPT, "application/json;odata.metadata=" + profile.getMetadata());
+        }
+        if (StringUtils.hasText(profile.getIncludeAnnotations()) && !prefers(headers, INCLUDE_ANNOTATIONS)) {
+            headers.add("Prefer", INCLUDE_ANNOTATIONS + "=\"" + profile.getIncludeAnnotations() + "\"");
+        }
+    }
+
+    private static boolean tracksChanges(HttpHeaders headers) {
+        return prefers(headers, "odata.track-changes");
+    }
+
+    private static boolean prefers(HttpHeaders headers, String preference) {
+        return headers.getOrEmpty("Prefer").stream().anyMatch(value -> value.contains(preference));
+    }
+
+    private static boolean hasBody(HttpMethod method) {
+        return method == HttpMethod.POST || method == HttpMethod.PATCH || method == HttpMethod.PUT;
+    }
+
+    private BodyInserter<?, ? super ClientHttpRequest> measured(BodyInserter<?, ? super ClientHttpRequest> body, String operation) {
+        return (outputMessage, context) -> body.insert(new MeasuredRequest(outputMessage, operation), context);
+    }
+
+    private void record(String operation, String stage, long bytes) {
+        DistributionSummary.builder("dynamics.connector.request.size")
+                .description("Size of the sent request bodies, as serialized (raw) and as sent after compression (sent)")
+                .baseUnit("bytes")
+                .tags("operation", operation, "stage", stage)
+                .register(registry)
+                .record(bytes);
+    }
+
+    static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private final class MeasuredRequest extends ClientHttpRequestDecorator {
+
+        private final String operation;
+
+        private MeasuredRequest(ClientHttpRequest delegate, String operation) {
+            super(delegate);
+            this.operation = operation;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!properties.isRequestCompression() || getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+                long[] size = new long[1];
+                return super.writeWith(Flux.from(body).doOnNext(buffer -> size[0] += buffer.readableByteCount())
+                        .doOnComplete(() -> {
+                            record(operation, "raw", size[0]);
+                            record(operation, "sent", size[0]);
+                        }));
+            }
+            // the body is joined to decide on compression, the encoders produce it in one buffer anyway
+            return DataBufferUtils.join(body).defaultIfEmpty(bufferFactory().wrap(new byte[0])).flatMap(buffer -> {
+                int rawSize = buffer.readableByteCount();
+                record(operation, "raw", rawSize);
+                if (rawSize < properties.getRequestCompressionThreshold().toBytes()) {
+                    record(operation, "sent", rawSize);
+                    return super.writeWith(Mono.just(buffer));
+                }
+                byte[] content = new byte[rawSize];
+                buffer.read(content);
+                DataBufferUtils.release(buffer);
+                byte[] compressed = gzip(content);
+                getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                getHeaders().setContentLength(compressed.length);
+                record(operation, "sent", compressed.length);
+                return super.writeWith(Mono.just(bufferFactory().wrap(compressed)));
+            });
+        }
+    }
+}
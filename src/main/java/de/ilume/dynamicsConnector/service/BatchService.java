@@ -0,0 +1,151 @@
+package de.ilume.dynamicsConnector.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.batch.BatchRequest;
+import de.ilume.dynamicsConnector.batch.BatchResponse;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends several operations as a single OData $batch request and maps the multipart response
+ * back to the operations, so that every operation reports its own status.
+ */
+@RequiredArgsConstructor
+@Service
+public class BatchService {
+
+    private final ExecuteRequestService executeRequestService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Executes the operations as one batch request
+     *
+     * @param serviceUrl URL of the Web API, e.g. https://org.crm.dynamics.com/api/data/v9.2
+     * @param entitySet Entity set the operations are executed on
+     * @param accessToken Token used for the request
+     * @param operations Operations to execute
+     * @return Map containing the per operation results under "responses" and the number of
+     * succeeded and failed operations
+     */
+    public Mono<Map<String, Object>> execute(String serviceUrl, String entitySet, String accessToken,
+                                             List<BatchOperation> operations) {
+        return Mono.fromCallable(() -> BatchRequest.create(serviceUrl, entitySet, operations, objectMapper))
+                .flatMap(batch -> {
+                    Map<String, Object> requestHeaders = new HashMap<String, Object>();
+                    requestHeaders.put("Content-Type", batch.contentType());
+                    requestHeaders.put("Accept", "application/json");
+                    requestHeaders.put("OData-MaxVersion", "4.0");
+                    requestHeaders.put("OData-Version", "4.0");
+                    requestHeaders.put("Prefer", "odata.continue-on-error");
+
+                    return executeRequestService.batchRequest(serviceUrl + "/$batch", accessToken, requestHeaders, batch.body())
+                            .flatMap(response -> Mono.fromCallable(() -> toResult(batch, operations, response)));
+                });
+    }
+
+    private Map<String, Object> toResult(BatchRequest batch, List<BatchOperation> operations,
+                                         ResponseEntity<String> response) {
+        List<List<BatchResponse.Item>> parts = BatchResponse.parse(response.getHeaders().getContentType(), response.getBody());
+        BatchResponse.Item[] items = new BatchResponse.Item[operations.size()];
+
+        for (int p = 0; p < batch.parts().size() && p < parts.size(); p++) {
+            List<Integer> indices = batch.parts().get(p);
+            List<BatchResponse.Item> responses = parts.get(p);
+
+            if (responses.size() == indices.size()) {
+                for (int i = 0; i < responses.size(); i++) {
+                    BatchResponse.Item item = responses.get(i);
+                    items[indexOf(item, indices, indices.get(i))] = item;
+                }
+            } else if (responses.size() == 1) {
+                // a failed change set is answered with a single error, none of its operations was applied
+                indices.forEach(index -> items[index] = responses.get(0));
+            }
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(operations.size());
+        int succeeded = 0;
+        for (int index = 0; index < operations.size(); index++) {
+            Map<String, Object> result = toItemResult(index, operations.get(index), items[index]);
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                succeeded++;
+            }
+            results.add(result);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("responses", results);
+        result.put("succeeded", succeeded);
+        result.put("failed", operations.size() - succeeded);
+        return result;
+    }
+
+    private Map<String, Object> toItemResult(int index, BatchOperation operation, BatchResponse.Item item) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("operation", operation.operation());
+
+        if (item == null) {
+            result.put("success", false);
+            result.put("error", "No response received for this operation");
+            return result;
+        }
+
+        result.put("status", item.status());
+        result.put("success", item.isSuccess());
+
+        Duration retryAfter = ThrottlingFilter.retryAfter(item.headers());
+        if (retryAfter != null) {
+            result.put("retryAfter", retryAfter.toSeconds());
+        }
+        String entityId = item.headers().getFirst("OData-EntityId");
+        if (entityId != null && entityId.endsWith(")") && entityId.lastIndexOf('(') >= 0) {
+            result.put("id", entityId.substring(entityId.lastIndexOf('(') + 1, entityId.length() - 1));
+        }
+        if (!item.body().isEmpty()) {
+            Object body = body(item.body());
+            result.put(body instanceof String && !item.isSuccess() ? "error" : "body", body);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the JSON body of an operation, any other body such as the error page of a gateway is kept as text
+     * so that it does not fail the other operations of the batch
+     */
+    private Object body(String body) {
+        try {
+            return objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            return body;
+        }
+    }
+
+    private static int indexOf(BatchResponse.Item item, List<Integer> indices, int fallback) {
+        if (item.contentId() != null) {
+            try {
+                int index = Integer.parseInt(item.contentId().strip()) - 1;
+                if (indices.contains(index)) {
+                    return index;
+                }
+            } catch (NumberFormatException ignored) {
+                // not one of our content ids, fall back to the position
+            }
+        }
+        return fallback;
+    }
+}
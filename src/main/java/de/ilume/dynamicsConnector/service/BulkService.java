@@ -0,0 +1,163 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.BulkProperties;
+import de.ilume.dynamicsConnector.dto.BulkWrite;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.exception.NotFoundException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.ODataLiteral;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes many records through the CreateMultiple, UpdateMultiple and UpsertMultiple actions. The records
+ * are split into chunks that are sent with bounded parallelism, and the outcome is reported per record.
+ * Each chunk is applied as a whole, so if a chunk is rejected none of its records has been written. Errors
+ * other than rejected records, e.g. an expired token or throttling beyond the retries, fail the whole write.
+ */
+@RequiredArgsConstructor
+@Service
+public class BulkService {
+
+    private static final int MAX_CHUNK_SIZE = 1000;
+    private static final Map<String, String> ACTIONS = Map.of(
+            "create", "CreateMultiple",
+            "update", "UpdateMultiple",
+            "upsert", "UpsertMultiple");
+
+    private final ExecuteRequestService executeRequestService;
+    private final BulkProperties properties;
+
+    /**
+     * Writes the records of the bulk request
+     *
+     * @param entitySetUrl URLs of the entity set the records are written to
+     * @param accessToken Token used for the requests
+     * @param bulk Action and records
+     * @return Map containing the per record results under "results" and the number of succeeded and failed records
+     */
+    public Mono<Map<String, Object>> execute(EntitySetUrl entitySetUrl, String accessToken, BulkWrite bulk) {
+        return Mono.fromCallable(() -> targets(entitySetUrl, bulk))
+                .flatMap(targets -> {
+                    String action = ACTIONS.get(bulk.action());
+                    String actionUrl = entitySetUrl.collection() + "/Microsoft.Dynamics.CRM." + action;
+                    int chunkSize = bulk.chunkSize() != null ? bulk.chunkSize() : properties.getChunkSize();
+
+                    return Flux.range(0, (targets.size() + chunkSize - 1) / chunkSize)
+                            .flatMapSequential(chunk -> {
+                                int from = chunk * chunkSize;
+                                List<Map<String, Object>> records = targets.subList(from, Math.min(from + chunkSize, targets.size()));
+                                return send(actionUrl, accessToken, from, records);
+                            }, Math.max(properties.getParallelism(), 1))
+                            .concatMapIterable(results -> results)
+                            .collectList()
+                            .map(results -> {
+                                long succeeded = results.stream().filter(result -> Boolean.TRUE.equals(result.get("success"))).count();
+                                Map<String, Object> result = new LinkedHashMap<>();
+                                result.put("action", action);
+                                result.put("results", results);
+                                result.put("succeeded", succeeded);
+                                result.put("failed", results.size() - succeeded);
+                                return result;
+                            });
+                });
+    }
+
+    private Mono<List<Map<String, Object>>> send(String actionUrl, String accessToken, int offset, List<Map<String, Object>> records) {
+        Map<String, Object> requestHeaders = new HashMap<String, Object>();
+        requestHeaders.put("Content-Type", "application/json");
+        requestHeaders.put("OData-MaxVersion", "4.0");
+        requestHeaders.put("OData-Version", "4.0");
+
+        return executeRequestService.postJson(actionUrl, accessToken, requestHeaders, Map.of("Targets", records))
+                .map(response -> response.get("Ids") instanceof List<?> ids ? ids : List.of())
+                .defaultIfEmpty(List.of())
+                .map(ids -> {
+                    List<Map<String, Object>> results = new ArrayList<>(records.size());
+                    for (int i = 0; i < records.size(); i++) {
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("index", offset + i);
+                        result.put("success", true);
+                        if (i < ids.size()) {
+                            result.put("id", ids.get(i));
+                        }
+                        results.add(result);
+                    }
+                    return results;
+                })
+                // only data errors concern the records of the chunk, anything else fails the whole write
+                .onErrorResume(throwable -> throwable instanceof BadRequestException || throwable instanceof NotFoundException, throwable -> {
+                    List<Map<String, Object>> results = new ArrayList<>(records.size());
+                    for (int i = 0; i < records.size(); i++) {
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("index", offset + i);
+                        result.put("success", false);
+                        result.put("error", throwable.getMessage());
+                        results.add(result);
+                    }
+                    return Mono.just(results);
+                });
+    }
+
+    private static List<Map<String, Object>> targets(EntitySetUrl entitySetUrl, BulkWrite bulk) throws BadRequestException {
+        if (bulk == null || !ACTIONS.containsKey(bulk.action())) {
+            throw new BadRequestException("Bulk action must be one of " + ACTIONS.keySet());
+        }
+        if (bulk.records() == null || bulk.records().isEmpty()) {
+            throw new BadRequestException("Bulk write contains no records");
+        }
+        if (bulk.chunkSize() != null && (bulk.chunkSize() < 1 || bulk.chunkSize() > MAX_CHUNK_SIZE)) {
+            throw new BadRequestException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        boolean alternateKey = bulk.alternateKey() != null && !bulk.alternateKey().isEmpty();
+        if (alternateKey && "create".equals(bulk.action())) {
+            throw new BadRequestException("An alternate key can only be used with update and upsert");
+        }
+
+        String entityName = bulk.entityName() == null || bulk.entityName().isEmpty()
+                ? entityName(entitySetUrl.entitySet())
+                : bulk.entityName();
+        String odataType = "Microsoft.Dynamics.CRM." + entityName;
+
+        List<Map<String, Object>> targets = new ArrayList<>(bulk.records().size());
+        for (int i = 0; i < bulk.records().size(); i++) {
+            Map<String, Object> record = bulk.records().get(i);
+            Map<String, Object> target = new LinkedHashMap<>(record);
+            target.put("@odata.type", odataType);
+            if (alternateKey) {
+                try {
+                    target.put("@odata.id", entitySetUrl.entitySet() + "(" + ODataLiteral.alternateKey(bulk.alternateKey(), record) + ")");
+                } catch (IllegalArgumentException e) {
+                    throw new BadRequestException("Record " + i + ": " + e.getMessage());
+                }
+            }
+            targets.add(target);
+        }
+        return targets;
+    }
+
+    /**
+     * Guesses the logical name of a table from its entity set, e.g. "accounts" to "account" and
+     * "opportunities" to "opportunity". Tables with irregular names need the logical name in the request.
+     */
+    public static String entityName(String entitySet) {
+        if (entitySet.endsWith("ies")) {
+            return entitySet.substring(0, entitySet.length() - 3) + "y";
+        }
+        if (entitySet.endsWith("sses") || entitySet.endsWith("xes")) {
+            return entitySet.substring(0, entitySet.length() - 2);
+        }
+        if (entitySet.endsWith("s")) {
+            return entitySet.substring(0, entitySet.length() - 1);
+        }
+        return entitySet;
+    }
+}
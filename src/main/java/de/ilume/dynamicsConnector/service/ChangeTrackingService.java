@@ -0,0 +1,170 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.dto.Projection;
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.QueryOptions;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the changes of an entity set through change tracking. The initial read returns all rows together
+ * with a delta link, every following read of the delta link only returns the rows created, changed or
+ * deleted since, so periodic synchronizations no longer read the whole table.
+ * Change tracking has to be enabled for the table in the environment.
+ */
+@RequiredArgsConstructor
+@Service
+public class ChangeTrackingService {
+
+    private static final String DELETED_ENTITY = "$deletedEntity";
+    private static final String DELTA_TOKEN = "$deltatoken=";
+    private static final String SKIP_TOKEN = "$skiptoken=";
+
+    private final ExecuteRequestService executeRequestService;
+    private final ResultLimiter resultLimiter;
+
+    /**
+     * Reads the changes of the entity set. The pages are streamed through the {@link ResultLimiter}, so the
+     * rows are projected as they arrive and no further pages are requested once the result is full.
+     *
+     * A result cut off by the limits only contains complete pages and returns the link of the first page not read
+     * under "nextLink" instead of a delta link. Passed as delta link to the next read, it continues the read from
+     * there, so large tables are read in several jobs.
+     *
+     * @param entitySetUrl URLs of the entity set
+     * @param fields Fields returned for created and changed rows, all fields if empty. Ignored for a delta link,
+     *               which keeps the fields of the initial read
+     * @param deltaLink Delta link or next link returned by the previous read, null for the initial read
+     * @param pageSize Requested number of rows per page, null to use the server default
+     * @param maxRecords Maximum number of created, changed and deleted rows, null if unlimited
+     * @param projection Projection of the created and changed rows, may be null
+     * @param accessToken Token used for the requests
+     * @return Map containing the created and changed rows under "value", the IDs of deleted rows under "deleted"
+     * and the delta link for the next read under "deltaLink", or the link continuing a truncated read under "nextLink"
+     */
+    public Mono<Map<String, Object>> changes(EntitySetUrl entitySetUrl, List<String> fields, String deltaLink,
+                                             Integer pageSize, Integer maxRecords, Projection projection,
+                                             String accessToken) {
+        if (maxRecords != null && maxRecords < 0) {
+            return Mono.error(new BadRequestException("Maximum records must not be negative"));
+        }
+        return Mono.fromCallable(() -> requestUrl(entitySetUrl, fields, deltaLink))
+                .flatMap(requestUrl -> {
+                    Pages pages = new Pages(requestUrl);
+                    // deleted rows only carry their ID, they are not projected but count against the limits
+                    Flux<Map<String, Object>> records = executeRequestService.getChangePages(requestUrl, accessToken, pageSize)
+                            .concatMapIterable(pages::add, 1);
+                    return resultLimiter.collect(records, projection, maxRecords, record -> !isDeleted(record))
+                            .flatMap(collected -> pages.toResult(collected, !requestUrl.contains(DELTA_TOKEN)));
+                });
+    }
+
+    /**
+     * Reads the pages of changes one by one, without collecting them. The last page carries the delta link
+     * for the next read.
+     *
+     * @see #changes
+     */
+    public Flux<ValuePage> pages(EntitySetUrl entitySetUrl, List<String> fields, String deltaLink,
+                                 Integer pageSize, String accessToken) {
+        return Mono.fromCallable(() -> requestUrl(entitySetUrl, fields, deltaLink))
+                .flatMapMany(requestUrl -> executeRequestService.getChangePages(requestUrl, accessToken, pageSize));
+    }
+
+    private static String requestUrl(EntitySetUrl entitySetUrl, List<String> fields, String deltaLink) throws BadRequestException {
+        if (deltaLink == null || deltaLink.isBlank()) {
+            String options;
+            try {
+                options = QueryOptions.compile(fields, null);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+            return options.isEmpty() ? entitySetUrl.collection() : entitySetUrl.collection() + "?" + options;
+        }
+        // the access token is sent along, so only links of the addressed entity set are followed
+        if (!deltaLink.startsWith(entitySetUrl.collection() + "?")
+                || !(deltaLink.contains(DELTA_TOKEN) || deltaLink.contains(SKIP_TOKEN))) {
+            throw new BadRequestException("Delta link does not belong to " + entitySetUrl.collection());
+        }
+        return deltaLink;
+    }
+
+    /**
+     * Deleted rows are returned as "$deletedEntity" with their ID under "id"
+     */
+    public static boolean isDeleted(Map<String, Object> record) {
+        return record.get("@odata.context") instanceof String context && context.endsWith(DELETED_ENTITY);
+    }
+
+    /**
+     * Remembers where each page read starts, so that a truncated result can be cut back to complete pages
+     */
+    private static final class Pages {
+        private final List<Integer> starts = new ArrayList<>();
+        private final List<String> links = new ArrayList<>();
+        private String nextLink;
+        private String deltaLink;
+        private int records;
+
+        private Pages(String requestUrl) {
+            nextLink = requestUrl;
+        }
+
+        private List<Map<String, Object>> add(ValuePage page) {
+            starts.add(records);
+            links.add(nextLink);
+            records += page.records().size();
+            nextLink = page.nextLink();
+            deltaLink = page.deltaLink();
+            return page.records();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Mono<Map<String, Object>> toResult(Map<String, Object> collected, boolean initial) {
+            List<Map<String, Object>> value = (List<Map<String, Object>>) collected.get("value");
+            boolean truncated = Boolean.TRUE.equals(collected.get("truncated"));
+            String continuation = null;
+            if (truncated) {
+                // the page that has been cut off is read again by the next read
+                int page = 0;
+                while (page + 1 < starts.size() && starts.get(page + 1) <= value.size()) {
+                    page++;
+                }
+                if (page == 0) {
+                    return Mono.error(new BadRequestException("The first page of changes exceeds the maximum records "
+                            + "or the maximum result size, request smaller pages"));
+                }
+                value = value.subList(0, starts.get(page));
+                continuation = links.get(page);
+            }
+
+            List<Map<String, Object>> changed = new ArrayList<>();
+            List<Object> deleted = new ArrayList<>();
+            for (Map<String, Object> record : value) {
+                if (isDeleted(record)) {
+                    deleted.add(record.get("id"));
+                } else {
+                    changed.add(record);
+                }
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("value", changed);
+            result.put("deleted", deleted);
+            result.put("count", changed.size());
+            result.put("truncated", truncated);
+            result.put("initial", initial);
+            result.put("deltaLink", truncated ? null : deltaLink);
+            result.put("nextLink", continuation);
+            return Mono.just(result);
+        }
+    }
+}
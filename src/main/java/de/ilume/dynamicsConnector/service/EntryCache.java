@@ -0,0 +1,153 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.EntryCacheProperties;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-through cache for single entries. Entries are kept per entity set, ID, selected fields and client
+ * together with their ETag, and revalidated with "If-None-Match" on the next read, so that an unchanged
+ * entry is answered with an empty "304 Not Modified". Entries are evicted once the cache is full (least
+ * recently read first) or when they have not been read for the configured TTL. Updates and deletes sent
+ * by this connector instance remove the entries of the written record.
+ */
+@Component
+public class EntryCache {
+
+    private final EntryCacheProperties properties;
+    private final ExecuteRequestService executeRequestService;
+    private final Clock clock;
+    private final Map<Key, Cached> entries;
+
+    @Autowired
+    public EntryCache(EntryCacheProperties properties, ExecuteRequestService executeRequestService) {
+        this(properties, executeRequestService, Clock.systemUTC());
+    }
+
+    public EntryCache(EntryCacheProperties properties, ExecuteRequestService executeRequestService, Clock clock) {
+        this.properties = properties;
+        this.executeRequestService = executeRequestService;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > properties.getMaxEntries();
+            }
+        };
+    }
+
+    /**
+     * Reads an entry, from the cache if it has not changed since it was last read.
+     *
+     * @param clientId Client the token was issued for, entries are not shared between clients
+     * @param entitySetUrl URLs of the entity set
+     * @param id ID of the entry
+     * @param fields Fields listed in "$select", all fields are returned if empty
+     * @param accessToken Token used for the request
+     * @return The entry as returned by the Web API
+     */
+    public Mono<Map<String, Object>> getEntry(String clientId, EntitySetUrl entitySetUrl, String id, List<String> fields,
+                                              String accessToken) {
+        String requestUrl = entitySetUrl.entry(id, fields);
+        if (!properties.isEnabled() || id == null || id.isEmpty()) {
+            return executeRequestService.getJson(requestUrl, accessToken);
+        }
+
+        Key key = new Key(entitySetUrl.collection(), id, fields == null ? Set.of() : Set.copyOf(fields), clientId);
+        return Mono.defer(() -> {
+            Instant now = clock.instant();
+            Cached cached = lookup(key, now);
+            if (cached != null && now.isBefore(cached.validatedAt().plus(properties.getFreshFor()))) {
+                return Mono.just(cached.body());
+            }
+
+            return executeRequestService.getJsonIfNoneMatch(requestUrl, accessToken, cached == null ? null : cached.etag())
+                    .flatMap(response -> {
+                        if (cached != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            store(key, new Cached(cached.etag(), cached.body(), clock.instant()));
+                            return Mono.just(cached.body());
+                        }
+                        return Mono.justOrEmpty(response.getBody())
+                                .doOnNext(body -> {
+                                    String etag = etag(response, body);
+                                    if (etag != null) {
+                                        store(key, new Cached(etag, body, clock.instant()));
+                                    }
+                                });
+                    });
+        });
+    }
+
+    /**
+     * Removes all cached variants of an entry, e.g. after it has been updated or deleted.
+     */
+    public void invalidate(EntitySetUrl entitySetUrl, String id) {
+        if (!properties.isEnabled() || id == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.id().equals(id) && key.collection().equals(entitySetUrl.collection()));
+        }
+    }
+
+    /**
+     * Removes all cached entries of an entity set, e.g. after records have been written without knowing their IDs.
+     */
+    public void invalidate(EntitySetUrl entitySetUrl) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.collection().equals(entitySetUrl.collection()));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Cached lookup(Key key, Instant now) {
+        synchronized (entries) {
+            Cached cached = entries.get(key);
+            if (cached != null && !now.isBefore(cached.validatedAt().plus(properties.getTtl()))) {
+                entries.remove(key);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private void store(Key key, Cached cached) {
+        synchronized (entries) {
+            entries.put(key, cached);
+        }
+    }
+
+    private static String etag(ResponseEntity<Map<String, Object>> response, Map<String, Object> body) {
+        String etag = response.getHeaders().getETag();
+        if (etag != null) {
+            return etag;
+        }
+        Object annotation = body.get("@odata.etag");
+        return annotation instanceof String value ? value : null;
+    }
+
+    private record Key(String collection, String id, Set<String> fields, String clientId) {
+    }
+
+    private record Cached(String etag, Map<String, Object> body, Instant validatedAt) {
+    }
+}
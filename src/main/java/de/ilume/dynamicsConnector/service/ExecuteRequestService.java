@@ -1,14 +1,24 @@
 package de.ilume.dynamicsConnector.service;
 
+import de.ilume.dynamicsConnector.CoalescingProperties;
+import de.ilume.dynamicsConnector.dto.FetchPage;
+import de.ilume.dynamicsConnector.dto.ValuePage;
 import de.ilume.dynamicsConnector.exception.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.Map;
 
 import static org.springframework.http.HttpStatus.*;
@@ -19,102 +29,294 @@ import static org.springframework.http.HttpStatus.*;
  * changes within the corresponding environment. During the usage of these calls, the method
  * "handleErrorResponse" checks the procedure for any errors defined in its body,
  * aborts it when they happen and returns the result accordingly.
+ * Identical reads in flight at the same time share one request through the {@link RequestCoalescer}.
  */
 
 @Service
 public class ExecuteRequestService {
     private final WebClient webClient;
+    private final RequestCoalescer requestCoalescer;
 
     public ExecuteRequestService(WebClient webClient){
+        this(webClient, new RequestCoalescer(new CoalescingProperties()));
+    }
+
+    @Autowired
+    public ExecuteRequestService(WebClient webClient, RequestCoalescer requestCoalescer){
         this.webClient = webClient;
+        this.requestCoalescer = requestCoalescer;
     }
 
     private static final Logger logger = LogManager.getLogger(ExecuteRequestService.class);
 
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT = new ParameterizedTypeReference<>() {
+    };
+
+    private static final ParameterizedTypeReference<String> STRING = ParameterizedTypeReference.forType(String.class);
+
+    private static final ParameterizedTypeReference<ValuePage> VALUE_PAGE = ParameterizedTypeReference.forType(ValuePage.class);
+
+    private static final ParameterizedTypeReference<FetchPage> FETCH_PAGE = ParameterizedTypeReference.forType(FetchPage.class);
+
+    private static final String FETCH_ANNOTATIONS =
+            "odata.include-annotations=\"Microsoft.Dynamics.CRM.fetchxmlpagingcookie,Microsoft.Dynamics.CRM.morerecords\"";
+
     private Mono<? extends Throwable> handleErrorResponse(ClientResponse response) {
         return response.bodyToMono(String.class)
+                // an error without a body, e.g. a 401, must not be taken for a successful response
+                .defaultIfEmpty("")
                 .flatMap(errorBody -> {
                     return switch (response.statusCode()) {
                         case INTERNAL_SERVER_ERROR -> Mono.error(new InternalServerErrorException(errorBody));
                         case BAD_REQUEST -> Mono.error(new BadRequestException(errorBody));
+                        case UNAUTHORIZED -> Mono.error(new UnauthorizedException(errorBody));
                         case NOT_FOUND -> Mono.error(new NotFoundException(errorBody));
                         case METHOD_NOT_ALLOWED -> Mono.error(new MethodNotAllowedException(errorBody));
+                        case TOO_MANY_REQUESTS -> Mono.error(new TooManyRequestsException(errorBody));
                         default -> Mono.error(new RuntimeException("Unexpected error: " + errorBody));
                     };
                 });
     }
 
     public Mono<String> getRequest(String requestUrl, String accessToken){
-        return webClient
+        return get(requestUrl, accessToken, STRING);
+    }
+
+    /**
+     * Same as {@link #getRequest(String, String)}, but decodes the response straight from the received
+     * buffers into a map instead of building an intermediate String.
+     */
+    public Mono<Map<String, Object>> getJson(String requestUrl, String accessToken){
+        return get(requestUrl, accessToken, JSON_OBJECT);
+    }
+
+    /**
+     * Same as {@link #getJson(String, String)} for a URL whose query string is already encoded, e.g. one built
+     * by {@link de.ilume.dynamicsConnector.odata.QueryOptions}.
+     */
+    public Mono<Map<String, Object>> getJson(URI requestUrl, String accessToken){
+        return get(requestUrl, accessToken, JSON_OBJECT);
+    }
+
+    /**
+     * Plain GET shared with identical reads in flight
+     *
+     * @param requestUrl A String, which the WebClient encodes, or a URI, which is sent as given
+     */
+    private <T> Mono<T> get(Object requestUrl, String accessToken, ParameterizedTypeReference<T> resultType) {
+        return requestCoalescer.coalesce("GET", requestUrl, null, resultType, accessToken, () -> webClient
                 .get()
-                .uri(requestUrl)
+                .uri(uriBuilder -> requestUrl instanceof URI uri ? uri : uriBuilder.uriString(requestUrl.toString()).build())
                 .headers(h -> h.setBearerAuth(accessToken))
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                .bodyToMono(String.class)
-                .doOnError(throwable -> logger.error("Failed get request", throwable));
+                .bodyToMono(resultType)
+                .doOnError(throwable -> logger.error("Failed get request", throwable)));
     }
 
-    public Mono<String> postRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
-        return webClient
-                .post()
+    /**
+     * Same as {@link #getJson(String, String)}, but sends the given ETag as "If-None-Match". The whole response
+     * is returned, so that a "304 Not Modified" without body can be told apart and the new ETag can be read.
+     *
+     * @param etag ETag of the cached entry, null to read it unconditionally
+     */
+    public Mono<ResponseEntity<Map<String, Object>>> getJsonIfNoneMatch(String requestUrl, String accessToken, String etag){
+        return requestCoalescer.coalesce("GET", requestUrl, "If-None-Match: " + etag, ResponseEntity.class, accessToken, () -> webClient
+                .get()
                 .uri(requestUrl)
                 .headers(h -> {
                     h.setBearerAuth(accessToken);
-                    headers.forEach((key, value) -> h.add(key, value.toString()));
+                    if (etag != null) {
+                        h.setIfNoneMatch(etag);
+                    }
                 })
-                .bodyValue(requestBody)
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                .bodyToMono(String.class)
-                .defaultIfEmpty("Request Status Code: 204 No Content")
-                .doOnError(throwable -> logger.error("Failed post request", throwable));
+                .toEntity(JSON_OBJECT)
+                .doOnError(throwable -> logger.error("Failed get request", throwable)));
     }
 
-    public Mono<String> patchRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
-        return webClient
-                .patch()
+    /**
+     * Reads all pages of a collection by following "@odata.nextLink". Every page is requested
+     * only after the previous one has been emitted, so a consumer that does not keep the pages
+     * never holds more than one of them. Only the records and the next link are decoded.
+     *
+     * @param requestUrl URL of the first page
+     * @param accessToken Token used for the requests
+     * @param pageSize Requested number of records per page, null to use the server default
+     * @return The pages as returned by the Web API
+     */
+    public Flux<ValuePage> getPages(String requestUrl, String accessToken, Integer pageSize) {
+        return getPage(URI.create(requestUrl), accessToken, pageSize, false, VALUE_PAGE)
+                .expand(page -> page.nextLink() == null
+                        ? Mono.empty()
+                        : getPage(URI.create(page.nextLink()), accessToken, pageSize, false, VALUE_PAGE));
+    }
+
+    /**
+     * Same as {@link #getPages(String, String, Integer)}, but sends "Prefer: odata.track-changes", so that the
+     * last page carries "@odata.deltaLink". Requesting a delta link returns the rows created, changed or deleted
+     * since the link was issued, again split into pages.
+     *
+     * @param requestUrl URL of the collection for the initial read, or a delta link of a previous read
+     */
+    public Flux<ValuePage> getChangePages(String requestUrl, String accessToken, Integer pageSize) {
+        return getPage(URI.create(requestUrl), accessToken, pageSize, true, VALUE_PAGE)
+                .expand(page -> page.nextLink() == null
+                        ? Mono.empty()
+                        : getPage(URI.create(page.nextLink()), accessToken, pageSize, true, VALUE_PAGE));
+    }
+
+    /**
+     * Reads a single page of a collection, the returned map contains "@odata.nextLink" if there are further pages.
+     */
+    public Mono<Map<String, Object>> getPage(String requestUrl, String accessToken, Integer pageSize) {
+        return getPage(URI.create(requestUrl), accessToken, pageSize, false, JSON_OBJECT);
+    }
+
+    /**
+     * Reads a single page of a collection, decoding only its records and the next link.
+     */
+    public Mono<ValuePage> getValuePage(String requestUrl, String accessToken, Integer pageSize) {
+        return getPage(URI.create(requestUrl), accessToken, pageSize, false, VALUE_PAGE);
+    }
+
+    /**
+     * Reads a single page of a FetchXML query, requesting the annotations that carry its paging cookie.
+     *
+     * @param requestUrl URL of the entity set with the "fetchXml" query option of the page
+     */
+    public Mono<FetchPage> getFetchPage(URI requestUrl, String accessToken) {
+        return requestCoalescer.coalesce("GET", requestUrl, FETCH_ANNOTATIONS, FETCH_PAGE, accessToken, () -> webClient
+                .get()
                 .uri(requestUrl)
                 .headers(h -> {
                     h.setBearerAuth(accessToken);
-                    headers.forEach((key, value) -> h.add(key, value.toString()));
+                    h.add("Prefer", FETCH_ANNOTATIONS);
                 })
-                .bodyValue(requestBody)
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                .bodyToMono(String.class)
-                .defaultIfEmpty("Request Status Code: 204 No Content")
-                .doOnError(throwable -> logger.error("Failed patch request", throwable));
+                .bodyToMono(FETCH_PAGE)
+                .doOnError(throwable -> logger.error("Failed FetchXML request", throwable)));
     }
 
-    public Mono<String> putRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
-        return webClient
-                .put()
+    private <T> Mono<T> getPage(URI requestUrl, String accessToken, Integer pageSize, boolean trackChanges,
+                                ParameterizedTypeReference<T> pageType) {
+        String variant = "Prefer: " + (trackChanges ? "odata.track-changes," : "") + "odata.maxpagesize=" + pageSize;
+        return requestCoalescer.coalesce("GET", requestUrl, variant, pageType, accessToken, () -> webClient
+                .get()
                 .uri(requestUrl)
                 .headers(h -> {
                     h.setBearerAuth(accessToken);
-                    headers.forEach((key, value) -> h.add(key, value.toString()));
+                    if (trackChanges) {
+                        h.add("Prefer", "odata.track-changes");
+                    }
+                    if (pageSize != null) {
+                        h.add("Prefer", "odata.maxpagesize=" + pageSize);
+                    }
                 })
-                .bodyValue(requestBody)
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                .bodyToMono(String.class)
-                .defaultIfEmpty("Request Status Code: 204 No Content")
-                .doOnError(throwable -> logger.error("Failed put request", throwable));
+                .bodyToMono(pageType)
+                .doOnError(throwable -> logger.error("Failed get page request", throwable)));
     }
 
-    public Mono<String> deleteRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+    /**
+     * Reads a binary value, e.g. the content of a file column, without buffering it. The body has to be
+     * consumed or released by the caller. Binary reads are not shared with identical reads in flight.
+     *
+     * @param range Value of the "Range" header, e.g. "bytes=0-4194303", null to read the whole value
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getBinary(URI requestUrl, String accessToken, String range){
         return webClient
-                .delete()
+                .get()
                 .uri(requestUrl)
                 .headers(h -> {
                     h.setBearerAuth(accessToken);
-                    headers.forEach((key, value) -> h.add(key, value.toString()));
+                    if (range != null) {
+                        h.set(HttpHeaders.RANGE, range);
+                    }
                 })
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
+                .toEntityFlux(DataBuffer.class)
+                .doOnError(throwable -> logger.error("Failed binary get request", throwable));
+    }
+
+    public Mono<String> postRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+        return retrieve(webClient.post().uri(requestUrl).bodyValue(requestBody), accessToken, headers)
+                .bodyToMono(String.class)
+                .defaultIfEmpty("Request Status Code: 204 No Content")
+                .doOnError(throwable -> logger.error("Failed post request", throwable));
+    }
+
+    public Mono<String> patchRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+        return retrieve(webClient.patch().uri(requestUrl).bodyValue(requestBody), accessToken, headers)
+                .bodyToMono(String.class)
+                .defaultIfEmpty("Request Status Code: 204 No Content")
+                .doOnError(throwable -> logger.error("Failed patch request", throwable));
+    }
+
+    public Mono<String> putRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+        return retrieve(webClient.put().uri(requestUrl).bodyValue(requestBody), accessToken, headers)
+                .bodyToMono(String.class)
+                .defaultIfEmpty("Request Status Code: 204 No Content")
+                .doOnError(throwable -> logger.error("Failed put request", throwable));
+    }
+
+    public Mono<String> deleteRequest(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+        return retrieve(webClient.delete().uri(requestUrl), accessToken, headers)
                 .bodyToMono(String.class)
                 .defaultIfEmpty("Request Status Code: 204 No Content")
                 .doOnError(throwable -> logger.error("Failed delete request", throwable));
     }
-}
\ No newline at end of file
+
+    /**
+     * Same as {@link #postRequest}, but decodes the response straight into a map instead of a string.
+     * Completes empty if the Web API answers without a body.
+     */
+    public Mono<Map<String, Object>> postJson(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+        return retrieve(webClient.post().uri(requestUrl).bodyValue(requestBody), accessToken, headers)
+                .bodyToMono(JSON_OBJECT)
+                .doOnError(throwable -> logger.error("Failed post request", throwable));
+    }
+
+    /**
+     * Same as {@link #postJson} for a PATCH request.
+     */
+    public Mono<Map<String, Object>> patchJson(String requestUrl, String accessToken, Map<String, Object> headers, Map<String, Object> requestBody) {
+        return retrieve(webClient.patch().uri(requestUrl).bodyValue(requestBody), accessToken, headers)
+                .bodyToMono(JSON_OBJECT)
+                .doOnError(throwable -> logger.error("Failed patch request", throwable));
+    }
+
+    /**
+     * Same as {@link #deleteRequest}, but decodes the response straight into a map instead of a string.
+     * Completes empty if the Web API answers without a body.
+     */
+    public Mono<Map<String, Object>> deleteJson(String requestUrl, String accessToken, Map<String, Object> headers) {
+        return retrieve(webClient.delete().uri(requestUrl), accessToken, headers)
+                .bodyToMono(JSON_OBJECT)
+                .doOnError(throwable -> logger.error("Failed delete request", throwable));
+    }
+
+    /**
+     * Sends a multipart $batch request. In contrast to the other requests the whole response is returned,
+     * since its content type carries the boundary needed to split the body.
+     */
+    public Mono<ResponseEntity<String>> batchRequest(String requestUrl, String accessToken, Map<String, Object> headers, String requestBody) {
+        return retrieve(webClient.post().uri(requestUrl).bodyValue(requestBody), accessToken, headers)
+                .toEntity(String.class)
+                .doOnError(throwable -> logger.error("Failed batch request", throwable));
+    }
+
+    private WebClient.ResponseSpec retrieve(WebClient.RequestHeadersSpec<?> request, String accessToken, Map<String, Object> headers) {
+        return request
+                .headers(h -> {
+                    h.setBearerAuth(accessToken);
+                    headers.forEach((key, value) -> h.add(key, value.toString()));
+                })
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, this::handleErrorResponse);
+    }
+}
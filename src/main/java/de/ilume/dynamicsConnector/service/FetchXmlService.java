@@ -0,0 +1,69 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.FetchXml;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * Runs FetchXML queries, which express link entities, outer joins and aggregates the OData query options
+ * cannot. Pages are followed through the paging cookie of the previous page, and like
+ * {@link ExecuteRequestService#getPages} the next page is only requested after the previous one has been
+ * emitted, so a consumer that stops early does not read further pages.
+ */
+@RequiredArgsConstructor
+@Service
+public class FetchXmlService {
+
+    private final ExecuteRequestService executeRequestService;
+
+    /**
+     * Reads the pages of a FetchXML query
+     *
+     * @param entitySetUrl Entity set of the entity queried by the "fetch" element
+     * @param fetchXml The FetchXML query
+     * @param pageSize Records per page, the "count" of the query or the server default of 5000 if null
+     * @param accessToken Token used for the requests
+     * @return The pages, each with the URL of the next page as next link
+     */
+    public Flux<ValuePage> pages(EntitySetUrl entitySetUrl, String fetchXml, Integer pageSize, String accessToken) {
+        return Mono.fromCallable(() -> parse(fetchXml))
+                .flatMapMany(query -> page(entitySetUrl, query, 1, pageSize, url(entitySetUrl, query, 1, pageSize, null), accessToken)
+                        .expand(page -> page.next() == null
+                                ? Mono.empty()
+                                : page(entitySetUrl, query, page.number() + 1, pageSize, page.next(), accessToken)))
+                .map(Page::page);
+    }
+
+    private static FetchXml parse(String fetchXml) throws BadRequestException {
+        try {
+            return FetchXml.parse(fetchXml);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    private Mono<Page> page(EntitySetUrl entitySetUrl, FetchXml query, int number, Integer pageSize,
+                            URI url, String accessToken) {
+        return executeRequestService.getFetchPage(url, accessToken)
+                .map(page -> {
+                    URI next = page.hasMoreRecords() && query.isPageable()
+                            ? url(entitySetUrl, query, number + 1, pageSize, FetchXml.pagingCookie(page.pagingCookie()))
+                            : null;
+                    return new Page(number, new ValuePage(page.records(), next == null ? null : next.toString(), null), next);
+                });
+    }
+
+    private static URI url(EntitySetUrl entitySetUrl, FetchXml query, int number, Integer pageSize, String pagingCookie) {
+        return URI.create(entitySetUrl.collection() + "?" + query.page(number, pageSize, pagingCookie));
+    }
+
+    private record Page(int number, ValuePage page, URI next) {
+    }
+}
@@ -0,0 +1,326 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.FileProperties;
+import de.ilume.dynamicsConnector.dto.FileTransfer;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Moves files between the file directory of the connector runtime and file or image columns. Uploads use
+ * the InitializeFileBlocksUpload, UploadBlock and CommitFileBlocksUpload actions and read one block at a time
+ * from the file channel. Downloads request the value of the column in ranges and write the received buffers
+ * straight to the file, so neither direction holds more than one block of the file in memory.
+ */
+@RequiredArgsConstructor
+@Service
+public class FileService {
+
+    private static final Logger logger = LogManager.getLogger(FileService.class);
+
+    private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final String FILE_SIZE = "x-ms-file-size";
+    private static final String FILE_NAME = "x-ms-file-name";
+
+    private final ExecuteRequestService executeRequestService;
+    private final FileProperties properties;
+
+    /**
+     * Uploads a file of the runtime into a file or image column
+     *
+     * @param entitySetUrl URLs of the entity set
+     * @param id ID of the entry the file is stored in
+     * @param file Column, path and name of the file
+     * @param accessToken Token used for the requests
+     * @return Map containing the "fileId", "fileName", "size" in bytes and the number of "blocks"
+     */
+    public Mono<Map<String, Object>> upload(EntitySetUrl entitySetUrl, String id, FileTransfer file, String accessToken) {
+        return Mono.fromCallable(() -> {
+                    requireEntry(id, file);
+                    return resolve(file.path());
+                })
+                .flatMap(path -> Mono.using(
+                        () -> FileChannel.open(path, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS),
+                        channel -> upload(entitySetUrl, id, file, fileName(file), channel, accessToken),
+                        FileService::close));
+    }
+
+    private Mono<Map<String, Object>> upload(EntitySetUrl entitySetUrl, String id, FileTransfer file, String fileName,
+                                             FileChannel channel, String accessToken) {
+        return Mono.fromCallable(channel::size)
+                .flatMap(size -> {
+                    if (size == 0) {
+                        return Mono.error(new BadRequestException("File " + file.path() + " is empty"));
+                    }
+                    int blockSize = blockSize();
+                    int blocks = (int) ((size + blockSize - 1) / blockSize);
+                    String entityName = file.entityName() == null || file.entityName().isEmpty()
+                            ? BulkService.entityName(entitySetUrl.entitySet())
+                            : file.entityName();
+
+                    Map<String, Object> target = new LinkedHashMap<>();
+                    target.put("@odata.type", "Microsoft.Dynamics.CRM." + entityName);
+                    target.put(entityName + "id", id);
+                    Map<String, Object> initialize = new LinkedHashMap<>();
+                    initialize.put("Target", target);
+                    initialize.put("FileAttributeName", file.column());
+                    initialize.put("FileName", fileName);
+
+                    return executeRequestService.postJson(entitySetUrl.serviceUrl() + "/InitializeFileBlocksUpload",
+                                    accessToken, jsonHeaders(), initialize)
+                            .map(response -> (String) response.get("FileContinuationToken"))
+                            .switchIfEmpty(Mono.error(new IllegalStateException("InitializeFileBlocksUpload returned no continuation token")))
+                            .flatMap(continuationToken -> Flux.range(0, blocks)
+                                    // one block at a time, each block is read only once the previous one has been sent
+                                    .concatMap(block -> uploadBlock(entitySetUrl, channel, block, blockSize, continuationToken, accessToken))
+                                    .collectList()
+                                    .flatMap(blockList -> commit(entitySetUrl, file, fileName, blockList, continuationToken, accessToken)))
+                            .map(response -> {
+                                Map<String, Object> result = new LinkedHashMap<>();
+                                result.put("fileId", response.get("FileId"));
+                                result.put("fileName", fileName);
+                                result.put("size", response.getOrDefault("FileSizeInBytes", size));
+                                result.put("blocks", blocks);
+                                return result;
+                            });
+                });
+    }
+
+    private Mono<String> uploadBlock(EntitySetUrl entitySetUrl, FileChannel channel, int block, int blockSize,
+                                     String continuationToken, String accessToken) {
+        // block IDs have to be of equal length
+        String blockId = Base64.getEncoder().encodeToString(String.format("block-%08d", block).getBytes(StandardCharsets.UTF_8));
+        return Mono.fromCallable(() -> read(channel, (long) block * blockSize, blockSize))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(data -> {
+                    Map<String, Object> body = new LinkedHashMap<>();
+                    body.put("BlockId", blockId);
+                    body.put("BlockData", Base64.getEncoder().encodeToString(data));
+                    body.put("FileContinuationToken", continuationToken);
+                    return executeRequestService.postJson(entitySetUrl.serviceUrl() + "/UploadBlock", accessToken,
+                            jsonHeaders(), body);
+                })
+                .then(Mono.just(blockId));
+    }
+
+    private Mono<Map<String, Object>> commit(EntitySetUrl entitySetUrl, FileTransfer file, String fileName,
+                                             List<String> blockList, String continuationToken, String accessToken) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("FileName", fileName);
+        body.put("MimeType", file.mimeType() == null || file.mimeType().isEmpty() ? "application/octet-stream" : file.mimeType());
+        body.put("BlockList", blockList);
+        body.put("FileContinuationToken", continuationToken);
+        return executeRequestService.postJson(entitySetUrl.serviceUrl() + "/CommitFileBlocksUpload", accessToken,
+                        jsonHeaders(), body)
+                .defaultIfEmpty(Map.of());
+    }
+
+    /**
+     * Downloads the content of a file or image column to a file of the runtime
+     *
+     * @param entitySetUrl URLs of the entity set
+     * @param id ID of the entry the file is stored in
+     * @param file Column, path and optionally the range to download
+     * @param accessToken Token used for the requests
+     * @return Map containing the "fileName" in Dataverse, the "path" written to, the "size" written and the "fileSize"
+     */
+    public Mono<Map<String, Object>> download(EntitySetUrl entitySetUrl, String id, FileTransfer file, String accessToken) {
+        return Mono.fromCallable(() -> {
+                    requireEntry(id, file);
+                    if (file.rangeStart() != null && file.rangeStart() < 0
+                            || file.rangeEnd() != null && file.rangeEnd() < (file.rangeStart() == null ? 0 : file.rangeStart())) {
+                        throw new BadRequestException("Invalid range " + file.rangeStart() + "-" + file.rangeEnd());
+                    }
+                    Path path = resolve(file.path());
+                    Files.createDirectories(path.getParent());
+                    return path;
+                })
+                .flatMap(path -> {
+                    URI valueUrl = URI.create(entitySetUrl.entry(id) + "/" + file.column() + "/$value");
+                    long first = file.rangeStart() == null ? 0 : file.rangeStart();
+                    long last = file.rangeEnd() == null ? Long.MAX_VALUE : file.rangeEnd();
+
+                    return Mono.using(
+                            () -> AsynchronousFileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING, LinkOption.NOFOLLOW_LINKS),
+                            channel -> downloadRange(valueUrl, channel, first, first, last, accessToken)
+                                    .expand(range -> range.hasMore(last)
+                                            ? downloadRange(valueUrl, channel, first, range.next(), last, accessToken)
+                                            : Mono.empty())
+                                    .reduce((previous, range) -> new Range(range.start(), range.written() + previous.written(),
+                                            range.fileSize(), range.fileName(), range.partial()))
+                                    .map(total -> {
+                                        Map<String, Object> result = new LinkedHashMap<>();
+                                        result.put("fileName", total.fileName());
+                                        result.put("path", file.path());
+                                        result.put("size", total.written());
+                                        result.put("fileSize", total.fileSize());
+                                        return result;
+                                    }),
+                            FileService::close);
+                });
+    }
+
+    private Mono<Range> downloadRange(URI valueUrl, AsynchronousFileChannel channel, long first, long start, long last,
+                                      String accessToken) {
+        long end = Math.min(last, start + blockSize() - 1);
+        return executeRequestService.getBinary(valueUrl, accessToken, "bytes=" + start + "-" + end)
+                .flatMap(response -> {
+                    long[] written = {0};
+                    Flux<DataBuffer> body = response.getBody() == null ? Flux.empty() : response.getBody()
+                            .doOnNext(buffer -> written[0] += buffer.readableByteCount());
+                    return DataBufferUtils.write(body, channel, start - first)
+                            .doOnNext(DataBufferUtils::release)
+                            .then(Mono.fromSupplier(() -> new Range(start, written[0], fileSize(response),
+                                    response.getHeaders().getFirst(FILE_NAME),
+                                    response.getStatusCode().isSameCodeAs(HttpStatus.PARTIAL_CONTENT))));
+                });
+    }
+
+    /**
+     * One range of a download
+     *
+     * @param partial Whether the service answered with a range, otherwise the whole value has been received
+     */
+    private record Range(long start, long written, long fileSize, String fileName, boolean partial) {
+
+        private long next() {
+            return start + written;
+        }
+
+        private boolean hasMore(long last) {
+            if (!partial || written == 0 || next() > last) {
+                return false;
+            }
+            return fileSize < 0 || next() < fileSize;
+        }
+    }
+
+    private static long fileSize(ResponseEntity<?> response) {
+        HttpHeaders headers = response.getHeaders();
+        String fileSize = headers.getFirst(FILE_SIZE);
+        String contentRange = headers.getFirst(HttpHeaders.CONTENT_RANGE);
+        try {
+            if (fileSize != null) {
+                return Long.parseLong(fileSize.trim());
+            }
+            if (contentRange != null && contentRange.indexOf('/') > 0 && !contentRange.endsWith("*")) {
+                return Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("Unreadable file size " + fileSize + " / " + contentRange);
+        }
+        return -1;
+    }
+
+    private static byte[] read(FileChannel channel, long position, int blockSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(blockSize, channel.size() - position));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private int blockSize() {
+        return (int) Math.max(1, Math.min(properties.getBlockSize().toBytes(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Resolves the path of a job against the file directory. Symbolic links are followed for the directory and
+     * the existing part of the path, paths leaving the directory through ".." or a link are rejected. The real
+     * path is returned, the file itself is opened without following links.
+     */
+    private Path resolve(String path) throws BadRequestException {
+        if (properties.getDirectory() == null || properties.getDirectory().isEmpty()) {
+            throw new BadRequestException("File transfers are disabled, no file directory is configured");
+        }
+        if (path == null || path.isEmpty()) {
+            throw new BadRequestException("Path of the file is missing");
+        }
+        Path directory;
+        try {
+            directory = Path.of(properties.getDirectory()).toRealPath();
+        } catch (IOException e) {
+            throw new BadRequestException("File directory " + properties.getDirectory() + " is not available");
+        }
+        Path resolved = directory.resolve(path).normalize();
+        if (!resolved.startsWith(directory) || resolved.equals(directory)) {
+            throw new BadRequestException("Path " + path + " is outside of the file directory");
+        }
+        // the longest part of the path that exists, a dangling link counts as existing and fails below
+        Path existing = resolved;
+        while (!Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+        }
+        try {
+            Path real = existing.toRealPath().resolve(existing.relativize(resolved));
+            if (!real.startsWith(directory) || real.equals(directory)) {
+                throw new BadRequestException("Path " + path + " is outside of the file directory");
+            }
+            return real;
+        } catch (IOException e) {
+            throw new BadRequestException("Path " + path + " can not be resolved: " + e.getMessage());
+        }
+    }
+
+    private static void requireEntry(String id, FileTransfer file) throws BadRequestException {
+        if (id == null || id.isEmpty()) {
+            throw new BadRequestException("Entry ID is missing");
+        }
+        if (file == null || file.column() == null || !COLUMN.matcher(file.column()).matches()) {
+            throw new BadRequestException("Invalid file column: " + (file == null ? null : file.column()));
+        }
+    }
+
+    private static String fileName(FileTransfer file) {
+        return file.fileName() == null || file.fileName().isEmpty()
+                ? Path.of(file.path()).getFileName().toString()
+                : file.fileName();
+    }
+
+    private static Map<String, Object> jsonHeaders() {
+        Map<String, Object> requestHeaders = new HashMap<String, Object>();
+        requestHeaders.put("Content-Type", "application/json");
+        return requestHeaders;
+    }
+
+    private static void close(Closeable channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close file", e);
+        }
+    }
+}
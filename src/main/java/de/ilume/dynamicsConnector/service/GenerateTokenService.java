@@ -1,5 +1,6 @@
 package de.ilume.dynamicsConnector.service;
 
+import de.ilume.dynamicsConnector.ClientMetrics;
 import lombok.RequiredArgsConstructor;
 import org.json.JSONObject;
 import org.springframework.http.MediaType;
@@ -8,27 +9,46 @@ import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+
 /**
  * Service Class to generate an access token using the authorization values provided by the user*/
 @RequiredArgsConstructor
 @Service
 public class GenerateTokenService {
 
+    private final WebClient webClient;
+    private final TokenCache tokenCache;
+
     /**
      * Takes authorization values out of a running Camunda process and uses them
      * to send a request for generating an access token. If the request is successful
      * a ResponseEntity is returned which is then converted into a JSON Object
      * before the Token entry is read and used for sending requests directly to the Dataverse Web API.
+     * Tokens are kept in the {@link TokenCache} and reused until shortly before they expire.
      *
      * The following inputs are necessary:
      * Grant type, Access Token URL, Client ID, Client Secret and Scope
      */
 
-    public static Mono<String> getToken(String base_url, String client_id, String client_secret, String scope, String access_token_url) throws Exception {
-        WebClient webClient = WebClient.create();
+    public Mono<String> getToken(String base_url, String client_id, String client_secret, String scope, String access_token_url) {
+        TokenCache.Key key = TokenCache.Key.of(access_token_url, client_id, base_url + scope, client_secret);
+
+        return tokenCache.get(key, () -> requestToken(base_url, client_id, client_secret, scope, access_token_url));
+    }
+
+    /**
+     * Drops the cached token of the client after the Web API rejected it, so that the next call of
+     * {@link #getToken} requests a new one.
+     */
+    public void evictToken(String base_url, String client_id, String client_secret, String scope, String access_token_url) {
+        tokenCache.evict(TokenCache.Key.of(access_token_url, client_id, base_url + scope, client_secret));
+    }
 
+    private Mono<TokenCache.IssuedToken> requestToken(String base_url, String client_id, String client_secret, String scope, String access_token_url) {
         return webClient.post()
                 .uri(access_token_url)
+                .attribute(ClientMetrics.CLIENT, ClientMetrics.TOKEN)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                 .body(BodyInserters.fromFormData("grant_type", "client_credentials")
                         .with("client_id", client_id)
@@ -38,7 +58,8 @@ public class GenerateTokenService {
                 .bodyToMono(String.class)
                 .map(response -> {
                     JSONObject jsonResponse = new JSONObject(response);
-                    return jsonResponse.getString("access_token");
+                    return new TokenCache.IssuedToken(jsonResponse.getString("access_token"),
+                            Duration.ofSeconds(jsonResponse.optLong("expires_in", 0)));
                 });
     }
 }
@@ -0,0 +1,215 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.MetadataProperties;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.metadata.EntityMetadata;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the table definitions (EntityDefinitions) of each environment, so that requests can be checked
+ * with {@link de.ilume.dynamicsConnector.metadata.RequestSchema} before they are sent. A definition is
+ * loaded by the first job addressing its table and reloaded in the background once it is older than the
+ * refresh interval, while the previous definition is still handed out. Concurrent lookups of a definition
+ * that is not loaded yet share a single request. The definitions are read with the token of the job.
+ *
+ * Lookups are counted as "dynamics.connector.metadata.lookups", tagged with their result (hit, stale or miss).
+ */
+@Component
+public class MetadataCache {
+
+    private static final Logger logger = LogManager.getLogger(MetadataCache.class);
+
+    private static final String ATTRIBUTES = "Attributes($select=LogicalName,AttributeType,IsValidForCreate,IsValidForUpdate,IsValidForRead)";
+    private static final String RELATIONSHIPS = "ManyToOneRelationships($select=ReferencingAttribute,ReferencingEntityNavigationPropertyName,ReferencedEntity)";
+
+    private final ConcurrentMap<String, Entry<EntitySets>> environments = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry<EntityMetadata>> entities = new ConcurrentHashMap<>();
+    private final ExecuteRequestService executeRequestService;
+    private final MetadataProperties properties;
+    private final Clock clock;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public MetadataCache(ExecuteRequestService executeRequestService, MetadataProperties properties, MeterRegistry registry) {
+        this(executeRequestService, properties, Clock.systemUTC(), registry);
+    }
+
+    public MetadataCache(ExecuteRequestService executeRequestService, MetadataProperties properties) {
+        this(executeRequestService, properties, Clock.systemUTC(), Metrics.globalRegistry);
+    }
+
+    public MetadataCache(ExecuteRequestService executeRequestService, MetadataProperties properties, Clock clock,
+                         MeterRegistry registry) {
+        this.executeRequestService = executeRequestService;
+        this.properties = properties;
+        this.clock = clock;
+        this.registry = registry;
+        Gauge.builder("dynamics.connector.metadata.cache.size", entities, Map::size)
+                .description("Cached table definitions")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Returns the definition of the table behind an entity set
+     *
+     * @param entitySetUrl Entity set of the table
+     * @param accessToken Token used if the definition has to be loaded
+     * @return The definition, or {@link BadRequestException} if the environment has no such entity set
+     */
+    public Mono<EntityMetadata> entity(EntitySetUrl entitySetUrl, String accessToken) {
+        return entitySets(entitySetUrl.serviceUrl(), accessToken)
+                .flatMap(entitySets -> {
+                    String logicalName = entitySets.logicalNames().get(entitySetUrl.entitySet());
+                    if (logicalName == null) {
+                        return Mono.error(new BadRequestException("Unknown entity set " + entitySetUrl.entitySet()));
+                    }
+                    return get(entities, entitySetUrl.collection(),
+                            () -> load(entitySetUrl.serviceUrl(), logicalName, entitySets, accessToken));
+                });
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    private Mono<EntitySets> entitySets(String serviceUrl, String accessToken) {
+        boolean known = environments.containsKey(serviceUrl);
+        Mono<EntitySets> entitySets = get(environments, serviceUrl, () -> executeRequestService
+                .getJson(URI.create(serviceUrl + "/EntityDefinitions?$select=LogicalName,EntitySetName"), accessToken)
+                .map(MetadataCache::toEntitySets));
+        if (!known && !properties.getWarmup().isEmpty()) {
+            // load the definitions used by most jobs before they are needed
+            entitySets = entitySets.doOnNext(loaded -> properties.getWarmup().forEach(entitySet ->
+                    entity(new EntitySetUrl(serviceUrl, entitySet), accessToken)
+                            .subscribe(entity -> {}, throwable -> logger.warn("Failed to load the definition of {}", entitySet, throwable))));
+        }
+        return entitySets;
+    }
+
+    private Mono<EntityMetadata> load(String serviceUrl, String logicalName, EntitySets entitySets, String accessToken) {
+        URI url = URI.create(serviceUrl + "/EntityDefinitions(LogicalName='" + logicalName + "')"
+                + "?$select=LogicalName,EntitySetName,PrimaryIdAttribute&$expand=" + ATTRIBUTES + "," + RELATIONSHIPS);
+        return executeRequestService.getJson(url, accessToken)
+                .map(definition -> toEntity(definition, entitySets));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EntitySets toEntitySets(Map<String, Object> response) {
+        Map<String, String> logicalNames = new HashMap<>();
+        Map<String, String> entitySetNames = new HashMap<>();
+        for (Map<String, Object> entity : (List<Map<String, Object>>) response.getOrDefault("value", List.of())) {
+            Object logicalName = entity.get("LogicalName");
+            Object entitySetName = entity.get("EntitySetName");
+            if (logicalName != null && entitySetName != null) {
+                logicalNames.put(entitySetName.toString(), logicalName.toString());
+                entitySetNames.put(logicalName.toString(), entitySetName.toString());
+            }
+        }
+        return new EntitySets(logicalNames, entitySetNames);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EntityMetadata toEntity(Map<String, Object> definition, EntitySets entitySets) {
+        Map<String, EntityMetadata.Attribute> attributes = new LinkedHashMap<>();
+        for (Map<String, Object> attribute : (List<Map<String, Object>>) definition.getOrDefault("Attributes", List.of())) {
+            String name = String.valueOf(attribute.get("LogicalName"));
+            attributes.put(name, new EntityMetadata.Attribute(name, String.valueOf(attribute.get("AttributeType")),
+                    Boolean.TRUE.equals(attribute.get("IsValidForCreate")),
+                    Boolean.TRUE.equals(attribute.get("IsValidForUpdate")),
+                    Boolean.TRUE.equals(attribute.get("IsValidForRead"))));
+        }
+
+        Map<String, List<EntityMetadata.Lookup>> lookups = new HashMap<>();
+        for (Map<String, Object> relationship : (List<Map<String, Object>>) definition.getOrDefault("ManyToOneRelationships", List.of())) {
+            String referencedEntitySet = entitySets.entitySetNames().get(String.valueOf(relationship.get("ReferencedEntity")));
+            Object navigationProperty = relationship.get("ReferencingEntityNavigationPropertyName");
+            if (referencedEntitySet != null && navigationProperty != null) {
+                lookups.computeIfAbsent(String.valueOf(relationship.get("ReferencingAttribute")), k -> new ArrayList<>())
+                        .add(new EntityMetadata.Lookup(navigationProperty.toString(), referencedEntitySet));
+            }
+        }
+        return new EntityMetadata(String.valueOf(definition.get("LogicalName")), String.valueOf(definition.get("EntitySetName")),
+                String.valueOf(definition.get("PrimaryIdAttribute")), Map.copyOf(attributes), Map.copyOf(lookups));
+    }
+
+    private <T> Mono<T> get(ConcurrentMap<String, Entry<T>> cache, String key, Supplier<Mono<T>> loader) {
+        return Mono.defer(() -> {
+            Instant now = clock.instant();
+            Entry<T> entry = cache.compute(key, (k, existing) -> {
+                if (existing != null && !existing.needsRefresh(now)) {
+                    return existing;
+                }
+                return new Entry<>(cache, k, existing == null ? null : existing.resolved, loader.get(), now);
+            });
+            T resolved = entry.resolved;
+            String result = resolved != null ? "hit" : entry.previous != null ? "stale" : "miss";
+            Counter.builder("dynamics.connector.metadata.lookups")
+                    .description("Lookups of table definitions")
+                    .tag("result", result)
+                    .register(registry)
+                    .increment();
+            return entry.value();
+        });
+    }
+
+    private record EntitySets(Map<String, String> logicalNames, Map<String, String> entitySetNames) {
+    }
+
+    private final class Entry<T> {
+        private final Instant loadedAt;
+        private final T previous;
+        private final Mono<T> pending;
+        private volatile T resolved;
+
+        private Entry(ConcurrentMap<String, Entry<T>> cache, String key, T previous, Mono<T> load, Instant loadedAt) {
+            this.loadedAt = loadedAt;
+            this.previous = previous;
+            this.pending = load
+                    .doOnNext(value -> resolved = value)
+                    .doOnError(throwable -> cache.remove(key, this))
+                    .cache();
+        }
+
+        private boolean needsRefresh(Instant now) {
+            return resolved != null && !now.isBefore(loadedAt.plus(properties.getRefreshInterval()));
+        }
+
+        private Mono<T> value() {
+            T current = resolved;
+            if (current != null) {
+                return Mono.just(current);
+            }
+            if (previous != null) {
+                // reload in the background, the previous definition is still handed out
+                pending.subscribe(value -> {}, throwable -> logger.warn("Failed to reload table definition", throwable));
+                return Mono.just(previous);
+            }
+            return pending;
+        }
+    }
+}
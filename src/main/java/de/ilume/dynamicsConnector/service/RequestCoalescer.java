@@ -0,0 +1,94 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.CoalescingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets identical reads that are in flight at the same time share a single request and its decoded result.
+ * Reads are identical if they have the same method, URL, request variant (e.g. page size or ETag), result
+ * type and access token, so results are never shared between clients. Once the shared request completes
+ * the next read sends a new one, nothing is cached beyond that.
+ *
+ * The shared request is not cancelled when a single caller cancels, it completes for the remaining ones.
+ * Each read is counted as "dynamics.connector.reads" tagged with "coalesced" true or false.
+ */
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentMap<Key, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final CoalescingProperties properties;
+    private final Counter sent;
+    private final Counter joined;
+
+    @Autowired
+    public RequestCoalescer(CoalescingProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.sent = counter(registry, false);
+        this.joined = counter(registry, true);
+        Gauge.builder("dynamics.connector.reads.in.flight", inFlight, Map::size)
+                .description("Distinct reads in flight that further identical reads can join")
+                .register(registry);
+    }
+
+    public RequestCoalescer(CoalescingProperties properties) {
+        this(properties, Metrics.globalRegistry);
+    }
+
+    private static Counter counter(MeterRegistry registry, boolean coalesced) {
+        return Counter.builder("dynamics.connector.reads")
+                .description("Reads by whether they joined an identical read in flight")
+                .tag("coalesced", String.valueOf(coalesced))
+                .register(registry);
+    }
+
+    /**
+     * Returns the result of an identical read in flight or sends the request.
+     *
+     * @param method HTTP method of the read
+     * @param url URL of the read
+     * @param variant Everything else that changes the response, e.g. the page size, null if nothing does
+     * @param resultType Type the response is decoded into
+     * @param accessToken Token used for the request
+     * @param request Sends the request, only subscribed if no identical read is in flight
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(String method, Object url, String variant, Object resultType, String accessToken,
+                                Supplier<Mono<T>> request) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(request);
+        }
+        Key key = new Key(method, url.toString(), variant, resultType, accessToken);
+        return Mono.defer(() -> {
+            boolean[] created = {false};
+            Mono<?> shared = inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return Mono.defer(request)
+                        .doFinally(signal -> inFlight.remove(k))
+                        .share();
+            });
+            (created[0] ? sent : joined).increment();
+            return (Mono<T>) shared;
+        });
+    }
+
+    /**
+     * Distinct reads currently in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private record Key(String method, String url, String variant, Object resultType, String accessToken) {
+    }
+}
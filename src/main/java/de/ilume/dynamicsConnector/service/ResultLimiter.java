@@ -0,0 +1,194 @@
+package de.ilume.dynamicsConnector.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.dto.Projection;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.exception.PayloadTooLargeException;
+import de.ilume.dynamicsConnector.odata.JsonProjection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Applies the {@link Projection} of a job to its result and keeps the result below the maximum size, so
+ * that large responses do not end up as oversized process variables. Records read page by page are
+ * projected and measured as they arrive, so reading stops as soon as the limit is reached.
+ */
+@RequiredArgsConstructor
+@Component
+public class ResultLimiter {
+
+    private static final String TRUNCATE = "truncate";
+
+    private final ObjectMapper objectMapper;
+    private final ResultProperties properties;
+
+    /**
+     * Projects the records of a result and checks its size.
+     *
+     * @param result The result of the job
+     * @param projection Projection of the job, may be null
+     * @param projectRecords Whether the result contains records the projection applies to
+     */
+    public Mono<Map<String, Object>> limit(Map<String, Object> result, Projection projection, boolean projectRecords) {
+        return Mono.fromCallable(() -> {
+            Map<String, Object> projected;
+            try {
+                projected = projectRecords ? projection(projection).result(result) : result;
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+            long maxSize = maxSize(projection);
+            long size = size(projected);
+            if (size <= maxSize) {
+                return projected;
+            }
+            if (!truncate(projection) || !(projected.get("value") instanceof List<?> records)) {
+                throw tooLarge(size, maxSize);
+            }
+
+            // keep as many records as fit next to the other properties of the result and "count" and "truncated"
+            long budget = maxSize - (size - size(records)) - 2 - 40;
+            List<Object> kept = new ArrayList<>();
+            for (Object record : records) {
+                long recordSize = size(record) + 1;
+                if (recordSize > budget) {
+                    break;
+                }
+                budget -= recordSize;
+                kept.add(record);
+            }
+            Map<String, Object> truncated = new LinkedHashMap<>(projected);
+            truncated.put("value", kept);
+            truncated.put("count", kept.size());
+            truncated.put("truncated", true);
+            return truncated;
+        });
+    }
+
+    /**
+     * Projects records as they are read and collects them into a result with "value", "count" and "truncated".
+     * Once the records no longer fit into the maximum size the job fails, or the records are cut off and no
+     * further records are requested.
+     *
+     * @param maxRecords Maximum number of records, null if unlimited
+     */
+    public Mono<Map<String, Object>> collect(Flux<Map<String, Object>> records, Projection projection, Integer maxRecords) {
+        return collect(records, projection, maxRecords, record -> true);
+    }
+
+    /**
+     * Collects records of which only some are projected, see {@link #collect(Flux, Projection, Integer)}.
+     *
+     * @param projected Whether the projection applies to a record, the other records are kept as they are but
+     *                  count against the maximum number of records and the maximum size as well
+     */
+    public Mono<Map<String, Object>> collect(Flux<Map<String, Object>> records, Projection projection, Integer maxRecords,
+                                             Predicate<Map<String, Object>> projected) {
+        return Mono.defer(() -> {
+            JsonProjection jsonProjection;
+            try {
+                jsonProjection = projection(projection);
+            } catch (IllegalArgumentException e) {
+                return Mono.error(new BadRequestException(e.getMessage()));
+            }
+            long maxSize = maxSize(projection);
+            boolean truncate = truncate(projection);
+            // room for the other properties of the result
+            long[] used = {64};
+            boolean[] oversize = {false};
+
+            Flux<Map<String, Object>> limited = records.map(record -> projected.test(record) ? jsonProjection.record(record) : record);
+            if (maxRecords != null) {
+                // one record more than needed tells whether the result has been truncated
+                limited = limited.take(maxRecords + 1L);
+            }
+            return limited
+                    .takeWhile(record -> {
+                        used[0] += size(record) + 1;
+                        oversize[0] = used[0] > maxSize;
+                        return !oversize[0];
+                    })
+                    .collectList()
+                    .flatMap(list -> {
+                        if (oversize[0] && !truncate) {
+                            return Mono.error(tooLarge(used[0], maxSize));
+                        }
+                        boolean truncated = oversize[0] || (maxRecords != null && list.size() > maxRecords);
+                        List<Map<String, Object>> value = maxRecords != null && list.size() > maxRecords
+                                ? list.subList(0, maxRecords)
+                                : list;
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("value", value);
+                        result.put("count", value.size());
+                        result.put("truncated", truncated);
+                        return Mono.just(result);
+                    });
+        });
+    }
+
+    private JsonProjection projection(Projection projection) {
+        if (projection == null) {
+            return JsonProjection.of(null, false);
+        }
+        return JsonProjection.of(projection.paths(), Boolean.TRUE.equals(projection.stripAnnotations()));
+    }
+
+    private long maxSize(Projection projection) {
+        long maxSize = properties.getMaxSize().toBytes();
+        if (projection != null && projection.maxSize() != null && projection.maxSize() > 0) {
+            return Math.min(maxSize, projection.maxSize());
+        }
+        return maxSize;
+    }
+
+    private boolean truncate(Projection projection) {
+        String onOversize = projection != null && projection.onOversize() != null
+                ? projection.onOversize()
+                : properties.getOnOversize();
+        return TRUNCATE.equalsIgnoreCase(onOversize);
+    }
+
+    private static PayloadTooLargeException tooLarge(long size, long maxSize) {
+        return new PayloadTooLargeException("Result exceeds the maximum size of " + maxSize + " bytes (" + size
+                + " bytes read). Narrow down the query, keep fewer fields or truncate the result.");
+    }
+
+    /**
+     * Size of the value serialized as JSON, counted without keeping the serialized bytes
+     */
+    private long size(Object value) {
+        CountingOutputStream out = new CountingOutputStream();
+        try {
+            objectMapper.writeValue(out, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
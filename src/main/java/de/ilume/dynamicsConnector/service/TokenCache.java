@@ -0,0 +1,208 @@
+package de.ilume.dynamicsConnector.service;
+
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps access tokens per token endpoint, client, scope and secret so that they can be reused by
+ * following jobs until shortly before they expire. Once a token reaches its refresh point a new one
+ * is requested while the old one is still handed out, and concurrent requests for the same key
+ * share a single call to the token endpoint.
+ *
+ * Each lookup is timed as "dynamics.connector.token", tagged with its result (hit, stale, miss or disabled),
+ * so the hit ratio and the time spent waiting for the token endpoint can be read from the metrics.
+ */
+@Component
+public class TokenCache {
+
+    private static final Logger logger = LogManager.getLogger(TokenCache.class);
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final TokenCacheProperties properties;
+    private final Clock clock;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public TokenCache(TokenCacheProperties properties, MeterRegistry registry) {
+        this(properties, Clock.systemUTC(), registry);
+    }
+
+    public TokenCache(TokenCacheProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    public TokenCache(TokenCacheProperties properties, Clock clock) {
+        this(properties, clock, Metrics.globalRegistry);
+    }
+
+    public TokenCache(TokenCacheProperties properties, Clock clock, MeterRegistry registry) {
+        this.properties = properties;
+        this.clock = clock;
+        this.registry = registry;
+        Gauge.builder("dynamics.connector.token.cache.size", entries, Map::size)
+                .description("Clients with a cached access token")
+                .register(registry);
+    }
+
+    /**
+     * Returns the cached token for the given key or uses the token request to obtain a new one.
+     *
+     * @param key Identifies the client the token was issued for
+     * @param tokenRequest Creates the request to the token endpoint, only subscribed when no usable token is cached
+     * @return The access token
+     */
+    public Mono<String> get(Key key, Supplier<Mono<IssuedToken>> tokenRequest) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            if (!properties.isEnabled()) {
+                return timed(tokenRequest.get().map(IssuedToken::accessToken), sample, "disabled");
+            }
+
+            Instant now = clock.instant();
+            Entry entry = entries.compute(key, (k, existing) -> {
+                if (existing != null && !existing.needsRefresh(now)) {
+                    return existing;
+                }
+                return new Entry(k, existing == null ? null : existing.usable(now), tokenRequest.get());
+            });
+            Lookup lookup = entry.lookup(now);
+            return timed(entry.token(lookup), sample, lookup.name().toLowerCase());
+        });
+    }
+
+    private Mono<String> timed(Mono<String> token, Timer.Sample sample, String result) {
+        return token.doFinally(signal -> sample.stop(Timer.builder("dynamics.connector.token")
+                .description("Time to obtain an access token, from the cache or the token endpoint")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry)));
+    }
+
+    /**
+     * Removes the token for the given key, e.g. after it has been rejected.
+     */
+    public void evict(Key key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Identifies the client a token was issued for. The secret only enters the key as a hash.
+     */
+    public record Key(String accessUrl, String clientId, String scope, String secretHash) {
+
+        public static Key of(String accessUrl, String clientId, String scope, String secret) {
+            return new Key(accessUrl, clientId, scope, sha256(secret));
+        }
+
+        private static String sha256(String value) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
+    /**
+     * Token as returned by the token endpoint.
+     *
+     * @param accessToken The access token
+     * @param expiresIn Lifetime of the token as stated in "expires_in", zero if unknown
+     */
+    public record IssuedToken(String accessToken, Duration expiresIn) {
+    }
+
+    private record Token(String value, Instant refreshAt, Instant expiresAt) {
+    }
+
+    private enum Lookup {
+        /** a valid token is cached */
+        HIT,
+        /** the cached token is refreshed in the background but still handed out */
+        STALE,
+        /** the caller waits for the token endpoint */
+        MISS
+    }
+
+    private Token toToken(IssuedToken issued) {
+        Instant issuedAt = clock.instant();
+        Duration lifetime = issued.expiresIn().isNegative() ? Duration.ZERO : issued.expiresIn();
+        Duration skew = properties.getRefreshSkew();
+        if (skew.compareTo(lifetime.dividedBy(2)) > 0) {
+            skew = lifetime.dividedBy(2);
+        }
+        return new Token(issued.accessToken(), issuedAt.plus(lifetime).minus(skew), issuedAt.plus(lifetime));
+    }
+
+    private final class Entry {
+        private final Token previous;
+        private final Mono<Token> pending;
+        private volatile Token resolved;
+
+        private Entry(Key key, Token previous, Mono<IssuedToken> request) {
+            this.previous = previous;
+            this.pending = request
+                    .map(TokenCache.this::toToken)
+                    .doOnNext(token -> resolved = token)
+                    .doOnError(throwable -> entries.remove(key, this))
+                    .cache();
+        }
+
+        private boolean needsRefresh(Instant now) {
+            Token current = resolved;
+            return current != null && !now.isBefore(current.refreshAt());
+        }
+
+        private Token usable(Instant now) {
+            Token current = resolved;
+            return current != null && now.isBefore(current.expiresAt()) ? current : null;
+        }
+
+        private Lookup lookup(Instant now) {
+            if (resolved != null) {
+                return Lookup.HIT;
+            }
+            if (previous != null && now.isBefore(previous.expiresAt())) {
+                return Lookup.STALE;
+            }
+            return Lookup.MISS;
+        }
+
+        private Mono<String> token(Lookup lookup) {
+            return switch (lookup) {
+                case HIT -> Mono.just(resolved.value());
+                case STALE -> {
+                    // refresh in the background, the previous token is still valid
+                    pending.subscribe(token -> {}, throwable -> logger.warn("Failed to refresh access token", throwable));
+                    yield Mono.just(previous.value());
+                }
+                case MISS -> pending.map(Token::value);
+            };
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package de.ilume.dynamicsConnector.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.ClientMetrics;
+import de.ilume.dynamicsConnector.ThrottlingProperties;
+import de.ilume.dynamicsConnector.WriteBatchingProperties;
+import de.ilume.dynamicsConnector.batch.BatchRequest;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.exception.InternalServerErrorException;
+import de.ilume.dynamicsConnector.exception.MethodNotAllowedException;
+import de.ilume.dynamicsConnector.exception.NotFoundException;
+import de.ilume.dynamicsConnector.exception.TooManyRequestsException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.ODataLiteral;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combines the "createEntry" and "updateEntry" requests of concurrent jobs into $batch requests. The first
+ * write to an entity set opens a batch that collects the writes of the same application user for the
+ * configured window, or until it holds the maximum number of writes, and is then sent through the
+ * {@link BatchService}. Every job completes with the response to its own write, or fails with the
+ * exception the single request would have raised. A failed batch request fails all of its writes.
+ * Writes throttled within a batch (429) are collected again after their Retry-After, or a backoff, and fail
+ * with the throttled response once the retries of the throttling settings are used up.
+ *
+ * The writes are not part of a change set, so they succeed or fail independently of each other.
+ * The number of writes per sent batch is recorded as "dynamics.connector.write.batch.size".
+ */
+@Component
+public class WriteAggregator {
+
+    private static final Logger logger = LogManager.getLogger(WriteAggregator.class);
+
+    private final ConcurrentMap<Key, Batch> batches = new ConcurrentHashMap<>();
+    private final BatchService batchService;
+    private final ObjectMapper objectMapper;
+    private final WriteBatchingProperties properties;
+    private final ThrottlingProperties throttlingProperties;
+    private final DistributionSummary batchSize;
+
+    @Autowired
+    public WriteAggregator(BatchService batchService, ObjectMapper objectMapper, WriteBatchingProperties properties,
+                           ThrottlingProperties throttlingProperties, MeterRegistry registry) {
+        this.batchService = batchService;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.throttlingProperties = throttlingProperties;
+        this.batchSize = DistributionSummary.builder("dynamics.connector.write.batch.size")
+                .description("Writes of concurrent jobs sent in one batch request")
+                .register(registry);
+    }
+
+    public WriteAggregator(BatchService batchService, ObjectMapper objectMapper, WriteBatchingProperties properties,
+                           MeterRegistry registry) {
+        this(batchService, objectMapper, properties, new ThrottlingProperties(), registry);
+    }
+
+    public WriteAggregator(BatchService batchService, ObjectMapper objectMapper, WriteBatchingProperties properties) {
+        this(batchService, objectMapper, properties, Metrics.globalRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Adds a write to the open batch of its entity set and application user.
+     *
+     * @param clientId Application user the token was issued for, batches are paced as its requests
+     * @param entitySetUrl Entity set written to
+     * @param accessToken Token the batch is sent with
+     * @param operation "createEntry" or "updateEntry"
+     * @return The written entry as returned by the Web API, an empty map if it answered without a body
+     */
+    public Mono<Map<String, Object>> submit(String clientId, EntitySetUrl entitySetUrl, String accessToken,
+                                            BatchOperation operation) {
+        if (!"createEntry".equals(operation.operation())) {
+            // would fail the whole batch, including the writes of other jobs
+            if (operation.accountId() == null || operation.accountId().isEmpty()) {
+                return Mono.error(new BadRequestException(operation.operation() + " needs an id"));
+            }
+            try {
+                ODataLiteral.key(operation.accountId());
+            } catch (IllegalArgumentException e) {
+                return Mono.error(new BadRequestException(e.getMessage()));
+            }
+        }
+        Key key = new Key(entitySetUrl.serviceUrl(), entitySetUrl.entitySet(), clientId == null ? "" : clientId, accessToken);
+        return Mono.create(sink -> add(key, new Write(operation, sink, 0)));
+    }
+
+    private void add(Key key, Write write) {
+        int maxSize = Math.max(1, Math.min(properties.getMaxSize(), BatchRequest.MAX_OPERATIONS));
+        Batch[] full = new Batch[1];
+        batches.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch(k);
+                Batch opened = batch;
+                opened.timer = Schedulers.parallel().schedule(() -> {
+                    if (batches.remove(k, opened)) {
+                        flush(opened);
+                    }
+                }, properties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+            batch.writes.add(write);
+            if (batch.writes.size() >= maxSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            full[0].timer.dispose();
+            flush(full[0]);
+        }
+    }
+
+    private void flush(Batch batch) {
+        List<Write> writes = batch.writes;
+        batchSize.record(writes.size());
+        batchService.execute(batch.key.serviceUrl(), batch.key.entitySet(), batch.key.accessToken(),
+                        writes.stream().map(Write::operation).toList())
+                .contextWrite(ClientMetrics.operation("writeBatch"))
+                .contextWrite(ThrottlingFilter.clientId(batch.key.clientId()))
+                .subscribe(result -> complete(batch.key, writes, result), throwable -> {
+                    logger.warn("Failed batch of {} writes to {}", writes.size(), batch.key.entitySet(), throwable);
+                    writes.forEach(write -> write.sink().error(throwable));
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(Key key, List<Write> writes, Map<String, Object> result) {
+        List<Map<String, Object>> responses = (List<Map<String, Object>>) result.get("responses");
+        for (int index = 0; index < writes.size(); index++) {
+            Write write = writes.get(index);
+            MonoSink<Map<String, Object>> sink = write.sink();
+            Map<String, Object> response = index < responses.size() ? responses.get(index) : Map.of();
+            if (isThrottled(response) && throttlingProperties.isEnabled()
+                    && write.attempt() < throttlingProperties.getMaxRetries()) {
+                retry(key, write, response);
+            } else if (Boolean.TRUE.equals(response.get("success"))) {
+                Object body = response.get("body");
+                sink.success(body instanceof Map<?, ?> entry ? (Map<String, Object>) entry : Map.of());
+            } else {
+                sink.error(toException(response));
+            }
+        }
+    }
+
+    private static boolean isThrottled(Map<String, Object> response) {
+        Object status = response.get("status");
+        return Integer.valueOf(429).equals(status) || (Integer.valueOf(503).equals(status) && response.containsKey("retryAfter"));
+    }
+
+    /**
+     * Collects the throttled write again once the wait requested for it has passed, together with the writes
+     * arriving by then
+     */
+    private void retry(Key key, Write write, Map<String, Object> response) {
+        Duration retryAfter = response.get("retryAfter") instanceof Number seconds ? Duration.ofSeconds(seconds.longValue()) : null;
+        Duration backoff = ThrottlingFilter.backoff(throttlingProperties, write.attempt(), retryAfter);
+        logger.warn("Write to {} throttled within a batch, retry {} in {} ms", key.entitySet(), write.attempt() + 1,
+                backoff.toMillis());
+        Schedulers.parallel().schedule(() -> add(key, new Write(write.operation(), write.sink(), write.attempt() + 1)),
+                backoff.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private Exception toException(Map<String, Object> response) {
+        String message;
+        try {
+            message = response.containsKey("body")
+                    ? objectMapper.writeValueAsString(response.get("body"))
+                    : String.valueOf(response.getOrDefault("error", "No response received for this operation"));
+        } catch (JsonProcessingException e) {
+            message = String.valueOf(response.get("body"));
+        }
+        int status = response.get("status") instanceof Integer code ? code : 0;
+        return switch (status) {
+            case 400 -> new BadRequestException(message);
+            case 404 -> new NotFoundException(message);
+            case 405 -> new MethodNotAllowedException(message);
+            case 429 -> new TooManyRequestsException(message);
+            case 500 -> new InternalServerErrorException(message);
+            default -> new RuntimeException("Unexpected error: " + message);
+        };
+    }
+
+    private record Key(String serviceUrl, String entitySet, String clientId, String accessToken) {
+    }
+
+    private record Write(BatchOperation operation, MonoSink<Map<String, Object>> sink, int attempt) {
+    }
+
+    private static final class Batch {
+        private final Key key;
+        private final List<Write> writes = new ArrayList<>();
+        private Disposable timer;
+
+        private Batch(Key key) {
+            this.key = key;
+        }
+    }
+}
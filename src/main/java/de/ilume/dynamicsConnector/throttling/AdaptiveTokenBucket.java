@@ -0,0 +1,98 @@
+package de.ilume.dynamicsConnector.throttling;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket pacing the requests of one environment and application user. Callers reserve a token
+ * and wait for the returned delay instead of blocking, so requests are queued in the order they
+ * arrive. The rate follows the service: it is halved and paused for the Retry-After period on every
+ * throttled response and raised step by step while requests succeed.
+ */
+public class AdaptiveTokenBucket {
+
+    private static final double DECREASE = 0.5;
+    private static final double INCREASE = 0.02;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final double maxRate;
+    private final double minRate;
+    private final int burst;
+    private final LongSupplier nanoTime;
+
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+
+    public AdaptiveTokenBucket(double maxRate, double minRate, int burst) {
+        this(maxRate, minRate, burst, System::nanoTime);
+    }
+
+    public AdaptiveTokenBucket(double maxRate, double minRate, int burst, LongSupplier nanoTime) {
+        this.maxRate = maxRate;
+        this.minRate = Math.min(minRate, maxRate);
+        this.burst = Math.max(burst, 1);
+        this.nanoTime = nanoTime;
+        this.rate = maxRate;
+        this.tokens = this.burst;
+        this.refilledAt = nanoTime.getAsLong();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Takes a token and returns how long to wait before the request may be sent.
+     */
+    public synchronized Duration reserve() {
+        long now = nanoTime.getAsLong();
+        refill(now);
+        tokens -= 1;
+
+        long wait = Math.max(0, pausedUntil - now);
+        if (tokens < 0) {
+            wait += (long) (-tokens / rate * NANOS_PER_SECOND);
+        }
+        return Duration.ofNanos(wait);
+    }
+
+    /**
+     * Raises the rate after a successful request.
+     *
+     * @param remaining Requests left in the current window as reported by the service, negative if unknown
+     */
+    public synchronized void onSuccess(long remaining) {
+        rate = Math.min(maxRate, rate + maxRate * INCREASE);
+        if (remaining >= 0 && tokens > remaining) {
+            // do not burst beyond what the service still accepts
+            tokens = remaining;
+        }
+    }
+
+    /**
+     * Halves the rate and stops handing out tokens until the service accepts requests again.
+     *
+     * @param retryAfter Wait requested by the service, {@code null} if unknown
+     */
+    public synchronized void onThrottled(Duration retryAfter) {
+        long now = nanoTime.getAsLong();
+        refill(now);
+        rate = Math.max(minRate, rate * DECREASE);
+        tokens = Math.min(tokens, 0);
+        if (retryAfter != null) {
+            pausedUntil = Math.max(pausedUntil, now + retryAfter.toNanos());
+        }
+    }
+
+    public synchronized double rate() {
+        return rate;
+    }
+
+    private void refill(long now) {
+        // no tokens are earned while paused
+        long from = Math.max(refilledAt, pausedUntil);
+        if (now > from) {
+            tokens = Math.min(burst, tokens + (now - from) * rate / NANOS_PER_SECOND);
+            refilledAt = now;
+        }
+    }
+}
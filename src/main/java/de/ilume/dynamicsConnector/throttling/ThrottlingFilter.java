@@ -0,0 +1,151 @@
+package de.ilume.dynamicsConnector.throttling;
+
+import de.ilume.dynamicsConnector.ClientMetrics;
+import de.ilume.dynamicsConnector.ThrottlingProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Paces the Dataverse requests of each environment and application user with an {@link AdaptiveTokenBucket}
+ * and retries throttled requests (429, or 503 with Retry-After) within the job. The wait honors the
+ * Retry-After header and is spread with a random jitter so that parallel jobs do not retry at the same
+ * instant. Once the retries are used up the throttled response is passed on and fails the job.
+ * Token requests are not paced.
+ */
+public class ThrottlingFilter implements ExchangeFilterFunction {
+
+    private static final Logger logger = LogManager.getLogger(ThrottlingFilter.class);
+
+    static final String BURST_REMAINING = "x-ms-ratelimit-burst-remaining-xrm-requests";
+    private static final String CLIENT_ID = ThrottlingFilter.class.getName() + ".clientId";
+
+    private final ThrottlingProperties properties;
+    private final ConcurrentMap<String, AdaptiveTokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public ThrottlingFilter(ThrottlingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the Reactor context assigning all requests of a chain to the given application user.
+     */
+    public static Context clientId(String clientId) {
+        return Context.of(CLIENT_ID, clientId == null ? "" : clientId);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!properties.isEnabled() || ClientMetrics.TOKEN.equals(request.attribute(ClientMetrics.CLIENT).orElse(null))) {
+            return next.exchange(request);
+        }
+        return Mono.deferContextual(context -> exchange(request, next, bucket(request, context), 0));
+    }
+
+    private AdaptiveTokenBucket bucket(ClientRequest request, ContextView context) {
+        String key = request.url().getHost() + "|" + context.getOrDefault(CLIENT_ID, "");
+        return buckets.computeIfAbsent(key, k -> new AdaptiveTokenBucket(properties.getRequestsPerSecond(),
+                properties.getMinRequestsPerSecond(), properties.getBurst()));
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, AdaptiveTokenBucket bucket, int attempt) {
+        return Mono.defer(() -> {
+                    Duration wait = bucket.reserve();
+                    return wait.isZero() ? next.exchange(request) : Mono.delay(wait).then(next.exchange(request));
+                })
+                .flatMap(response -> {
+                    Duration retryAfter = retryAfter(response.headers().asHttpHeaders());
+                    if (!isThrottled(response, retryAfter)) {
+                        bucket.onSuccess(burstRemaining(response.headers().asHttpHeaders()));
+                        return Mono.just(response);
+                    }
+
+                    bucket.onThrottled(retryAfter);
+                    if (attempt >= properties.getMaxRetries()) {
+                        return Mono.just(response);
+                    }
+
+                    Duration backoff = backoff(attempt, retryAfter);
+                    logger.warn("Request to " + request.url().getHost() + " throttled with " + response.statusCode().value()
+                            + ", retry " + (attempt + 1) + " in " + backoff.toMillis() + " ms");
+                    return response.releaseBody()
+                            .then(Mono.delay(backoff))
+                            .then(exchange(request, next, bucket, attempt + 1));
+                });
+    }
+
+    private static boolean isThrottled(ClientResponse response, Duration retryAfter) {
+        int status = response.statusCode().value();
+        return status == HttpStatus.TOO_MANY_REQUESTS.value()
+                || (status == HttpStatus.SERVICE_UNAVAILABLE.value() && retryAfter != null);
+    }
+
+    private Duration backoff(int attempt, Duration retryAfter) {
+        return backoff(properties, attempt, retryAfter);
+    }
+
+    /**
+     * Waits for Retry-After plus a jitter of up to the initial backoff, or for an exponential backoff
+     * with full jitter if the service did not say how long to wait.
+     */
+    public static Duration backoff(ThrottlingProperties properties, int attempt, Duration retryAfter) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long max = properties.getMaxBackoff().toMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (retryAfter != null) {
+            return Duration.ofMillis(Math.min(max, retryAfter.toMillis() + random.nextLong(initial + 1)));
+        }
+        long ceiling = Math.min(max, initial << Math.min(attempt, 20));
+        return Duration.ofMillis(ceiling / 2 + random.nextLong(ceiling / 2 + 1));
+    }
+
+    /**
+     * @return The wait requested by the Retry-After header, in seconds or as a date, null if there is none
+     */
+    public static Duration retryAfter(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static long burstRemaining(HttpHeaders headers) {
+        String value = headers.getFirst(BURST_REMAINING);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package de.ilume.dynamicsConnector.runtime;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Connector runtime packaged by the "runtime" and "native" profiles: the Dynamics connector bundled with the
+ * Camunda connector runtime, started as its own application instead of being added to an existing runtime.
+ */
+@SpringBootApplication(scanBasePackages = "de.ilume.dynamicsConnector")
+public class DynamicsConnectorRuntime {
+
+    public static void main(String[] args) {
+        SpringApplication.run(DynamicsConnectorRuntime.class, args);
+    }
+}
@@ -0,0 +1,62 @@
+package de.ilume.dynamicsConnector.runtime;
+
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a single getEntry job once the runtime has started, if "startup-probe.base-url" is set, and prints
+ * when the runtime was ready and how long the first job took. Used by the startup benchmark, which points
+ * the probe at a local Dataverse simulator. The property is read at runtime rather than through a condition,
+ * since conditions are already evaluated when the native image is built.
+ */
+@Component
+@RequiredArgsConstructor
+public class StartupProbe implements ApplicationRunner {
+
+    private static final String ENTRY_ID = "00000000-0000-0000-0000-000000000000";
+
+    private final DynamicsConnectorFunction function;
+    private final ConfigurableApplicationContext context;
+    private final Environment environment;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String baseUrl = environment.getProperty("startup-probe.base-url");
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            return;
+        }
+
+        long ready = sinceProcessStart();
+        long start = System.nanoTime();
+        Authentication authentication = new Authentication(baseUrl, "startup-probe", "secret", ".default",
+                environment.getProperty("startup-probe.token-url", baseUrl + "token"));
+        function.getRequestData(new DynamicsConnectorRequest(authentication, "accounts", "getEntry", List.of("name"),
+                        ENTRY_ID, Map.of(), List.of(), null, null, null, null, null, null, null, null))
+                .block(Duration.ofMinutes(1));
+        long firstJob = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        System.out.printf("startup-probe: ready after %d ms, first job took %d ms%n", ready, firstJob);
+        if (environment.getProperty("startup-probe.exit", Boolean.class, true)) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private static long sinceProcessStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(started -> Duration.between(started, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+}
@@ -0,0 +1,193 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.BulkProperties;
+import de.ilume.dynamicsConnector.CoalescingProperties;
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.EntryCacheProperties;
+import de.ilume.dynamicsConnector.FileProperties;
+import de.ilume.dynamicsConnector.MetadataProperties;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.WriteBatchingProperties;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.BulkService;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.EntryCache;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.FetchXmlService;
+import de.ilume.dynamicsConnector.service.FileService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.MetadataCache;
+import de.ilume.dynamicsConnector.service.RequestCoalescer;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import de.ilume.dynamicsConnector.service.WriteAggregator;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how many jobs the connector completes with a fixed number of threads when every job
+ * blocks a platform thread, when the request chains are composed without blocking and when the
+ * blocking calls run on virtual threads. The Dataverse Web API and the token endpoint are replaced
+ * by a local stub server with a fixed response latency.
+ *
+ * Arguments: [jobs] [threads] [latency in ms], defaults to 400 8 100
+ */
+public class ConcurrencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        // must be set before the first virtual thread is started
+        System.setProperty("jdk.virtualThreadScheduler.parallelism", String.valueOf(threads));
+        System.setProperty("jdk.virtualThreadScheduler.maxPoolSize", String.valueOf(threads));
+
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(new StubDispatcher(latency));
+            server.start();
+
+            DynamicsConnectorFunction function = createFunction(server, jobs);
+            DynamicsConnectorRequest request = new DynamicsConnectorRequest(
+                    new Authentication("https://camunda.crm16.dynamics.com/", "client", "secret", ".default",
+                            server.url("/token").toString()),
+                    "accounts", "getAll", List.of(), "", Map.of(), List.of(), null, null, null, null, null, null, null, null);
+
+            // warm up connections, token cache and JIT
+            runReactive(function, request, threads * 4);
+
+            report("blocking, " + threads + " platform threads", jobs, latency, () -> runBlocking(function, request, jobs, threads));
+            report("reactive, no blocked threads", jobs, latency, () -> runReactive(function, request, jobs));
+            report("blocking, virtual threads on " + threads + " carriers", jobs, latency, () -> runVirtual(function, request, jobs));
+        }
+    }
+
+    private static DynamicsConnectorFunction createFunction(MockWebServer server, int jobs) {
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.builder("benchmark")
+                .maxConnections(jobs)
+                .pendingAcquireMaxCount(-1)
+                .build());
+
+        // the connector addresses the Dataverse environment directly, send everything to the stub instead
+        WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter((clientRequest, next) -> next.exchange(ClientRequest.from(clientRequest)
+                        .url(UriComponentsBuilder.fromUri(clientRequest.url())
+                                .scheme("http")
+                                .host(server.getHostName())
+                                .port(server.getPort())
+                                .build(true)
+                                .toUri())
+                        .build()))
+                .build();
+
+        // every job has to send its own request, identical reads would otherwise share one
+        CoalescingProperties coalescing = new CoalescingProperties();
+        coalescing.setEnabled(false);
+        ExecuteRequestService executeRequestService = new ExecuteRequestService(webClient, new RequestCoalescer(coalescing));
+        BatchService batchService = new BatchService(executeRequestService, new ObjectMapper());
+        ResultLimiter resultLimiter = new ResultLimiter(new ObjectMapper(), new ResultProperties());
+        return new DynamicsConnectorFunction(
+                new GenerateTokenService(webClient, new TokenCache(new TokenCacheProperties())),
+                executeRequestService,
+                batchService,
+                new RequestUrls(new DataverseProperties()),
+                new EntryCache(new EntryCacheProperties(), executeRequestService),
+                new BulkService(executeRequestService, new BulkProperties()),
+                resultLimiter,
+                new ChangeTrackingService(executeRequestService, resultLimiter),
+                new FileService(executeRequestService, new FileProperties()),
+                new WriteAggregator(batchService, new ObjectMapper(), new WriteBatchingProperties()),
+                new FetchXmlService(executeRequestService),
+                new MetadataCache(executeRequestService, new MetadataProperties()));
+    }
+
+    private static void runBlocking(DynamicsConnectorFunction function, DynamicsConnectorRequest request, int jobs, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            awaitAll(executor, function, request, jobs);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void runVirtual(DynamicsConnectorFunction function, DynamicsConnectorRequest request, int jobs) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            awaitAll(executor, function, request, jobs);
+        }
+    }
+
+    private static void runReactive(DynamicsConnectorFunction function, DynamicsConnectorRequest request, int jobs) {
+        Flux.range(0, jobs)
+                .flatMap(i -> function.getRequestData(request), jobs)
+                .blockLast();
+    }
+
+    private static void awaitAll(ExecutorService executor, DynamicsConnectorFunction function, DynamicsConnectorRequest request, int jobs) throws Exception {
+        List<Future<?>> futures = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            futures.add(executor.submit(() -> function.getRequestData(request).block()));
+        }
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+    }
+
+    private static void report(String mode, int jobs, long latency, Run run) throws Exception {
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("%-45s %6d jobs in %6d ms, %8.1f jobs/s (lower bound %d ms)%n",
+                mode, jobs, elapsed, jobs * 1000.0 / Math.max(elapsed, 1), latency);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    private static class StubDispatcher extends Dispatcher {
+        private final long latency;
+
+        StubDispatcher(long latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if ("/token".equals(request.getPath())) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"access_token\":\"benchmark-token\",\"expires_in\":3600}");
+            }
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/json")
+                    .setHeadersDelay(latency, TimeUnit.MILLISECONDS)
+                    .setBody("{\"value\":[{\"name\":\"Benchmark Account\",\"accountid\":\"f9beedd9-d85a-ef11-bfe2-002248d8793d\"}]}");
+        }
+    }
+}
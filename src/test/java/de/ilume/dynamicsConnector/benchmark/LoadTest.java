@@ -0,0 +1,211 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.LocalConnectorRuntime;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.dto.Paging;
+import de.ilume.dynamicsConnector.simulator.DataverseSimulator;
+import de.ilume.dynamicsConnector.simulator.Latency;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a sustained mix of connector jobs against the {@link DataverseSimulator} and reports the job
+ * rate, the p50 and p99 job latency and the heap use, as input for capacity planning. The connector
+ * is started through {@link LocalConnectorRuntime} with the web server and the Zeebe client disabled,
+ * so the jobs run through the same beans and WebClient filters as in production.
+ *
+ * Each of the concurrent workers starts its next job as soon as the previous one completed. The mix is
+ * 70 % getEntry, 20 % getAll of one page with 50 records and 10 % createEntry, spread over 10000 records.
+ *
+ * Arguments: [concurrency] [duration in s] [latency] [requests per second], defaults to 64 60 lognormal:80-400 0.
+ * The latency is given as described in {@link Latency#parse(String)}, a request rate of 0 disables the
+ * throttling of the simulator. Connector settings can be changed with -D, e.g.
+ * -Ddynamics.connector.http.max-connections-per-host=128
+ */
+public class LoadTest {
+
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final int RECORDS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 60);
+        String latency = args.length > 2 ? args[2] : "lognormal:80-400";
+        int requestsPerSecond = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        try (DataverseSimulator simulator = new DataverseSimulator()
+                .latency(Latency.parse(latency))
+                .tokenLatency(Latency.uniform(Duration.ofMillis(100), Duration.ofMillis(300)))
+                .requestsPerSecond(requestsPerSecond)
+                .records(RECORDS)
+                .start();
+             ConfigurableApplicationContext context = start(concurrency, requestsPerSecond)) {
+
+            DynamicsConnectorFunction function = context.getBean(DynamicsConnectorFunction.class);
+            Authentication authentication = new Authentication(simulator.baseUrl(), "load-test", "secret", ".default",
+                    simulator.tokenUrl());
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+            System.out.printf("%d workers, latency %s, %s%n", concurrency, latency,
+                    requestsPerSecond > 0 ? requestsPerSecond + " requests/s per application user" : "no request limit");
+
+            run(function, authentication, concurrency, WARMUP, timer(registry, "warmup"), new AtomicLong());
+
+            AtomicLong failures = new AtomicLong();
+            Timer timer = timer(registry, "jobs");
+            HeapSampler heap = new HeapSampler(timer);
+            heap.start();
+            long start = System.nanoTime();
+            run(function, authentication, concurrency, duration, timer, failures);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            heap.interrupt();
+            heap.join();
+
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            System.out.printf("jobs:        %d completed, %d failed%n", timer.count(), failures.get());
+            System.out.printf("throughput:  %.1f jobs/s on average, %d jobs/s in the slowest second%n",
+                    timer.count() / elapsed, heap.slowestSecond());
+            System.out.printf("latency:     p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(snapshot, 0.5), percentile(snapshot, 0.99), snapshot.max(TimeUnit.MILLISECONDS));
+            System.out.printf("heap:        %d MB peak used, %d MB live after the last GC, %d MB committed%n",
+                    heap.peakUsed() >> 20, liveHeap() >> 20,
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted() >> 20);
+            System.out.printf("simulator:   %d requests, %d throttled, %d rejected, %d tokens issued%n",
+                    simulator.requests(), simulator.throttled(), simulator.rejected(), simulator.tokensIssued());
+        }
+    }
+
+    private static ConfigurableApplicationContext start(int concurrency, int requestsPerSecond) {
+        // pace the connector just like the simulator, or not at all when the simulator does not throttle
+        String rate = String.valueOf(requestsPerSecond > 0 ? requestsPerSecond : 1_000_000);
+        return new SpringApplicationBuilder(LocalConnectorRuntime.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "zeebe.client.enabled=false",
+                        "camunda.client.zeebe.enabled=false",
+                        "camunda.connector.polling.enabled=false",
+                        "camunda.connector.webhook.enabled=false",
+                        "logging.level.jsonEncoderLogger=WARN",
+                        "dynamics.connector.throttling.requests-per-second=" + rate,
+                        "dynamics.connector.throttling.burst=" + rate,
+                        "dynamics.connector.isolation.max-concurrent-calls=" + concurrency,
+                        "dynamics.connector.http.max-connections-per-host=" + concurrency)
+                .run();
+    }
+
+    private static void run(DynamicsConnectorFunction function, Authentication authentication, int concurrency,
+                            Duration duration, Timer timer, AtomicLong failures) {
+        long end = System.nanoTime() + duration.toNanos();
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(() -> {
+                            long start = System.nanoTime();
+                            return function.getRequestData(nextJob(authentication))
+                                    .doOnSuccess(result -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                                    .doOnError(throwable -> failures.incrementAndGet())
+                                    .onErrorResume(throwable -> Mono.empty());
+                        })
+                        .repeat(() -> System.nanoTime() < end), concurrency)
+                .blockLast();
+    }
+
+    private static DynamicsConnectorRequest nextJob(Authentication authentication) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int kind = random.nextInt(10);
+        if (kind < 7) {
+            return new DynamicsConnectorRequest(authentication, "accounts", "getEntry", List.of("name"),
+                    DataverseSimulator.id(random.nextInt(RECORDS)), Map.of(), List.of(), null, null, null, null, null, null, null, null);
+        }
+        if (kind < 9) {
+            return new DynamicsConnectorRequest(authentication, "accounts", "getAll", List.of("name"), "", Map.of(),
+                    List.of(), new Paging("firstPage", 50, null), null, null, null, null, null, null, null);
+        }
+        return new DynamicsConnectorRequest(authentication, "accounts", "createEntry", List.of(), "",
+                Map.of("name", "Load Test Account " + random.nextInt()), List.of(), null, null, null, null, null, null, null, null);
+    }
+
+    private static Timer timer(SimpleMeterRegistry registry, String name) {
+        // a single, long lived window, so the percentiles cover the whole run
+        return Timer.builder(name)
+                .publishPercentiles(0.5, 0.99)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static long liveHeap() {
+        long live = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                live += pool.getCollectionUsage().getUsed();
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Samples the used heap and the completed jobs once per second
+     */
+    private static class HeapSampler extends Thread {
+        private final Timer timer;
+        private volatile long peakUsed;
+        private volatile long slowestSecond = Long.MAX_VALUE;
+
+        HeapSampler(Timer timer) {
+            super("heap-sampler");
+            setDaemon(true);
+            this.timer = timer;
+        }
+
+        @Override
+        public void run() {
+            long completed = timer.count();
+            while (!isInterrupted()) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                peakUsed = Math.max(peakUsed, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+                long now = timer.count();
+                slowestSecond = Math.min(slowestSecond, now - completed);
+                completed = now;
+            }
+        }
+
+        long peakUsed() {
+            return peakUsed;
+        }
+
+        long slowestSecond() {
+            return slowestSecond == Long.MAX_VALUE ? 0 : slowestSecond;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package de.ilume.dynamicsConnector.benchmark;
+
+import de.ilume.dynamicsConnector.simulator.DataverseSimulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long a new connector pod takes until it can work on jobs: the time from launching the
+ * runtime until it is ready and until its first job completed, for the plain JVM, the JVM with the CDS
+ * archive, a CRaC checkpoint and the native image. Each run starts a new process whose StartupProbe sends
+ * one getEntry job to a local {@link DataverseSimulator} and exits.
+ *
+ * Build the runtime first with "mvn -Pruntime verify" and, for the native mode, "mvn -Pnative native:compile
+ * -DskipTests". Modes whose artifacts are missing are skipped. The CRaC checkpoint is created on first use
+ * and needs a JDK with CRaC support, given with -Dstartup.java=/path/to/bin/java.
+ *
+ * Arguments: [runs] [modes], defaults to 5 jvm cds crac native
+ */
+public class StartupBenchmark {
+
+    private static final int PORT = 18089;
+    private static final Pattern PROBE = Pattern.compile("startup-probe: ready after (-?\\d+) ms, first job took (\\d+) ms");
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path CDS_ARCHIVE = TARGET.resolve("runtime.jsa");
+    private static final Path CHECKPOINT = TARGET.resolve("crac");
+    private static final Path NATIVE_IMAGE = TARGET.resolve("dynamics-connector-runtime");
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> modes = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : List.of("jvm", "cds", "crac", "native");
+        String java = System.getProperty("startup.java", ProcessHandle.current().info().command().orElse("java"));
+
+        try (DataverseSimulator simulator = new DataverseSimulator().records(1).start(PORT)) {
+            List<String> probe = List.of(
+                    "-Dstartup-probe.base-url=" + simulator.baseUrl(),
+                    "-Dstartup-probe.token-url=" + simulator.tokenUrl());
+            Path jar = runtimeJar();
+
+            for (String mode : modes) {
+                List<String> command = command(mode, java, jar, probe);
+                if (command == null) {
+                    continue;
+                }
+                List<Result> results = new ArrayList<>();
+                for (int i = 0; i < runs; i++) {
+                    results.add(launch(command));
+                }
+                report(mode, results);
+            }
+        }
+    }
+
+    private static List<String> command(String mode, String java, Path jar, List<String> probe) throws Exception {
+        switch (mode) {
+            case "jvm":
+            case "cds":
+            case "crac":
+                if (jar == null) {
+                    System.out.printf("%-8s skipped, build the runtime jar with mvn -Pruntime verify%n", mode);
+                    return null;
+                }
+                break;
+            case "native":
+                if (!Files.isExecutable(NATIVE_IMAGE)) {
+                    System.out.printf("%-8s skipped, build the native image with mvn -Pnative native:compile -DskipTests%n", mode);
+                    return null;
+                }
+                List<String> command = new ArrayList<>();
+                command.add(NATIVE_IMAGE.toString());
+                command.addAll(probe);
+                return command;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        if ("cds".equals(mode)) {
+            if (!Files.exists(CDS_ARCHIVE)) {
+                System.out.printf("%-8s skipped, %s is missing, build it with mvn -Pruntime verify%n", mode, CDS_ARCHIVE);
+                return null;
+            }
+            command.add("-XX:SharedArchiveFile=" + CDS_ARCHIVE);
+        }
+        if ("crac".equals(mode)) {
+            if (!Files.exists(CHECKPOINT) && !checkpoint(java, jar, probe)) {
+                System.out.printf("%-8s skipped, no checkpoint could be created with %s%n", mode, java);
+                return null;
+            }
+            // the probe settings were captured with the checkpoint, the simulator runs on a fixed port for this
+            return List.of(java, "-XX:CRaCRestoreFrom=" + CHECKPOINT);
+        }
+        command.addAll(probe);
+        command.add("-jar");
+        command.add(jar.toString());
+        return command;
+    }
+
+    /**
+     * Starts the runtime up to the refreshed context and takes a checkpoint there, the process is
+     * ended by the checkpoint
+     */
+    private static boolean checkpoint(String java, Path jar, List<String> probe) throws Exception {
+        List<String> command = new ArrayList<>(List.of(java, "-XX:CRaCCheckpointTo=" + CHECKPOINT,
+                "-Dspring.context.checkpoint=onRefresh"));
+        command.addAll(probe);
+        command.add("-jar");
+        command.add(jar.toString());
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (!process.waitFor(5, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            return false;
+        }
+        return Files.exists(CHECKPOINT);
+    }
+
+    private static Result launch(List<String> command) throws Exception {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                Matcher probe = PROBE.matcher(line);
+                if (probe.find()) {
+                    long firstJobDone = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    output.transferTo(Writer.nullWriter());
+                    process.waitFor(1, TimeUnit.MINUTES);
+                    return new Result(Long.parseLong(probe.group(1)), Long.parseLong(probe.group(2)), firstJobDone);
+                }
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+        throw new IOException("The runtime exited without reporting its first job: " + String.join(" ", command));
+    }
+
+    private static void report(String mode, List<Result> results) {
+        System.out.printf("%-8s ready after %6d ms, first job %5d ms, first job completed %6d ms after launch (median of %d)%n",
+                mode,
+                median(results.stream().mapToLong(Result::ready)),
+                median(results.stream().mapToLong(Result::firstJob)),
+                median(results.stream().mapToLong(Result::firstJobDone)),
+                results.size());
+    }
+
+    private static long median(LongStream values) {
+        long[] sorted = values.sorted().toArray();
+        return sorted[sorted.length / 2];
+    }
+
+    private static Path runtimeJar() throws IOException {
+        if (!Files.isDirectory(TARGET)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(TARGET)) {
+            return files.filter(file -> file.getFileName().toString().endsWith("-runtime.jar")).findFirst().orElse(null);
+        }
+    }
+
+    /**
+     * @param ready Milliseconds from the process start until the runtime was ready, as seen by the runtime
+     * @param firstJob Milliseconds the first job took
+     * @param firstJobDone Milliseconds from launching the process until the first job completed
+     */
+    private record Result(long ready, long firstJob, long firstJobDone) {
+    }
+}
@@ -0,0 +1,531 @@
+package de.ilume.dynamicsConnector.simulator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for a Dataverse environment and its Microsoft Entra ID token endpoint, so that the
+ * connector can be run against production-like behavior without network access:
+ * <ul>
+ *     <li>the token endpoint at "/token" issues tokens that expire after {@link #tokenLifetime(Duration)},
+ *     requests with an expired or unknown token are answered with 401</li>
+ *     <li>each application user may send {@link #requestsPerSecond(int)} requests per second, further
+ *     requests are answered with 429 and a Retry-After header until the next second starts</li>
+ *     <li>every entity set holds {@link #records(int)} generated records, collections are split into pages
+ *     of "Prefer: odata.maxpagesize" records that are linked through "@odata.nextLink"</li>
+ *     <li>"$batch" requests are answered part by part, with change sets kept together</li>
+ *     <li>every Web API response is delayed by a value drawn from {@link #latency(Latency)}</li>
+ * </ul>
+ * Records are generated from their position, writes are acknowledged but not stored.
+ */
+public class DataverseSimulator extends Dispatcher implements AutoCloseable {
+
+    public static final String SERVICE_PATH = "/api/data/v9.2";
+    public static final int MAX_PAGE_SIZE = 5000;
+
+    private static final Pattern ENTRY = Pattern.compile("([A-Za-z_]+)\\(([^)]+)\\)");
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=([^;\\s]+)");
+    private static final Pattern OPERATION = Pattern.compile("^(GET|POST|PATCH|DELETE) (\\S+) HTTP/1\\.1$", Pattern.MULTILINE);
+    private static final Pattern CONTENT_ID = Pattern.compile("^Content-ID: *(\\S+)$", Pattern.MULTILINE);
+    private static final Pattern MAX_PAGE_SIZE_PREFERENCE = Pattern.compile("odata\\.maxpagesize=(\\d+)");
+    private static final String CRLF = "\r\n";
+
+    private final MockWebServer server = new MockWebServer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, IssuedToken> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicInteger tokenSequence = new AtomicInteger();
+    private final Clock clock;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong tokensIssued = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile Latency latency = Latency.none();
+    private volatile Latency tokenLatency = Latency.none();
+    private volatile int requestsPerSecond;
+    private volatile int records = 100;
+    private volatile Duration tokenLifetime = Duration.ofHours(1);
+
+    public DataverseSimulator() {
+        this(Clock.systemUTC());
+    }
+
+    public DataverseSimulator(Clock clock) {
+        this.clock = clock;
+        server.setDispatcher(this);
+    }
+
+    public DataverseSimulator latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public DataverseSimulator tokenLatency(Latency tokenLatency) {
+        this.tokenLatency = tokenLatency;
+        return this;
+    }
+
+    /**
+     * @param requestsPerSecond Requests per second and application user before 429 is returned, 0 for no limit
+     */
+    public DataverseSimulator requestsPerSecond(int requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+    public DataverseSimulator records(int records) {
+        this.records = records;
+        return this;
+    }
+
+    public DataverseSimulator tokenLifetime(Duration tokenLifetime) {
+        this.tokenLifetime = tokenLifetime;
+        return this;
+    }
+
+    public DataverseSimulator start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Starts on a fixed port, e.g. for processes that are restored from a checkpoint with the URL already set
+     */
+    public DataverseSimulator start(int port) throws IOException {
+        server.start(port);
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * @return URL of the environment as entered for the authentication, e.g. http://localhost:12345/
+     */
+    public String baseUrl() {
+        return server.url("/").toString();
+    }
+
+    public String serviceUrl() {
+        return server.url(SERVICE_PATH).toString();
+    }
+
+    public String tokenUrl() {
+        return server.url("/token").toString();
+    }
+
+    /**
+     * @return Id of the record at the given position, records are numbered from 0
+     */
+    public static String id(int index) {
+        return String.format("00000000-0000-0000-0000-%012d", index);
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long throttled() {
+        return throttled.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long tokensIssued() {
+        return tokensIssued.get();
+    }
+
+    public long batches() {
+        return batches.get();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        if (url == null) {
+            return error(400, "0x80060888", "Malformed request");
+        }
+        if ("/token".equals(url.encodedPath())) {
+            return delayed(token(request), tokenLatency);
+        }
+
+        requests.incrementAndGet();
+        IssuedToken token = authorize(request.getHeader("Authorization"));
+        if (token == null) {
+            rejected.incrementAndGet();
+            return error(401, "0x80072560", "The access token is missing, invalid or expired")
+                    .setHeader("WWW-Authenticate", "Bearer error=\"invalid_token\"");
+        }
+        Duration retryAfter = acquire(token.client());
+        if (retryAfter != null) {
+            throttled.incrementAndGet();
+            return error(429, "0x80072322", "Number of requests exceeded the limit of " + requestsPerSecond
+                    + " per second")
+                    .setHeader("Retry-After", String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        }
+
+        try {
+            return delayed(webApi(request, url), latency);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return error(400, "0x80048d19", e.getMessage());
+        }
+    }
+
+    private MockResponse token(RecordedRequest request) {
+        Map<String, String> form = form(request.getBody().readUtf8());
+        if (!"client_credentials".equals(form.get("grant_type")) || form.get("client_id") == null) {
+            return new MockResponse()
+                    .setResponseCode(400)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody("{\"error\":\"invalid_request\",\"error_description\":\"client_credentials grant expected\"}");
+        }
+
+        String accessToken = "simulated-" + tokenSequence.incrementAndGet();
+        tokens.put(accessToken, new IssuedToken(form.get("client_id"), clock.instant().plus(tokenLifetime)));
+        tokensIssued.incrementAndGet();
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"token_type\":\"Bearer\",\"expires_in\":" + tokenLifetime.toSeconds()
+                        + ",\"access_token\":\"" + accessToken + "\"}");
+    }
+
+    private IssuedToken authorize(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return null;
+        }
+        IssuedToken token = tokens.get(authorization.substring("Bearer ".length()));
+        return token == null || !clock.instant().isBefore(token.expiresAt()) ? null : token;
+    }
+
+    /**
+     * Counts the request against the current one second window of the client
+     *
+     * @return null if the request is allowed, otherwise the time until the next window starts
+     */
+    private Duration acquire(String client) {
+        int limit = requestsPerSecond;
+        if (limit <= 0) {
+            return null;
+        }
+        long second = clock.millis() / 1000;
+        Window window = windows.compute(client, (key, current) ->
+                current == null || current.second() != second ? new Window(second, new AtomicInteger()) : current);
+        if (window.count().incrementAndGet() <= limit) {
+            return null;
+        }
+        return Duration.ofMillis((second + 1) * 1000 - clock.millis());
+    }
+
+    private MockResponse webApi(RecordedRequest request, HttpUrl url) throws JsonProcessingException {
+        String path = url.encodedPath();
+        if (!path.startsWith(SERVICE_PATH + "/")) {
+            return error(404, "0x80060888", "Resource not found for the segment '" + path + "'");
+        }
+        String resource = URLDecoder.decode(path.substring(SERVICE_PATH.length() + 1), StandardCharsets.UTF_8);
+
+        if ("$batch".equals(resource) && "POST".equals(request.getMethod())) {
+            batches.incrementAndGet();
+            return batch(request.getHeader("Content-Type"), request.getBody().readUtf8());
+        }
+
+        Response response = execute(request.getMethod(), url, resource,
+                request.getBodySize() > 0 ? request.getBody().readUtf8() : "", request.getHeader("Prefer"));
+        MockResponse mockResponse = new MockResponse()
+                .setResponseCode(response.status())
+                .setHeader("OData-Version", "4.0");
+        response.headers().forEach(mockResponse::setHeader);
+        return response.body().isEmpty() ? mockResponse : mockResponse
+                .setHeader("Content-Type", "application/json; odata.metadata=minimal")
+                .setBody(response.body());
+    }
+
+    /**
+     * Executes a single Web API operation, either sent on its own or as part of a batch
+     */
+    private Response execute(String method, HttpUrl url, String resource, String body, String prefer)
+            throws JsonProcessingException {
+        Matcher entry = ENTRY.matcher(resource);
+        boolean returnRepresentation = prefer != null && prefer.contains("return=representation");
+
+        if (entry.matches()) {
+            String entitySet = entry.group(1);
+            String id = entry.group(2);
+            Integer index = index(id);
+            if (index == null) {
+                return new Response(404, Map.of(), errorBody("0x80040217", entitySet + " With Id = " + id + " Does Not Exist"));
+            }
+            return switch (method) {
+                case "GET" -> new Response(200, Map.of("ETag", "W/\"" + index + "\""), json(record(entitySet, index)));
+                case "PATCH" -> returnRepresentation
+                        ? new Response(200, Map.of(), json(merge(record(entitySet, index), body)))
+                        : new Response(204, Map.of("OData-EntityId", url.toString()), "");
+                case "DELETE" -> new Response(204, Map.of(), "");
+                default -> new Response(405, Map.of(), errorBody("0x80060888", "Method " + method + " is not allowed"));
+            };
+        }
+
+        String entitySet = resource;
+        return switch (method) {
+            case "GET" -> page(url, entitySet, prefer);
+            case "POST" -> {
+                String id = UUID.randomUUID().toString();
+                String entityId = url.newBuilder().query(null).build() + "(" + id + ")";
+                Map<String, Object> created = merge(new LinkedHashMap<>(Map.of(idColumn(entitySet), id)), body);
+                yield returnRepresentation
+                        ? new Response(201, Map.of("OData-EntityId", entityId), json(created))
+                        : new Response(204, Map.of("OData-EntityId", entityId), "");
+            }
+            default -> new Response(405, Map.of(), errorBody("0x80060888", "Method " + method + " is not allowed"));
+        };
+    }
+
+    /**
+     * Answers a collection request with one page. The skip token of the simulator is simply the
+     * position of the first record of the page.
+     */
+    private Response page(HttpUrl url, String entitySet, String prefer) throws JsonProcessingException {
+        int total = records;
+        String top = url.queryParameter("$top");
+        if (top != null) {
+            total = Math.min(total, Integer.parseInt(top));
+        }
+        String skipToken = url.queryParameter("$skiptoken");
+        int from = skipToken == null ? 0 : Integer.parseInt(skipToken);
+
+        int pageSize = MAX_PAGE_SIZE;
+        Map<String, String> headers = new LinkedHashMap<>();
+        Matcher preference = prefer == null ? null : MAX_PAGE_SIZE_PREFERENCE.matcher(prefer);
+        if (preference != null && preference.find()) {
+            pageSize = Math.min(pageSize, Integer.parseInt(preference.group(1)));
+            headers.put("Preference-Applied", "odata.maxpagesize=" + pageSize);
+        }
+        int to = Math.min(total, from + pageSize);
+
+        List<Map<String, Object>> value = new ArrayList<>(Math.max(0, to - from));
+        for (int index = from; index < to; index++) {
+            value.add(record(entitySet, index));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("@odata.context", serviceUrl() + "/$metadata#" + entitySet);
+        body.put("value", value);
+        if (to < total) {
+            body.put("@odata.nextLink", url.newBuilder().setQueryParameter("$skiptoken", String.valueOf(to)).build().toString());
+        }
+        return new Response(200, headers, json(body));
+    }
+
+    /**
+     * Answers a multipart $batch request. Each top level part is answered in place, the operations of
+     * a change set are answered in a change set response of their own.
+     */
+    private MockResponse batch(String contentType, String body) throws JsonProcessingException {
+        String boundary = boundary(contentType);
+        String responseBoundary = "batchresponse_" + UUID.randomUUID();
+        StringBuilder response = new StringBuilder();
+
+        for (String part : parts(body, boundary)) {
+            response.append("--").append(responseBoundary).append(CRLF);
+            String changeSetBoundary = boundary(part);
+            if (changeSetBoundary == null) {
+                appendOperation(response, part);
+                continue;
+            }
+            String changeSetResponseBoundary = "changesetresponse_" + UUID.randomUUID();
+            response.append("Content-Type: multipart/mixed; boundary=").append(changeSetResponseBoundary).append(CRLF)
+                    .append(CRLF);
+            for (String operation : parts(part, changeSetBoundary)) {
+                response.append("--").append(changeSetResponseBoundary).append(CRLF);
+                appendOperation(response, operation);
+            }
+            response.append("--").append(changeSetResponseBoundary).append("--").append(CRLF);
+        }
+        response.append("--").append(responseBoundary).append("--").append(CRLF);
+
+        return new MockResponse()
+                .setHeader("OData-Version", "4.0")
+                .setHeader("Content-Type", "multipart/mixed; boundary=" + responseBoundary)
+                .setBody(response.toString());
+    }
+
+    private void appendOperation(StringBuilder response, String part) throws JsonProcessingException {
+        Matcher operation = OPERATION.matcher(part);
+        if (!operation.find()) {
+            throw new IllegalArgumentException("Batch part without request line");
+        }
+        Matcher contentId = CONTENT_ID.matcher(part);
+        HttpUrl url = HttpUrl.get(operation.group(2));
+        String path = url.encodedPath();
+        String resource = URLDecoder.decode(path.substring(path.lastIndexOf('/') + 1), StandardCharsets.UTF_8);
+
+        // headers of the operation end at the first empty line after the request line
+        String rest = part.substring(operation.end());
+        int bodyStart = rest.indexOf(CRLF + CRLF);
+        String headers = bodyStart < 0 ? rest : rest.substring(0, bodyStart);
+        String body = bodyStart < 0 ? "" : rest.substring(bodyStart + 4).strip();
+        String prefer = headers.lines()
+                .filter(line -> line.regionMatches(true, 0, "Prefer:", 0, 7))
+                .map(line -> line.substring(7).strip())
+                .findFirst().orElse(null);
+
+        Response result = execute(operation.group(1), url, resource, body, prefer);
+
+        response.append("Content-Type: application/http").append(CRLF)
+                .append("Content-Transfer-Encoding: binary").append(CRLF);
+        if (contentId.find()) {
+            response.append("Content-ID: ").append(contentId.group(1)).append(CRLF);
+        }
+        response.append(CRLF)
+                .append("HTTP/1.1 ").append(result.status()).append(' ').append(reason(result.status())).append(CRLF);
+        result.headers().forEach((name, value) -> response.append(name).append(": ").append(value).append(CRLF));
+        if (!result.body().isEmpty()) {
+            response.append("Content-Type: application/json; odata.metadata=minimal").append(CRLF);
+        }
+        response.append(CRLF).append(result.body()).append(CRLF);
+    }
+
+    private static List<String> parts(String body, String boundary) {
+        List<String> parts = new ArrayList<>();
+        String delimiter = "--" + boundary;
+        int start = body.indexOf(delimiter);
+        while (start >= 0) {
+            int contentStart = start + delimiter.length();
+            if (body.startsWith("--", contentStart)) {
+                break;
+            }
+            int end = body.indexOf(delimiter, contentStart);
+            if (end < 0) {
+                break;
+            }
+            parts.add(body.substring(contentStart, end).strip());
+            start = end;
+        }
+        return parts;
+    }
+
+    private static String boundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        // only the headers of a part can declare a boundary
+        int headersEnd = contentType.indexOf(CRLF + CRLF);
+        Matcher matcher = BOUNDARY.matcher(headersEnd < 0 ? contentType : contentType.substring(0, headersEnd));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Map<String, Object> record(String entitySet, int index) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("@odata.etag", "W/\"" + index + "\"");
+        record.put(idColumn(entitySet), id(index));
+        record.put("name", "Simulated " + entitySet + " " + index);
+        return record;
+    }
+
+    private Integer index(String id) {
+        if (!id.startsWith("00000000-0000-0000-0000-")) {
+            return null;
+        }
+        try {
+            int index = Integer.parseInt(id.substring(24));
+            return index < records ? index : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String idColumn(String entitySet) {
+        return (entitySet.endsWith("s") ? entitySet.substring(0, entitySet.length() - 1) : entitySet) + "id";
+    }
+
+    private Map<String, Object> merge(Map<String, Object> record, String body) throws JsonProcessingException {
+        if (!body.isBlank()) {
+            record.putAll(objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {
+            }));
+        }
+        return record;
+    }
+
+    private String json(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private static Map<String, String> form(String body) {
+        Map<String, String> form = new LinkedHashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static MockResponse delayed(MockResponse response, Latency latency) {
+        long delay = latency.next(ThreadLocalRandom.current()).toNanos();
+        return delay <= 0 ? response : response.setHeadersDelay(delay, TimeUnit.NANOSECONDS);
+    }
+
+    private static MockResponse error(int status, String code, String message) {
+        return new MockResponse()
+                .setResponseCode(status)
+                .setHeader("Content-Type", "application/json")
+                .setBody(errorBody(code, message));
+    }
+
+    private static String errorBody(String code, String message) {
+        return "{\"error\":{\"code\":\"" + code + "\",\"message\":\"" + message.replace("\"", "'") + "\"}}";
+    }
+
+    private static String reason(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 204 -> "No Content";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            default -> "Status";
+        };
+    }
+
+    private record IssuedToken(String client, Instant expiresAt) {
+    }
+
+    private record Window(long second, AtomicInteger count) {
+    }
+
+    private record Response(int status, Map<String, String> headers, String body) {
+    }
+}
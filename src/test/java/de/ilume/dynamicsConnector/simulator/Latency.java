@@ -0,0 +1,57 @@
+package de.ilume.dynamicsConnector.simulator;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Distribution the response latency of the {@link DataverseSimulator} is drawn from
+ */
+@FunctionalInterface
+public interface Latency {
+
+    /**
+     * z-score of the 99th percentile of the standard normal distribution
+     */
+    double P99_Z = 2.326;
+
+    Duration next(Random random);
+
+    static Latency none() {
+        return random -> Duration.ZERO;
+    }
+
+    static Latency fixed(Duration latency) {
+        return random -> latency;
+    }
+
+    static Latency uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long range = max.toNanos() - minNanos;
+        return random -> Duration.ofNanos(minNanos + (long) (random.nextDouble() * range));
+    }
+
+    /**
+     * Log-normal distribution given by its median and 99th percentile. Response times of web APIs are
+     * usually skewed like this: most responses are close to the median, a few take many times as long.
+     */
+    static Latency logNormal(Duration median, Duration p99) {
+        double mu = Math.log(median.toNanos());
+        double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / P99_Z;
+        return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Parses "none", "fixed:100", "uniform:50-150" or "lognormal:80-400", all in milliseconds
+     */
+    static Latency parse(String value) {
+        String[] parts = value.split(":", 2);
+        String[] millis = parts.length > 1 ? parts[1].split("-") : new String[0];
+        return switch (parts[0]) {
+            case "none" -> none();
+            case "fixed" -> fixed(Duration.ofMillis(Long.parseLong(millis[0])));
+            case "uniform" -> uniform(Duration.ofMillis(Long.parseLong(millis[0])), Duration.ofMillis(Long.parseLong(millis[1])));
+            case "lognormal" -> logNormal(Duration.ofMillis(Long.parseLong(millis[0])), Duration.ofMillis(Long.parseLong(millis[1])));
+            default -> throw new IllegalArgumentException("Unknown latency distribution: " + value);
+        };
+    }
+}
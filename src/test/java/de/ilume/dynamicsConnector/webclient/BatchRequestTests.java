@@ -0,0 +1,212 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchRequestTests {
+    private MockWebServer mockWebServer;
+    private BatchService batchService;
+    private String serviceUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        serviceUrl = mockWebServer.url("/api/data/v9.2").toString();
+        batchService = new BatchService(new ExecuteRequestService(WebClient.builder().build()), new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testBatchRequest() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("Content-Type", "multipart/mixed; boundary=batchresponse_1")
+                .setBody("--batchresponse_1\r\n" +
+                        "Content-Type: multipart/mixed; boundary=changesetresponse_1\r\n" +
+                        "\r\n" +
+                        "--changesetresponse_1\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "Content-ID: 2\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 204 No Content\r\n" +
+                        "OData-Version: 4.0\r\n" +
+                        "OData-EntityId: https://org.crm.dynamics.com/api/data/v9.2/accounts(00000000-0000-0000-0000-000000000002)\r\n" +
+                        "\r\n" +
+                        "\r\n" +
+                        "--changesetresponse_1\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "Content-ID: 1\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 201 Created\r\n" +
+                        "Content-Type: application/json; odata.metadata=minimal\r\n" +
+                        "OData-EntityId: https://org.crm.dynamics.com/api/data/v9.2/accounts(00000000-0000-0000-0000-000000000001)\r\n" +
+                        "\r\n" +
+                        "{\"name\":\"Created Account\"}\r\n" +
+                        "--changesetresponse_1--\r\n" +
+                        "--batchresponse_1\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 404 Not Found\r\n" +
+                        "Content-Type: application/json; odata.metadata=minimal\r\n" +
+                        "\r\n" +
+                        "{\"error\":{\"code\":\"0x80040217\",\"message\":\"account Does Not Exist\"}}\r\n" +
+                        "--batchresponse_1--\r\n"));
+
+        List<BatchOperation> operations = List.of(
+                new BatchOperation("createEntry", null, Map.of("name", "Created Account"), "accounts"),
+                new BatchOperation("updateEntry", "00000000-0000-0000-0000-000000000002", Map.of("name", "Updated"), "accounts"),
+                new BatchOperation("deleteEntry", "00000000-0000-0000-0000-000000000003", null, null));
+
+        StepVerifier.create(batchService.execute(serviceUrl, "accounts", "fake-token", operations))
+                .assertNext(result -> {
+                    assertThat(result.get("succeeded")).isEqualTo(2);
+                    assertThat(result.get("failed")).isEqualTo(1);
+
+                    List<?> responses = (List<?>) result.get("responses");
+                    assertThat(responses).hasSize(3);
+
+                    Map<?, ?> created = (Map<?, ?>) responses.get(0);
+                    assertThat(created.get("status")).isEqualTo(201);
+                    assertThat(created.get("id")).isEqualTo("00000000-0000-0000-0000-000000000001");
+                    assertThat(created.get("body")).isEqualTo(Map.of("name", "Created Account"));
+
+                    Map<?, ?> updated = (Map<?, ?>) responses.get(1);
+                    assertThat(updated.get("status")).isEqualTo(204);
+                    assertThat(updated.get("success")).isEqualTo(true);
+
+                    Map<?, ?> deleted = (Map<?, ?>) responses.get(2);
+                    assertThat(deleted.get("status")).isEqualTo(404);
+                    assertThat(deleted.get("success")).isEqualTo(false);
+                })
+                .verifyComplete();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertThat(recordedRequest.getPath()).isEqualTo("/api/data/v9.2/$batch");
+        assertThat(recordedRequest.getHeader("Content-Type")).startsWith("multipart/mixed; boundary=batch_");
+        assertThat(recordedRequest.getHeader("Prefer")).isEqualTo("odata.continue-on-error");
+
+        String body = recordedRequest.getBody().readUtf8();
+        assertThat(body).contains("Content-Type: multipart/mixed; boundary=changeset_");
+        assertThat(body).contains("POST " + serviceUrl + "/accounts HTTP/1.1");
+        assertThat(body).contains("PATCH " + serviceUrl + "/accounts(00000000-0000-0000-0000-000000000002) HTTP/1.1");
+        assertThat(body).contains("DELETE " + serviceUrl + "/accounts(00000000-0000-0000-0000-000000000003) HTTP/1.1");
+        assertThat(body).contains("{\"name\":\"Created Account\"}");
+    }
+
+    @Test
+    void testFailedChangeSet() {
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("Content-Type", "multipart/mixed; boundary=batchresponse_2")
+                .setBody("--batchresponse_2\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 400 Bad Request\r\n" +
+                        "Content-Type: application/json; odata.metadata=minimal\r\n" +
+                        "\r\n" +
+                        "{\"error\":{\"code\":\"0x80048d19\",\"message\":\"Invalid property\"}}\r\n" +
+                        "--batchresponse_2--\r\n"));
+
+        List<BatchOperation> operations = List.of(
+                new BatchOperation("createEntry", null, Map.of("name", "First"), "accounts"),
+                new BatchOperation("createEntry", null, Map.of("invalid", "Second"), "accounts"));
+
+        StepVerifier.create(batchService.execute(serviceUrl, "accounts", "fake-token", operations))
+                .assertNext(result -> {
+                    assertThat(result.get("succeeded")).isEqualTo(0);
+                    assertThat(result.get("failed")).isEqualTo(2);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testNonJsonResponseBodiesAreKeptAsText() {
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("Content-Type", "multipart/mixed; boundary=batchresponse_3")
+                .setBody("--batchresponse_3\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "Content-ID: 1\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 204 No Content\r\n" +
+                        "OData-EntityId: " + serviceUrl + "/accounts(00000000-0000-0000-0000-000000000001)\r\n" +
+                        "\r\n" +
+                        "\r\n" +
+                        "--batchresponse_3\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "Content-ID: 2\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 502 Bad Gateway\r\n" +
+                        "Content-Type: text/html\r\n" +
+                        "\r\n" +
+                        "<html><body>Bad Gateway</body></html>\r\n" +
+                        "--batchresponse_3--\r\n"));
+
+        List<BatchOperation> operations = List.of(
+                new BatchOperation("createEntry", null, Map.of("name", "First"), null),
+                new BatchOperation("createEntry", null, Map.of("name", "Second"), null));
+
+        StepVerifier.create(batchService.execute(serviceUrl, "accounts", "fake-token", operations))
+                .assertNext(result -> {
+                    assertThat(result.get("succeeded")).isEqualTo(1);
+                    assertThat(result.get("failed")).isEqualTo(1);
+                    List<?> responses = (List<?>) result.get("responses");
+                    assertThat(((Map<?, ?>) responses.get(0)).get("id")).isEqualTo("00000000-0000-0000-0000-000000000001");
+
+                    Map<?, ?> failed = (Map<?, ?>) responses.get(1);
+                    assertThat(failed.get("status")).isEqualTo(502);
+                    assertThat(failed.get("error")).isEqualTo("<html><body>Bad Gateway</body></html>");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetEntryInChangeSet() {
+        List<BatchOperation> operations = List.of(
+                new BatchOperation("getEntry", "00000000-0000-0000-0000-000000000001", null, "reads"));
+
+        StepVerifier.create(batchService.execute(serviceUrl, "accounts", "fake-token", operations))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+
+    @Test
+    void testInvalidEntryIdIsRejected() {
+        List<BatchOperation> operations = List.of(
+                new BatchOperation("deleteEntry", "00000000-0000-0000-0000-000000000001)/primarycontactid/$ref", null, null));
+
+        StepVerifier.create(batchService.execute(serviceUrl, "accounts", "fake-token", operations))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+}
@@ -0,0 +1,135 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.BulkProperties;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.dto.BulkWrite;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.BulkService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkServiceTests {
+
+    private MockWebServer mockWebServer;
+    private BulkService bulkService;
+    private EntitySetUrl accounts;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        BulkProperties properties = new BulkProperties();
+        properties.setParallelism(1);
+        bulkService = new BulkService(new ExecuteRequestService(WebClient.create()), properties);
+        accounts = new RequestUrls(new DataverseProperties()).entitySet(mockWebServer.url("/").toString(), "accounts");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testCreateIsSplitIntoChunks() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"Ids\":[\"id-1\",\"id-2\"]}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(400)
+                .setBody("{\"error\":{\"message\":\"Invalid record\"}}"));
+
+        BulkWrite bulk = new BulkWrite("create", null, null,
+                List.of(Map.of("name", "A"), Map.of("name", "B"), Map.of("name", "C")), 2);
+
+        StepVerifier.create(bulkService.execute(accounts, "token", bulk))
+                .assertNext(result -> {
+                    assertThat(result).containsEntry("succeeded", 2L).containsEntry("failed", 1L);
+                    List<?> results = (List<?>) result.get("results");
+                    assertThat((Map<?, ?>) results.get(1)).containsEntry("id", "id-2").containsEntry("success", true);
+                    assertThat((Map<?, ?>) results.get(2)).containsEntry("index", 2).containsEntry("success", false);
+                })
+                .verifyComplete();
+
+        RecordedRequest first = mockWebServer.takeRequest();
+        assertThat(first.getPath()).isEqualTo("/api/data/v9.2/accounts/Microsoft.Dynamics.CRM.CreateMultiple");
+        assertThat(first.getBody().readUtf8())
+                .contains("\"@odata.type\":\"Microsoft.Dynamics.CRM.account\"")
+                .contains("\"name\":\"B\"")
+                .doesNotContain("\"name\":\"C\"");
+    }
+
+    @Test
+    void testErrorsOtherThanRejectedRecordsFailTheWrite() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(401)
+                .setBody("{\"error\":{\"message\":\"Token expired\"}}"));
+
+        BulkWrite bulk = new BulkWrite("create", null, null, List.of(Map.of("name", "A")), null);
+
+        StepVerifier.create(bulkService.execute(accounts, "token", bulk))
+                .expectErrorMatches(throwable -> throwable.getMessage().contains("Token expired"))
+                .verify();
+    }
+
+    @Test
+    void testUpsertAddressesRecordsByAlternateKey() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"Ids\":[\"id-1\"]}"));
+
+        BulkWrite bulk = new BulkWrite("upsert", "account", List.of("accountnumber"),
+                List.of(Map.of("accountnumber", "O'Brien-1", "name", "A")), null);
+
+        StepVerifier.create(bulkService.execute(accounts, "token", bulk))
+                .assertNext(result -> assertThat(result).containsEntry("succeeded", 1L))
+                .verifyComplete();
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getPath()).isEqualTo("/api/data/v9.2/accounts/Microsoft.Dynamics.CRM.UpsertMultiple");
+        assertThat(request.getBody().readUtf8()).contains("\"@odata.id\":\"accounts(accountnumber='O''Brien-1')\"");
+    }
+
+    @Test
+    void testChunkSizeOutsideTheAcceptedRangeIsInvalid() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        BulkProperties properties = new BulkProperties();
+        assertThat(validator.validate(properties)).isEmpty();
+
+        properties.setChunkSize(0);
+        assertThat(validator.validate(properties)).extracting(violation -> violation.getPropertyPath().toString())
+                .containsExactly("chunkSize");
+        properties.setChunkSize(1001);
+        assertThat(validator.validate(properties)).extracting(violation -> violation.getPropertyPath().toString())
+                .containsExactly("chunkSize");
+    }
+
+    @Test
+    void testMissingKeyColumnIsRejected() {
+        BulkWrite bulk = new BulkWrite("update", null, List.of("accountnumber"), List.of(Map.of("name", "A")), null);
+
+        StepVerifier.create(bulkService.execute(accounts, "token", bulk))
+                .expectError(BadRequestException.class)
+                .verify();
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+}
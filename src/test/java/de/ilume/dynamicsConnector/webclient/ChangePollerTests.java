@@ -0,0 +1,172 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.inbound.ChangePoller;
+import de.ilume.dynamicsConnector.inbound.CheckpointStore;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangePollerTests {
+
+    private MockWebServer mockWebServer;
+    private ChangeTrackingService changeTrackingService;
+    private EntitySetUrl accounts;
+    private CheckpointStore checkpointStore;
+    private final List<Map<String, Object>> events = new ArrayList<>();
+
+    @TempDir
+    Path checkpoints;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        changeTrackingService = new ChangeTrackingService(new ExecuteRequestService(WebClient.create()),
+                new ResultLimiter(new ObjectMapper(), new ResultProperties()));
+        accounts = new RequestUrls(new DataverseProperties()).entitySet(mockWebServer.url("/").toString(), "accounts");
+        checkpointStore = new CheckpointStore(checkpoints);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testInitialRowsAreSkippedAndChangesCorrelated() throws Exception {
+        ChangePoller poller = poller(10, events::add);
+        enqueue(List.of(account("1", 1)), 1);
+        enqueue(List.of(account("2", 1)), 2);
+
+        StepVerifier.create(poller.poll()).expectNext(0).verifyComplete();
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=1");
+
+        StepVerifier.create(poller.poll()).expectNext(1).verifyComplete();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0)).containsEntry("type", "changed").containsEntry("id", "2").containsEntry("entitySet", "accounts");
+        assertThat(new CheckpointStore(checkpoints).get("accounts")).endsWith("$deltatoken=2");
+
+        mockWebServer.takeRequest();
+        assertThat(mockWebServer.takeRequest().getPath()).endsWith("$deltatoken=1");
+    }
+
+    @Test
+    void testSkippedInitialRowsAreFollowedWithoutBeingKept() throws Exception {
+        ChangePoller poller = poller(10, events::add);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[" + account("1", 1) + "],\"@odata.nextLink\":\""
+                        + accounts.collection() + "?$select=name&$skiptoken=1\"}"));
+        enqueue(List.of(account("2", 1)), 1);
+
+        StepVerifier.create(poller.poll()).expectNext(0).verifyComplete();
+        assertThat(poller.pendingChanges()).isZero();
+        assertThat(events).isEmpty();
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=1");
+
+        mockWebServer.takeRequest();
+        assertThat(mockWebServer.takeRequest().getPath()).endsWith("$skiptoken=1");
+    }
+
+    @Test
+    void testChangesBeyondTheMaximumFollowWithTheNextPoll() throws Exception {
+        checkpointStore.put("accounts", accounts.collection() + "?$deltatoken=0");
+        ChangePoller poller = poller(2, events::add);
+        enqueue(List.of(account("1", 1), account("2", 1), account("3", 1)), 1);
+
+        StepVerifier.create(poller.poll()).expectNext(2).verifyComplete();
+        assertThat(poller.pendingChanges()).isEqualTo(1);
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=0");
+
+        StepVerifier.create(poller.poll()).expectNext(1).verifyComplete();
+        assertThat(events).extracting(event -> event.get("id")).containsExactly("1", "2", "3");
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=1");
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testPagesBeyondThePendingMaximumAreReadOnceCorrelated() throws Exception {
+        checkpointStore.put("accounts", accounts.collection() + "?$deltatoken=0");
+        ChangePoller poller = poller(2, events::add);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[" + account("1", 1) + "," + account("2", 1) + "," + account("3", 1)
+                        + "],\"@odata.nextLink\":\"" + accounts.collection() + "?$select=name&$skiptoken=1\"}"));
+        enqueue(List.of(account("4", 1)), 1);
+
+        StepVerifier.create(poller.poll()).expectNext(2).verifyComplete();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        StepVerifier.create(poller.poll()).expectNext(1).verifyComplete();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=0");
+
+        StepVerifier.create(poller.poll()).expectNext(1).verifyComplete();
+        assertThat(events).extracting(event -> event.get("id")).containsExactly("1", "2", "3", "4");
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=1");
+
+        mockWebServer.takeRequest();
+        assertThat(mockWebServer.takeRequest().getPath()).endsWith("$skiptoken=1");
+    }
+
+    @Test
+    void testFailedCorrelationIsRetriedAndDuplicatesDropped() {
+        checkpointStore.put("accounts", accounts.collection() + "?$deltatoken=0");
+        boolean[] engineAvailable = {false};
+        ChangePoller poller = poller(10, event -> engineAvailable[0] && events.add(event));
+        enqueue(List.of(account("1", 1)), 1);
+        enqueue(List.of(account("1", 1), account("1", 2)), 2);
+
+        StepVerifier.create(poller.poll()).expectNext(0).verifyComplete();
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=0");
+
+        engineAvailable[0] = true;
+        StepVerifier.create(poller.poll()).expectNext(1).verifyComplete();
+        // the unchanged row is read again, only its new version is correlated
+        StepVerifier.create(poller.poll()).expectNext(1).verifyComplete();
+        assertThat(events).hasSize(2);
+        assertThat(checkpointStore.get("accounts")).endsWith("$deltatoken=2");
+    }
+
+    private ChangePoller poller(int maxEventsPerTick, Predicate<Map<String, Object>> correlate) {
+        ChangePoller.Settings settings = new ChangePoller.Settings(accounts, List.of("name"), null, "accountid",
+                maxEventsPerTick, 3, 100, false, "accounts");
+        return new ChangePoller(changeTrackingService, checkpointStore, settings, () -> Mono.just("token"), correlate);
+    }
+
+    private static String account(String id, int version) {
+        return "{\"@odata.etag\":\"W/\\\"" + version + "\\\"\",\"name\":\"Account " + id + "\",\"accountid\":\"" + id + "\"}";
+    }
+
+    private void enqueue(List<String> records, int deltaToken) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[" + String.join(",", records) + "],\"@odata.deltaLink\":\""
+                        + accounts.collection() + "?$select=name&$deltatoken=" + deltaToken + "\"}"));
+    }
+}
@@ -0,0 +1,171 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.dto.Projection;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeTrackingTests {
+
+    private static final String ID = "f9beedd9-d85a-ef11-bfe2-002248d8793d";
+    private static final String DELETED_ID = "a1beedd9-d85a-ef11-bfe2-002248d8793d";
+
+    private MockWebServer mockWebServer;
+    private ChangeTrackingService changeTrackingService;
+    private EntitySetUrl accounts;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        changeTrackingService = new ChangeTrackingService(new ExecuteRequestService(WebClient.create()),
+                new ResultLimiter(new ObjectMapper(), new ResultProperties()));
+        accounts = new RequestUrls(new DataverseProperties()).entitySet(mockWebServer.url("/").toString(), "accounts");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testInitialReadFollowsPagesAndReturnsDeltaLink() throws Exception {
+        String deltaLink = accounts.collection() + "?$select=name&$deltatoken=919042%2108%2f22%2f2017";
+        enqueue("{\"value\":[{\"name\":\"A\"}],\"@odata.nextLink\":\"" + accounts.collection() + "?$skiptoken=1\"}");
+        enqueue("{\"value\":[{\"name\":\"B\"}],\"@odata.deltaLink\":\"" + deltaLink + "\"}");
+
+        StepVerifier.create(changeTrackingService.changes(accounts, List.of("name"), null, 1, null, null, "token"))
+                .assertNext(result -> {
+                    assertThat((List<?>) result.get("value")).containsExactly(Map.of("name", "A"), Map.of("name", "B"));
+                    assertThat((List<?>) result.get("deleted")).isEmpty();
+                    assertThat(result).containsEntry("initial", true).containsEntry("deltaLink", deltaLink);
+                })
+                .verifyComplete();
+
+        RecordedRequest first = mockWebServer.takeRequest();
+        assertThat(first.getPath()).isEqualTo("/api/data/v9.2/accounts?$select=name");
+        assertThat(first.getHeaders().values("Prefer")).contains("odata.track-changes", "odata.maxpagesize=1");
+        assertThat(mockWebServer.takeRequest().getHeaders().values("Prefer")).contains("odata.track-changes");
+    }
+
+    @Test
+    void testDeltaLinkReturnsChangedAndDeletedRows() throws Exception {
+        String deltaLink = accounts.collection() + "?$select=name&$deltatoken=1";
+        String nextDeltaLink = accounts.collection() + "?$select=name&$deltatoken=2";
+        enqueue("{\"value\":["
+                + "{\"name\":\"Changed\",\"accountid\":\"" + ID + "\"},"
+                + "{\"@odata.context\":\"" + mockWebServer.url("/") + "api/data/v9.2/$metadata#accounts/$deletedEntity\",\"id\":\"" + DELETED_ID + "\",\"reason\":\"deleted\"}"
+                + "],\"@odata.deltaLink\":\"" + nextDeltaLink + "\"}");
+
+        StepVerifier.create(changeTrackingService.changes(accounts, null, deltaLink, null, null, null, "token"))
+                .assertNext(result -> {
+                    assertThat((List<?>) result.get("value")).hasSize(1);
+                    assertThat((List<?>) result.get("deleted")).containsExactly(DELETED_ID);
+                    assertThat(result).containsEntry("count", 1)
+                            .containsEntry("initial", false)
+                            .containsEntry("deltaLink", nextDeltaLink);
+                })
+                .verifyComplete();
+
+        assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/api/data/v9.2/accounts?$select=name&$deltatoken=1");
+    }
+
+    @Test
+    void testTruncatedReadIsCutToCompletePagesAndContinuedWithNextLink() throws Exception {
+        String secondPage = accounts.collection() + "?$select=name&$skiptoken=1";
+        String deltaLink = accounts.collection() + "?$select=name&$deltatoken=1";
+        enqueue("{\"value\":[{\"name\":\"A\"}],\"@odata.nextLink\":\"" + secondPage + "\"}");
+        enqueue("{\"value\":[{\"name\":\"B\"},{\"name\":\"C\"}],\"@odata.nextLink\":\"" + accounts.collection() + "?$select=name&$skiptoken=2\"}");
+
+        StepVerifier.create(changeTrackingService.changes(accounts, List.of("name"), null, 2, 2,
+                        new Projection(List.of("name"), true, null, null), "token"))
+                .assertNext(result -> {
+                    assertThat((List<?>) result.get("value")).containsExactly(Map.of("name", "A"));
+                    assertThat(result).containsEntry("count", 1)
+                            .containsEntry("truncated", true)
+                            .containsEntry("deltaLink", null)
+                            .containsEntry("nextLink", secondPage);
+                })
+                .verifyComplete();
+
+        mockWebServer.takeRequest();
+        mockWebServer.takeRequest();
+        enqueue("{\"value\":[{\"name\":\"B\"},{\"name\":\"C\"}],\"@odata.deltaLink\":\"" + deltaLink + "\"}");
+
+        StepVerifier.create(changeTrackingService.changes(accounts, List.of("name"), secondPage, 2, 2, null, "token"))
+                .assertNext(result -> {
+                    assertThat((List<?>) result.get("value")).containsExactly(Map.of("name", "B"), Map.of("name", "C"));
+                    assertThat(result).containsEntry("initial", true)
+                            .containsEntry("truncated", false)
+                            .containsEntry("deltaLink", deltaLink)
+                            .containsEntry("nextLink", null);
+                })
+                .verifyComplete();
+
+        assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/api/data/v9.2/accounts?$select=name&$skiptoken=1");
+    }
+
+    @Test
+    void testDeletedRowsCountAgainstTheRecordCap() {
+        String secondPage = accounts.collection() + "?$deltatoken=1&$skiptoken=1";
+        enqueue("{\"value\":[{\"@odata.context\":\"" + mockWebServer.url("/") + "api/data/v9.2/$metadata#accounts/$deletedEntity\",\"id\":\"" + DELETED_ID + "\"}],"
+                + "\"@odata.nextLink\":\"" + secondPage + "\"}");
+        enqueue("{\"value\":[{\"name\":\"A\"},{\"name\":\"B\"}],\"@odata.deltaLink\":\"" + accounts.collection() + "?$deltatoken=2\"}");
+
+        StepVerifier.create(changeTrackingService.changes(accounts, null, accounts.collection() + "?$deltatoken=1", null, 1, null, "token"))
+                .assertNext(result -> {
+                    assertThat((List<?>) result.get("value")).isEmpty();
+                    assertThat((List<?>) result.get("deleted")).containsExactly(DELETED_ID);
+                    assertThat(result).containsEntry("truncated", true).containsEntry("nextLink", secondPage);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testFirstPageBeyondTheLimitsIsRejected() {
+        enqueue("{\"value\":[{\"name\":\"A\"},{\"name\":\"B\"}],\"@odata.deltaLink\":\"" + accounts.collection() + "?$deltatoken=1\"}");
+
+        StepVerifier.create(changeTrackingService.changes(accounts, null, null, null, 1, null, "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+    }
+
+    @Test
+    void testForeignDeltaLinkIsRejected() {
+        StepVerifier.create(changeTrackingService.changes(accounts, null,
+                        "https://attacker.example.com/api/data/v9.2/accounts?$deltatoken=1", null, null, null, "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+
+    private void enqueue(String body) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body));
+    }
+}
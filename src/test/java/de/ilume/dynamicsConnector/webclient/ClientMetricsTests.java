@@ -0,0 +1,121 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.ClientMetrics;
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.exception.NotFoundException;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Clock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientMetricsTests {
+
+    private static final String ACCOUNTS = "{\"value\":[{\"name\":\"MS Account Info\"}]}";
+
+    private MockWebServer mockWebServer;
+    private SimpleMeterRegistry registry;
+    private ExecuteRequestService executeRequestService;
+    private GenerateTokenService generateTokenService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        registry = new SimpleMeterRegistry();
+        WebClient webClient = WebClient.builder()
+                .filter(new ClientMetrics(registry).filter())
+                .build();
+        executeRequestService = new ExecuteRequestService(webClient);
+        generateTokenService = new GenerateTokenService(webClient,
+                new TokenCache(new TokenCacheProperties(), Clock.systemUTC(), registry));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testRequestsAreTaggedWithOperationEntitySetAndStatus() {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(ACCOUNTS));
+
+        StepVerifier.create(executeRequestService.getJson(mockWebServer.url("/api/data/v9.2/accounts").toString(), "token")
+                        .contextWrite(ClientMetrics.operation("getAll")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Timer timer = registry.get("dynamics.connector.requests")
+                .tag("client", ClientMetrics.DATAVERSE)
+                .tag("operation", "getAll")
+                .tag("entity.set", "accounts")
+                .tag("method", "GET")
+                .tag("status", "200")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+
+        DistributionSummary size = registry.get("dynamics.connector.response.size")
+                .tag("entity.set", "accounts")
+                .summary();
+        assertThat(size.totalAmount()).isEqualTo(ACCOUNTS.length());
+        assertThat(registry.get("dynamics.connector.requests.active").gauge().value()).isZero();
+    }
+
+    @Test
+    void testErrorResponsesAreTaggedWithStatus() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(404)
+                .setBody("{\"error\":{\"message\":\"Does Not Exist\"}}"));
+
+        StepVerifier.create(executeRequestService.getJson(mockWebServer.url("/api/data/v9.2/accounts(1)").toString(), "token"))
+                .expectError(NotFoundException.class)
+                .verify();
+
+        assertThat(registry.get("dynamics.connector.requests")
+                .tag("entity.set", "accounts")
+                .tag("operation", "none")
+                .tag("status", "404")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void testTokenLookupsAreCountedAsHitsAndMisses() {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"cached-token\",\"expires_in\":3600}"));
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                    .expectNext("cached-token")
+                    .verifyComplete();
+        }
+
+        assertThat(registry.get("dynamics.connector.token").tag("result", "miss").timer().count()).isEqualTo(1);
+        assertThat(registry.get("dynamics.connector.token").tag("result", "hit").timer().count()).isEqualTo(2);
+        assertThat(registry.get("dynamics.connector.requests")
+                .tag("client", ClientMetrics.TOKEN)
+                .tag("entity.set", "none")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+}
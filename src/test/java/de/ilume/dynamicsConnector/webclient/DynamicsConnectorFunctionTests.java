@@ -0,0 +1,316 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.BulkProperties;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.EntryCacheProperties;
+import de.ilume.dynamicsConnector.FileProperties;
+import de.ilume.dynamicsConnector.MetadataProperties;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.WriteBatchingProperties;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.dto.Paging;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.BulkService;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.EntryCache;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.FetchXmlService;
+import de.ilume.dynamicsConnector.service.FileService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.MetadataCache;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import de.ilume.dynamicsConnector.service.WriteAggregator;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs jobs through {@link DynamicsConnectorFunction#getRequestData} against a mocked token endpoint and Web API
+ */
+class DynamicsConnectorFunctionTests {
+
+    private static final String ID = "f9beedd9-d85a-ef11-bfe2-002248d8793d";
+
+    private MockWebServer mockWebServer;
+    private WriteBatchingProperties writeBatchingProperties;
+    private MetadataProperties metadataProperties;
+    private Authentication authentication;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        writeBatchingProperties = new WriteBatchingProperties();
+        metadataProperties = new MetadataProperties();
+        authentication = new Authentication(mockWebServer.url("/").toString(), "client", "secret", ".default",
+                mockWebServer.url("/token").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private DynamicsConnectorFunction function() {
+        WebClient webClient = WebClient.create();
+        ExecuteRequestService executeRequestService = new ExecuteRequestService(webClient);
+        BatchService batchService = new BatchService(executeRequestService, new ObjectMapper());
+        ResultLimiter resultLimiter = new ResultLimiter(new ObjectMapper(), new ResultProperties());
+        return new DynamicsConnectorFunction(
+                new GenerateTokenService(webClient, new TokenCache(new TokenCacheProperties())),
+                executeRequestService,
+                batchService,
+                new RequestUrls(new DataverseProperties()),
+                new EntryCache(new EntryCacheProperties(), executeRequestService),
+                new BulkService(executeRequestService, new BulkProperties()),
+                resultLimiter,
+                new ChangeTrackingService(executeRequestService, resultLimiter),
+                new FileService(executeRequestService, new FileProperties()),
+                new WriteAggregator(batchService, new ObjectMapper(), writeBatchingProperties),
+                new FetchXmlService(executeRequestService),
+                new MetadataCache(executeRequestService, metadataProperties));
+    }
+
+    private DynamicsConnectorRequest request(String target, String operation, List<String> fields, String id,
+                                             Map<String, Object> requestBody, Paging paging) {
+        return new DynamicsConnectorRequest(authentication, target, operation, fields, id, requestBody, null, paging,
+                null, null, null, null, null, null, null);
+    }
+
+    private void enqueueToken(String accessToken) {
+        enqueueJson("{\"access_token\":\"" + accessToken + "\",\"expires_in\":3600}");
+    }
+
+    private void enqueueJson(String body) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body));
+    }
+
+    /**
+     * Takes the next request to the Web API, requests to the token endpoint are skipped
+     */
+    private RecordedRequest takeApiRequest() throws InterruptedException {
+        RecordedRequest request = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        while (request != null && "/token".equals(request.getPath())) {
+            request = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        }
+        return request;
+    }
+
+    @Test
+    void testGetAllFirstPage() throws Exception {
+        enqueueToken("token");
+        enqueueJson("{\"value\":[{\"name\":\"Contoso\"}],\"@odata.nextLink\":\"" + mockWebServer.url("/next") + "\"}");
+
+        StepVerifier.create(function().getRequestData(request("accounts", "getAll", List.of("name"), null, null,
+                        new Paging("firstPage", 1, null))))
+                .assertNext(result -> assertThat(result).containsKey("@odata.nextLink")
+                        .containsEntry("value", List.of(Map.of("name", "Contoso"))))
+                .verifyComplete();
+
+        RecordedRequest request = takeApiRequest();
+        assertThat(request.getPath()).isEqualTo("/api/data/v9.2/accounts?$select=name");
+        assertThat(request.getHeader(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer token");
+        assertThat(request.getHeader("Prefer")).contains("odata.maxpagesize=1");
+    }
+
+    @Test
+    void testGetAllPagesAreFollowed() throws Exception {
+        enqueueToken("token");
+        enqueueJson("{\"value\":[{\"name\":\"First\"}],\"@odata.nextLink\":\""
+                + mockWebServer.url("/api/data/v9.2/accounts?$skiptoken=2") + "\"}");
+        enqueueJson("{\"value\":[{\"name\":\"Second\"}]}");
+
+        StepVerifier.create(function().getRequestData(request("accounts", "getAll", List.of("name"), null, null,
+                        new Paging("all", 1, null))))
+                .assertNext(result -> assertThat(result)
+                        .containsEntry("value", List.of(Map.of("name", "First"), Map.of("name", "Second")))
+                        .containsEntry("count", 2)
+                        .containsEntry("truncated", false))
+                .verifyComplete();
+
+        assertThat(takeApiRequest().getPath()).isEqualTo("/api/data/v9.2/accounts?$select=name");
+        assertThat(takeApiRequest().getPath()).isEqualTo("/api/data/v9.2/accounts?$skiptoken=2");
+    }
+
+    @Test
+    void testGetAllCountStopsAtMaximum() {
+        enqueueToken("token");
+        enqueueJson("{\"value\":[{\"name\":\"First\"},{\"name\":\"Second\"}],\"@odata.nextLink\":\""
+                + mockWebServer.url("/api/data/v9.2/accounts?$skiptoken=2") + "\"}");
+
+        StepVerifier.create(function().getRequestData(request("accounts", "getAll", List.of("name"), null, null,
+                        new Paging("count", 2, 2))))
+                .assertNext(result -> assertThat(result)
+                        .containsEntry("count", 2L)
+                        .containsEntry("pages", 1L)
+                        .containsEntry("truncated", true))
+                .verifyComplete();
+
+        // the token and a single page, the next page is not needed
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetEntry() throws Exception {
+        enqueueToken("token");
+        enqueueJson("{\"name\":\"Contoso\",\"accountid\":\"" + ID + "\"}");
+
+        StepVerifier.create(function().getRequestData(request("accounts", "getEntry", List.of("name"), ID, null, null)))
+                .assertNext(result -> assertThat(result).containsEntry("name", "Contoso"))
+                .verifyComplete();
+
+        assertThat(takeApiRequest().getPath()).isEqualTo("/api/data/v9.2/accounts(" + ID + ")?$select=name");
+    }
+
+    @Test
+    void testLegacyAccountTarget() throws Exception {
+        enqueueToken("token");
+        enqueueJson("{\"name\":\"Contoso\"}");
+
+        StepVerifier.create(function().getRequestData(request("account", "getEntry", List.of("name"), ID, null, null)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(takeApiRequest().getPath()).startsWith("/api/data/v9.2/accounts(" + ID + ")");
+    }
+
+    @Test
+    void testWritesAddressTheEntry() throws Exception {
+        DynamicsConnectorFunction function = function();
+        enqueueToken("token");
+        enqueueJson("{\"name\":\"Contoso\",\"accountid\":\"" + ID + "\"}");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(function.getRequestData(request("accounts", "createEntry", null, null,
+                        Map.of("name", "Contoso"), null)))
+                .assertNext(result -> assertThat(result).containsEntry("accountid", ID))
+                .verifyComplete();
+        StepVerifier.create(function.getRequestData(request("accounts", "updateEntry", null, ID,
+                        Map.of("name", "Fabrikam"), null)))
+                .assertNext(result -> assertThat(result).isEmpty())
+                .verifyComplete();
+        StepVerifier.create(function.getRequestData(request("accounts", "deleteEntry", null, ID, null, null)))
+                .assertNext(result -> assertThat(result).isEmpty())
+                .verifyComplete();
+
+        RecordedRequest create = takeApiRequest();
+        assertThat(create.getMethod()).isEqualTo("POST");
+        assertThat(create.getPath()).isEqualTo("/api/data/v9.2/accounts");
+        assertThat(create.getHeader("Prefer")).isEqualTo("return=representation");
+        assertThat(create.getBody().readUtf8()).isEqualTo("{\"name\":\"Contoso\"}");
+        RecordedRequest update = takeApiRequest();
+        assertThat(update.getMethod()).isEqualTo("PATCH");
+        assertThat(update.getPath()).isEqualTo("/api/data/v9.2/accounts(" + ID + ")");
+        assertThat(update.getHeader("If-Match")).isEqualTo("*");
+        RecordedRequest delete = takeApiRequest();
+        assertThat(delete.getMethod()).isEqualTo("DELETE");
+        assertThat(delete.getPath()).isEqualTo("/api/data/v9.2/accounts(" + ID + ")");
+    }
+
+    @Test
+    void testInvalidEntryIdIsRejectedBeforeSending() {
+        enqueueToken("token");
+
+        StepVerifier.create(function().getRequestData(request("accounts", "deleteEntry", null, ID + ")/contacts(1",
+                        null, null)))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testWritesAreRoutedThroughTheWriteAggregator() throws Exception {
+        writeBatchingProperties.setEnabled(true);
+        enqueueToken("token");
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("Content-Type", "multipart/mixed; boundary=batchresponse_1")
+                .setBody("--batchresponse_1\r\n" +
+                        "Content-Type: application/http\r\n" +
+                        "Content-Transfer-Encoding: binary\r\n" +
+                        "Content-ID: 1\r\n" +
+                        "\r\n" +
+                        "HTTP/1.1 201 Created\r\n" +
+                        "Content-Type: application/json; odata.metadata=minimal\r\n" +
+                        "\r\n" +
+                        "{\"name\":\"Contoso\"}\r\n" +
+                        "--batchresponse_1--\r\n"));
+
+        StepVerifier.create(function().getRequestData(request("accounts", "createEntry", null, null,
+                        Map.of("name", "Contoso"), null)))
+                .assertNext(result -> assertThat(result).containsEntry("name", "Contoso"))
+                .verifyComplete();
+
+        RecordedRequest batch = takeApiRequest();
+        assertThat(batch.getPath()).isEqualTo("/api/data/v9.2/$batch");
+        assertThat(batch.getBody().readUtf8()).contains("POST " + mockWebServer.url("/api/data/v9.2/accounts") + " HTTP/1.1");
+    }
+
+    @Test
+    void testRequestIsCheckedAgainstTheDefinition() throws Exception {
+        metadataProperties.setEnabled(true);
+        DynamicsConnectorFunction function = function();
+        enqueueToken("token");
+        enqueueJson("{\"value\":[{\"LogicalName\":\"contact\",\"EntitySetName\":\"contacts\"}]}");
+        enqueueJson("{\"LogicalName\":\"contact\",\"EntitySetName\":\"contacts\",\"PrimaryIdAttribute\":\"contactid\","
+                + "\"Attributes\":[{\"LogicalName\":\"lastname\",\"AttributeType\":\"String\",\"IsValidForCreate\":true,"
+                + "\"IsValidForUpdate\":true,\"IsValidForRead\":true}],\"ManyToOneRelationships\":[]}");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(function.getRequestData(request("contacts", "createEntry", null, null,
+                        Map.of("name", "Doe"), null)))
+                .expectError(BadRequestException.class)
+                .verify();
+        StepVerifier.create(function.getRequestData(request("contacts", "createEntry", null, null,
+                        Map.of("lastname", "Doe"), null)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(takeApiRequest().getPath()).contains("EntityDefinitions?$select=LogicalName,EntitySetName");
+        assertThat(takeApiRequest().getPath()).contains("EntityDefinitions(LogicalName='contact')");
+        RecordedRequest create = takeApiRequest();
+        assertThat(create.getPath()).isEqualTo("/api/data/v9.2/contacts");
+        assertThat(create.getBody().readUtf8()).isEqualTo("{\"lastname\":\"Doe\"}");
+    }
+
+    @Test
+    void testRejectedTokenIsReplacedOnce() throws Exception {
+        enqueueToken("revoked");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(401));
+        enqueueToken("renewed");
+        enqueueJson("{\"name\":\"Contoso\"}");
+
+        StepVerifier.create(function().getRequestData(request("accounts", "getEntry", List.of("name"), ID, null, null)))
+                .assertNext(result -> assertThat(result).containsEntry("name", "Contoso"))
+                .verifyComplete();
+
+        assertThat(takeApiRequest().getHeader(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer revoked");
+        assertThat(takeApiRequest().getHeader(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer renewed");
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,53 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import io.camunda.connector.generator.java.annotation.ElementTemplate;
+import io.camunda.connector.generator.java.annotation.TemplateProperty;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The checked-in element template has to be regenerated whenever template properties change
+ */
+class ElementTemplateTests {
+
+    private static final Path TEMPLATE = Path.of("element-templates", "ilume-dynamics-connector.json");
+
+    @Test
+    void testTemplateOffersEveryOperation() throws IOException, NoSuchFieldException {
+        JsonNode template = new ObjectMapper().readTree(TEMPLATE.toFile());
+        TemplateProperty operation = DynamicsConnectorRequest.class.getDeclaredField("operation")
+                .getAnnotation(TemplateProperty.class);
+
+        JsonNode choices = property(template, "operation").get("choices");
+        assertThat(choices.findValuesAsText("value"))
+                .containsExactlyElementsOf(Arrays.stream(operation.choices()).map(TemplateProperty.DropdownPropertyChoice::value).toList());
+    }
+
+    @Test
+    void testTemplateHasEveryPropertyGroup() throws IOException {
+        JsonNode template = new ObjectMapper().readTree(TEMPLATE.toFile());
+        ElementTemplate annotation = DynamicsConnectorFunction.class.getAnnotation(ElementTemplate.class);
+
+        assertThat(template.get("version").asInt()).isEqualTo(annotation.version());
+        assertThat(template.get("groups").findValuesAsText("id"))
+                .containsAll(Arrays.stream(annotation.propertyGroups()).map(ElementTemplate.PropertyGroup::id).toList());
+    }
+
+    private static JsonNode property(JsonNode template, String id) {
+        for (JsonNode property : template.get("properties")) {
+            if (id.equals(property.path("id").asText())) {
+                return property;
+            }
+        }
+        throw new AssertionError("No property " + id + " in " + TEMPLATE);
+    }
+}
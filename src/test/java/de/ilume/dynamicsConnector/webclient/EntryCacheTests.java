@@ -0,0 +1,96 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.EntryCacheProperties;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.EntryCache;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntryCacheTests {
+
+    private static final String ID = "f9beedd9-d85a-ef11-bfe2-002248d8793d";
+    private static final String ACCOUNT = "{\"@odata.etag\":\"W/\\\"7651045\\\"\",\"name\":\"MS Account Info\",\"accountid\":\"" + ID + "\"}";
+
+    private MockWebServer mockWebServer;
+    private EntryCache entryCache;
+    private EntitySetUrl accounts;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        EntryCacheProperties properties = new EntryCacheProperties();
+        properties.setEnabled(true);
+        entryCache = new EntryCache(properties, new ExecuteRequestService(WebClient.create()));
+        accounts = new RequestUrls(new DataverseProperties()).entitySet(mockWebServer.url("/").toString(), "accounts");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testUnchangedEntryIsRevalidated() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(ACCOUNT));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+
+        StepVerifier.create(entryCache.getEntry("client", accounts, ID, List.of("name", "accountid"), "token"))
+                .assertNext(entry -> assertThat(entry).containsEntry("name", "MS Account Info"))
+                .verifyComplete();
+
+        // the same fields in a different order share the cached entry
+        StepVerifier.create(entryCache.getEntry("client", accounts, ID, List.of("accountid", "name"), "token"))
+                .assertNext(entry -> assertThat(entry).containsEntry("name", "MS Account Info"))
+                .verifyComplete();
+
+        assertThat(mockWebServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH)).isNull();
+        RecordedRequest revalidation = mockWebServer.takeRequest();
+        assertThat(revalidation.getHeader(HttpHeaders.IF_NONE_MATCH)).isEqualTo("W/\"7651045\"");
+        assertThat(revalidation.getPath()).isEqualTo("/api/data/v9.2/accounts(" + ID + ")?$select=accountid,name");
+    }
+
+    @Test
+    void testWriteInvalidatesEntry() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(ACCOUNT));
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(ACCOUNT.replace("MS Account Info", "Updated Account")));
+
+        StepVerifier.create(entryCache.getEntry("client", accounts, ID, List.of(), "token"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(entryCache.size()).isEqualTo(1);
+
+        entryCache.invalidate(accounts, ID);
+        assertThat(entryCache.size()).isZero();
+
+        StepVerifier.create(entryCache.getEntry("client", accounts, ID, List.of(), "token"))
+                .assertNext(entry -> assertThat(entry).containsEntry("name", "Updated Account"))
+                .verifyComplete();
+
+        mockWebServer.takeRequest();
+        assertThat(mockWebServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH)).isNull();
+    }
+}
@@ -1,6 +1,7 @@
 package de.ilume.dynamicsConnector.webclient;
 
 import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.exception.UnauthorizedException;
 import de.ilume.dynamicsConnector.service.ExecuteRequestService;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -8,10 +9,13 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.web.reactive.function.client.WebClient;
+import okhttp3.mockwebserver.RecordedRequest;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -99,4 +103,118 @@ public class ExecuteRequestTests {
                 })
                 .verify();
     }
+
+    @Test
+    void testUnauthorizedWithoutBody() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(401));
+
+        StepVerifier.create(executeRequestService.getJson("/api/data/v9.2/accounts", "expired-token"))
+                .expectError(UnauthorizedException.class)
+                .verify();
+    }
+
+    @Test
+    void testWriteRequestsReturnTheBodyAsString() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"accountid\":\"f9beedd9-d85a-ef11-bfe2-002248d8793d\"}")
+                .addHeader("Content-Type", "application/json"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(204));
+
+        String requestUrl = mockWebServer.url("/api/data/v9.2/accounts(f9beedd9-d85a-ef11-bfe2-002248d8793d)/name").toString();
+
+        StepVerifier.create(executeRequestService.putRequest(requestUrl, "fake-token", Map.of(), Map.of("value", "Contoso")))
+                .expectNext("{\"accountid\":\"f9beedd9-d85a-ef11-bfe2-002248d8793d\"}")
+                .verifyComplete();
+        StepVerifier.create(executeRequestService.deleteRequest(requestUrl, "fake-token", Map.of(), Map.of()))
+                .expectNext("Request Status Code: 204 No Content")
+                .verifyComplete();
+
+        assertThat(mockWebServer.takeRequest().getMethod()).isEqualTo("PUT");
+        assertThat(mockWebServer.takeRequest().getMethod()).isEqualTo("DELETE");
+    }
+
+    @Test
+    void testGetPagesFollowsNextLink() throws Exception {
+        String nextLink = mockWebServer.url("/api/data/v9.2/accounts?$skiptoken=%3Ccookie%20pagenumber=%222%22%20/%3E").toString();
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"value\":[{\"name\":\"First\"},{\"name\":\"Second\"}],\"@odata.nextLink\":\"" + nextLink + "\"}")
+                .addHeader("Content-Type", "application/json"));
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"value\":[{\"name\":\"Third\"}]}")
+                .addHeader("Content-Type", "application/json"));
+
+        String requestUrl = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(executeRequestService.getPages(requestUrl, "fake-token", 2)
+                        .map(page -> page.records().size()))
+                .expectNext(2, 1)
+                .verifyComplete();
+
+        RecordedRequest firstPage = mockWebServer.takeRequest();
+        assertThat(firstPage.getHeader("Prefer")).isEqualTo("odata.maxpagesize=2");
+
+        RecordedRequest secondPage = mockWebServer.takeRequest();
+        assertThat(secondPage.getPath()).isEqualTo("/api/data/v9.2/accounts?$skiptoken=%3Ccookie%20pagenumber=%222%22%20/%3E");
+        assertThat(secondPage.getHeader("Prefer")).isEqualTo("odata.maxpagesize=2");
+    }
+
+    @Test
+    void testGetPagesStopsWhenCancelled() throws Exception {
+        String nextLink = mockWebServer.url("/api/data/v9.2/accounts?$skiptoken=2").toString();
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"value\":[{\"name\":\"First\"}],\"@odata.nextLink\":\"" + nextLink + "\"}")
+                .addHeader("Content-Type", "application/json"));
+
+        String requestUrl = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(executeRequestService.getPages(requestUrl, "fake-token", null).take(1))
+                .assertNext(page -> assertThat(page.records()).isEqualTo(List.of(Map.of("name", "First"))))
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetJson() {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"@odata.context\":\"https://camunda.crm16.dynamics.com/api/data/v9.2/$metadata#accounts(name)/$entity\"," +
+                        "\"name\":\"MS Account Info\",\"revenue\":5000000.0}")
+                .addHeader("Content-Type", "application/json"));
+
+        StepVerifier.create(executeRequestService.getJson("/api/data/v9.2/accounts(f9beedd9-d85a-ef11-bfe2-002248d8793d)", "fake-token"))
+                .assertNext(result -> {
+                    assertThat(result.get("name")).isEqualTo("MS Account Info");
+                    assertThat(result.get("revenue")).isEqualTo(5000000.0);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetValuePageSkipsAnnotations() {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"@odata.context\":\"https://camunda.crm16.dynamics.com/api/data/v9.2/$metadata#accounts(name)\"," +
+                        "\"@Microsoft.Dynamics.CRM.totalrecordcount\":-1," +
+                        "\"value\":[{\"name\":\"MS Account Info\"}]}")
+                .addHeader("Content-Type", "application/json"));
+
+        String requestUrl = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(executeRequestService.getValuePage(requestUrl, "fake-token", null))
+                .assertNext(page -> {
+                    assertThat(page.records()).isEqualTo(List.of(Map.of("name", "MS Account Info")));
+                    assertThat(page.nextLink()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testPostJsonWithoutContent() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(executeRequestService.postJson("/api/data/v9.2/accounts", "fake-token",
+                        Map.of("Content-Type", "application/json"), Map.of("name", "New Account")))
+                .verifyComplete();
+    }
 }
\ No newline at end of file
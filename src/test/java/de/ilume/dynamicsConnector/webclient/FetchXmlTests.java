@@ -0,0 +1,152 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.FetchXml;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.FetchXmlService;
+import io.camunda.connector.api.annotation.OutboundConnector;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.lang.reflect.RecordComponent;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FetchXmlTests {
+
+    private static final String QUERY = "<fetch><entity name=\"account\"><attribute name=\"name\"/>"
+            + "<link-entity name=\"contact\" from=\"parentcustomerid\" to=\"accountid\" link-type=\"outer\">"
+            + "<attribute name=\"fullname\"/></link-entity></entity></fetch>";
+    private static final String COOKIE = "<cookie page=\"1\"><accountid last=\"{A1}\" first=\"{A0}\" /></cookie>";
+
+    private MockWebServer mockWebServer;
+    private FetchXmlService fetchXmlService;
+    private EntitySetUrl accounts;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        fetchXmlService = new FetchXmlService(new ExecuteRequestService(WebClient.create()));
+        accounts = new RequestUrls(new DataverseProperties()).entitySet(mockWebServer.url("/").toString(), "accounts");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private void enqueue(String body) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body));
+    }
+
+    private static String pagingCookieAnnotation(String cookie) {
+        String encoded = URLEncoder.encode(URLEncoder.encode(cookie, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        return "<cookie pagenumber=\\\"2\\\" pagingcookie=\\\"" + encoded + "\\\" istracking=\\\"False\\\" />";
+    }
+
+    private static String fetchXml(RecordedRequest request) {
+        return request.getRequestUrl().queryParameter("fetchXml");
+    }
+
+    @Test
+    void testPagesAreFollowedThroughPagingCookie() throws Exception {
+        enqueue("{\"value\":[{\"name\":\"A\"}],"
+                + "\"@Microsoft.Dynamics.CRM.fetchxmlpagingcookie\":\"" + pagingCookieAnnotation(COOKIE) + "\","
+                + "\"@Microsoft.Dynamics.CRM.morerecords\":true}");
+        enqueue("{\"value\":[{\"name\":\"B\"}],\"@Microsoft.Dynamics.CRM.morerecords\":false}");
+
+        StepVerifier.create(fetchXmlService.pages(accounts, QUERY, 1, "token").concatMapIterable(ValuePage::records))
+                .expectNext(Map.of("name", "A"), Map.of("name", "B"))
+                .verifyComplete();
+
+        RecordedRequest first = mockWebServer.takeRequest();
+        assertThat(first.getRequestUrl().encodedPath()).isEqualTo("/api/data/v9.2/accounts");
+        assertThat(first.getHeader("Prefer")).contains("Microsoft.Dynamics.CRM.fetchxmlpagingcookie");
+        assertThat(fetchXml(first)).contains("page=\"1\"").contains("count=\"1\"").doesNotContain("paging-cookie")
+                .contains("link-type=\"outer\"");
+
+        RecordedRequest second = mockWebServer.takeRequest();
+        assertThat(fetchXml(second)).contains("page=\"2\"")
+                .contains("paging-cookie=\"&lt;cookie page=&quot;1&quot;");
+    }
+
+    @Test
+    void testStoppingEarlyDoesNotReadFurtherPages() {
+        enqueue("{\"value\":[{\"name\":\"A\"}],"
+                + "\"@Microsoft.Dynamics.CRM.fetchxmlpagingcookie\":\"" + pagingCookieAnnotation(COOKIE) + "\","
+                + "\"@Microsoft.Dynamics.CRM.morerecords\":true}");
+
+        StepVerifier.create(fetchXmlService.pages(accounts, QUERY, 1, "token").take(1))
+                .assertNext(page -> assertThat(page.nextLink()).contains("fetchXml="))
+                .verifyComplete();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testQueryWithTopIsNotPaged() throws Exception {
+        enqueue("{\"value\":[{\"name\":\"A\"}],\"@Microsoft.Dynamics.CRM.morerecords\":true}");
+
+        StepVerifier.create(fetchXmlService.pages(accounts, "<fetch top=\"1\"><entity name=\"account\"/></fetch>", 10, "token"))
+                .assertNext(page -> assertThat(page.nextLink()).isNull())
+                .verifyComplete();
+        assertThat(fetchXml(mockWebServer.takeRequest())).doesNotContain("page=").doesNotContain("count=");
+    }
+
+    @Test
+    void testInvalidQueryIsRejected() {
+        StepVerifier.create(fetchXmlService.pages(accounts, "<fetch><entity name=\"account\">", null, "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+        StepVerifier.create(fetchXmlService.pages(accounts, "<entity name=\"account\"/>", null, "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+
+    @Test
+    void testDocumentTypeDeclarationIsRejected() {
+        String query = "<?xml version=\"1.0\"?><!DOCTYPE fetch [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>"
+                + "<fetch><entity name=\"&secret;\"/></fetch>";
+        assertThatThrownBy(() -> FetchXml.parse(query)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testPagingCookieIsDecoded() {
+        assertThat(FetchXml.pagingCookie(pagingCookieAnnotation(COOKIE).replace("\\\"", "\""))).isEqualTo(COOKIE);
+        assertThat(FetchXml.pagingCookie(null)).isNull();
+    }
+
+    @Test
+    void testEveryRequestFieldIsFetchedFromTheJob() {
+        // the runtime only fetches the listed variables, a missing one is always bound as null
+        OutboundConnector connector = DynamicsConnectorFunction.class.getAnnotation(OutboundConnector.class);
+        assertThat(connector.inputVariables()).containsExactlyInAnyOrder(
+                Arrays.stream(DynamicsConnectorRequest.class.getRecordComponents())
+                        .map(RecordComponent::getName)
+                        .toArray(String[]::new));
+    }
+}
@@ -0,0 +1,205 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.FileProperties;
+import de.ilume.dynamicsConnector.dto.FileTransfer;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.FileService;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileServiceTests {
+
+    private static final String ID = "f9beedd9-d85a-ef11-bfe2-002248d8793d";
+    private static final byte[] CONTENT = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockWebServer mockWebServer;
+    private FileService fileService;
+    private EntitySetUrl accounts;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        FileProperties properties = new FileProperties();
+        properties.setDirectory(directory.toString());
+        properties.setBlockSize(DataSize.ofBytes(10));
+        fileService = new FileService(new ExecuteRequestService(WebClient.create()), properties);
+        accounts = new RequestUrls(new DataverseProperties()).entitySet(mockWebServer.url("/").toString(), "accounts");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUploadSendsFileInBlocks() throws Exception {
+        Files.write(directory.resolve("document.txt"), CONTENT);
+        enqueueJson("{\"FileContinuationToken\":\"continuation\"}");
+        for (int i = 0; i < 5; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+        }
+        enqueueJson("{\"FileId\":\"file-1\",\"FileSizeInBytes\":" + CONTENT.length + "}");
+
+        StepVerifier.create(fileService.upload(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "document.txt", null, "text/plain", null, null, null), "token"))
+                .assertNext(result -> assertThat(result)
+                        .containsEntry("fileId", "file-1")
+                        .containsEntry("fileName", "document.txt")
+                        .containsEntry("blocks", 5))
+                .verifyComplete();
+
+        RecordedRequest initialize = mockWebServer.takeRequest();
+        assertThat(initialize.getPath()).isEqualTo("/api/data/v9.2/InitializeFileBlocksUpload");
+        Map<String, Object> initializeBody = objectMapper.readValue(initialize.getBody().readUtf8(), Map.class);
+        assertThat(initializeBody).containsEntry("FileAttributeName", "sample_filecolumn");
+        assertThat((Map<String, Object>) initializeBody.get("Target"))
+                .containsEntry("@odata.type", "Microsoft.Dynamics.CRM.account")
+                .containsEntry("accountid", ID);
+
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            RecordedRequest block = mockWebServer.takeRequest();
+            assertThat(block.getPath()).isEqualTo("/api/data/v9.2/UploadBlock");
+            Map<String, Object> body = objectMapper.readValue(block.getBody().readUtf8(), Map.class);
+            assertThat(body).containsEntry("FileContinuationToken", "continuation");
+            uploaded.write(Base64.getDecoder().decode((String) body.get("BlockData")));
+        }
+        assertThat(uploaded.toByteArray()).isEqualTo(CONTENT);
+
+        RecordedRequest commit = mockWebServer.takeRequest();
+        assertThat(commit.getPath()).isEqualTo("/api/data/v9.2/CommitFileBlocksUpload");
+        assertThat(objectMapper.readValue(commit.getBody().readUtf8(), Map.class))
+                .containsEntry("MimeType", "text/plain")
+                .containsKey("BlockList");
+    }
+
+    @Test
+    void testDownloadWritesRangesToFile() throws Exception {
+        mockWebServer.setDispatcher(new RangeDispatcher());
+
+        StepVerifier.create(fileService.download(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "downloads/document.txt", null, null, null, null, null), "token"))
+                .assertNext(result -> assertThat(result)
+                        .containsEntry("fileName", "document.txt")
+                        .containsEntry("size", (long) CONTENT.length)
+                        .containsEntry("fileSize", (long) CONTENT.length))
+                .verifyComplete();
+
+        assertThat(Files.readAllBytes(directory.resolve("downloads/document.txt"))).isEqualTo(CONTENT);
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(5);
+        assertThat(mockWebServer.takeRequest().getPath())
+                .isEqualTo("/api/data/v9.2/accounts(" + ID + ")/sample_filecolumn/$value");
+    }
+
+    @Test
+    void testDownloadOfRange() throws Exception {
+        mockWebServer.setDispatcher(new RangeDispatcher());
+
+        StepVerifier.create(fileService.download(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "part.txt", null, null, null, 4L, 18L), "token"))
+                .assertNext(result -> assertThat(result).containsEntry("size", 15L))
+                .verifyComplete();
+
+        assertThat(Files.readString(directory.resolve("part.txt"))).isEqualTo("quick brown fox");
+    }
+
+    @Test
+    void testPathOutsideOfDirectoryIsRejected() {
+        StepVerifier.create(fileService.download(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "../outside.txt", null, null, null, null, null), "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+
+    @Test
+    void testLinkOutOfDirectoryIsRejected(@TempDir Path outside) throws IOException {
+        Files.write(outside.resolve("secret.txt"), CONTENT);
+        Files.createSymbolicLink(directory.resolve("linked"), outside);
+        Files.createSymbolicLink(directory.resolve("secret.txt"), outside.resolve("secret.txt"));
+
+        StepVerifier.create(fileService.upload(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "secret.txt", null, null, null, null, null), "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+        StepVerifier.create(fileService.download(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "linked/new/document.txt", null, null, null, null, null), "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(mockWebServer.getRequestCount()).isZero();
+        assertThat(outside.resolve("new")).doesNotExist();
+    }
+
+    @Test
+    void testDanglingLinkIsRejected(@TempDir Path outside) throws IOException {
+        Files.createSymbolicLink(directory.resolve("document.txt"), outside.resolve("created.txt"));
+
+        StepVerifier.create(fileService.download(accounts, ID,
+                        new FileTransfer("sample_filecolumn", "document.txt", null, null, null, null, null), "token"))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(outside.resolve("created.txt")).doesNotExist();
+    }
+
+    private void enqueueJson(String body) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body));
+    }
+
+    /**
+     * Answers "Range" requests for the value of the file column like the Web API
+     */
+    private static final class RangeDispatcher extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String[] range = request.getHeader(HttpHeaders.RANGE).substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(range[0]);
+            int end = Math.min(Integer.parseInt(range[1]), CONTENT.length - 1);
+            return new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                    .setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + CONTENT.length)
+                    .setHeader("x-ms-file-size", CONTENT.length)
+                    .setHeader("x-ms-file-name", "document.txt")
+                    .setBody(new Buffer().write(CONTENT, start, end - start + 1));
+        }
+    }
+}
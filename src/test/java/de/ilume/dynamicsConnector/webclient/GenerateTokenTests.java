@@ -1,6 +1,8 @@
 package de.ilume.dynamicsConnector.webclient;
 
+import de.ilume.dynamicsConnector.TokenCacheProperties;
 import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.TokenCache;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
@@ -9,7 +11,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import org.springframework.http.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import okhttp3.mockwebserver.RecordedRequest;
@@ -17,6 +22,13 @@ import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 class GenerateTokenTests {
 
@@ -24,10 +36,13 @@ class GenerateTokenTests {
 
     private MockWebServer mockWebServer;
 
+    private MutableClock clock;
+
     @BeforeEach
     void setup() throws IOException {
         // Start the MockWebServer
-        generateTokenService = new GenerateTokenService();
+        clock = new MutableClock(Instant.parse("2024-08-01T10:00:00Z"));
+        generateTokenService = new GenerateTokenService(WebClient.create(), new TokenCache(new TokenCacheProperties(), clock));
         mockWebServer = new MockWebServer();
         mockWebServer.start();
     }
@@ -76,4 +91,163 @@ class GenerateTokenTests {
                 "client_secret=clientSecret&" +
                 "scope=https%3A%2F%2Fapi.example.com%2F.default", recordedRequest.getBody().readUtf8());
     }
+
+    @Test
+    void testGetTokenReusesCachedToken() throws Exception {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        enqueueToken("first-token", 3600);
+        enqueueToken("second-token", 3600);
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("first-token")
+                .verifyComplete();
+
+        clock.advance(Duration.ofMinutes(30));
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("first-token")
+                .verifyComplete();
+
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testEvictedTokenIsReplaced() {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        enqueueToken("rejected-token", 3600);
+        enqueueToken("new-token", 3600);
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("rejected-token")
+                .verifyComplete();
+
+        generateTokenService.evictToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl);
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("new-token")
+                .verifyComplete();
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testGetTokenRefreshesBeforeExpiry() throws Exception {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        enqueueToken("first-token", 3600);
+        enqueueToken("second-token", 3600);
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("first-token")
+                .verifyComplete();
+
+        // inside the refresh window the old token is still handed out while a new one is requested
+        clock.advance(Duration.ofMinutes(57));
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("first-token")
+                .verifyComplete();
+
+        assertNotNull(mockWebServer.takeRequest(5, TimeUnit.SECONDS));
+        assertNotNull(mockWebServer.takeRequest(5, TimeUnit.SECONDS));
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl)
+                        .repeat()
+                        .filter("second-token"::equals)
+                        .next()
+                        .timeout(Duration.ofSeconds(5)))
+                .expectNext("second-token")
+                .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testGetTokenAfterExpiry() throws Exception {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        enqueueToken("first-token", 3600);
+        enqueueToken("second-token", 3600);
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("first-token")
+                .verifyComplete();
+
+        clock.advance(Duration.ofHours(2));
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("second-token")
+                .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testGetTokenCollapsesConcurrentRequests() throws Exception {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"shared-token\",\"expires_in\":3600}")
+                .setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+        List<String> tokens = Flux.range(0, 20)
+                .flatMap(i -> generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl)
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(tokens);
+        assertEquals(20, tokens.size());
+        tokens.forEach(token -> assertEquals("shared-token", token));
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testGetTokenSeparatesClients() throws Exception {
+        String accessTokenUrl = mockWebServer.url("/token").toString();
+        enqueueToken("first-token", 3600);
+        enqueueToken("second-token", 3600);
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "clientSecret", "default", accessTokenUrl))
+                .expectNext("first-token")
+                .verifyComplete();
+
+        StepVerifier.create(generateTokenService.getToken("https://api.example.com/.", "clientId", "rotatedSecret", "default", accessTokenUrl))
+                .expectNext("second-token")
+                .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    private void enqueueToken(String token, long expiresIn) {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"" + token + "\",\"expires_in\":" + expiresIn + "}"));
+    }
+
+    private static class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
 }
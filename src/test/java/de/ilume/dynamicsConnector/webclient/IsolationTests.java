@@ -0,0 +1,168 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.IsolationProperties;
+import de.ilume.dynamicsConnector.exception.InternalServerErrorException;
+import de.ilume.dynamicsConnector.exception.ServiceUnavailableException;
+import de.ilume.dynamicsConnector.isolation.CircuitBreaker;
+import de.ilume.dynamicsConnector.isolation.IsolationFilter;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsolationTests {
+
+    private MockWebServer mockWebServer;
+    private IsolationProperties properties;
+    private SimpleMeterRegistry registry;
+    private IsolationFilter isolationFilter;
+    private ExecuteRequestService executeRequestService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        properties = new IsolationProperties();
+        properties.setSlidingWindowSize(2);
+        properties.setMinimumCalls(2);
+        properties.setOpenDuration(Duration.ofMillis(200));
+        properties.setHalfOpenCalls(1);
+        registry = new SimpleMeterRegistry();
+        isolationFilter = new IsolationFilter(properties, registry);
+        executeRequestService = new ExecuteRequestService(WebClient.builder()
+                .filter(isolationFilter)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testCircuitOpensAfterFailuresAndClosesAfterProbe() throws Exception {
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+        String environment = IsolationFilter.environment(URI.create(url));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500).setBody("error"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500).setBody("error"));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(executeRequestService.getJson(url, "token"))
+                    .expectError(InternalServerErrorException.class)
+                    .verify();
+        }
+        assertThat(isolationFilter.state(environment)).isEqualTo(CircuitBreaker.State.OPEN);
+
+        StepVerifier.create(executeRequestService.getJson(url, "token"))
+                .expectError(ServiceUnavailableException.class)
+                .verify();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        assertThat(registry.get("dynamics.connector.isolation.rejected").tag("reason", "circuit_open").counter().count()).isEqualTo(1);
+        assertThat(registry.get("dynamics.connector.circuit.state").tag("environment", environment).gauge().value()).isEqualTo(2);
+
+        Thread.sleep(250);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[]}"));
+        StepVerifier.create(executeRequestService.getJson(url, "token"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(isolationFilter.state(environment)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void testBulkheadRejectsRequestsBeyondTheLimit() {
+        properties.setMaxConcurrentCalls(1);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setHeadersDelay(300, TimeUnit.MILLISECONDS)
+                .setBody("{\"value\":[]}"));
+
+        StepVerifier.create(Flux.merge(
+                                executeRequestService.getJson(mockWebServer.url("/api/data/v9.2/accounts").toString(), "token")
+                                        .map(result -> "sent"),
+                                executeRequestService.getJson(mockWebServer.url("/api/data/v9.2/contacts").toString(), "token")
+                                        .map(result -> "sent"))
+                        .onErrorResume(ServiceUnavailableException.class, e -> Mono.just("rejected")))
+                .expectNext("rejected")
+                .verifyComplete();
+
+        assertThat(registry.get("dynamics.connector.isolation.rejected").tag("reason", "bulkhead_full").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testBulkheadSlotIsHeldUntilTheBodyIsRead() {
+        properties.setMaxConcurrentCalls(1);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[" + "{\"name\":\"Contoso\"},".repeat(200) + "{\"name\":\"Fabrikam\"}]}")
+                .throttleBody(1024, 100, TimeUnit.MILLISECONDS));
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[]}"));
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        // the headers of the first response arrive at once, its body takes several hundred milliseconds
+        StepVerifier.create(Flux.merge(
+                                executeRequestService.getJson(url, "token").map(result -> "sent"),
+                                Mono.delay(Duration.ofMillis(100)).then(executeRequestService.getJson(url, "token"))
+                                        .map(result -> "sent"))
+                        .onErrorResume(ServiceUnavailableException.class, e -> Mono.just("rejected")))
+                .expectNext("rejected")
+                .verifyComplete();
+
+        // the slot of the cancelled body has been released
+        StepVerifier.create(executeRequestService.getJson(url, "token"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void testTokenEndpointIsIsolatedPerTenant() {
+        assertThat(IsolationFilter.environment(URI.create("https://login.microsoftonline.com/tenant-a/oauth2/v2.0/token")))
+                .isEqualTo("login.microsoftonline.com/tenant-a");
+        assertThat(IsolationFilter.environment(URI.create("https://org.crm4.dynamics.com/api/data/v9.2/accounts")))
+                .isEqualTo("org.crm4.dynamics.com");
+    }
+
+    @Test
+    void testFailedProbeOpensCircuitAgain() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(50, 4, 4, 1000, 2, now::get);
+        for (int i = 0; i < 4; i++) {
+            assertThat(circuitBreaker.tryAcquire()).isTrue();
+            if (i % 2 == 0) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        now.set(1000);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
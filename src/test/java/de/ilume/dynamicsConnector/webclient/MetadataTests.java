@@ -0,0 +1,223 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.MetadataProperties;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.metadata.EntityMetadata;
+import de.ilume.dynamicsConnector.metadata.RequestSchema;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.MetadataCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetadataTests {
+
+    private static final String ID = "f9beedd9-d85a-ef11-bfe2-002248d8793d";
+
+    private static final String ENTITY_SETS = "{\"value\":["
+            + "{\"LogicalName\":\"contact\",\"EntitySetName\":\"contacts\"},"
+            + "{\"LogicalName\":\"account\",\"EntitySetName\":\"accounts\"}]}";
+    private static final String CONTACT = "{\"LogicalName\":\"contact\",\"EntitySetName\":\"contacts\",\"PrimaryIdAttribute\":\"contactid\","
+            + "\"Attributes\":["
+            + attribute("contactid", "Uniqueidentifier", true, false)
+            + "," + attribute("fullname", "String", false, false)
+            + "," + attribute("lastname", "String", true, true)
+            + "," + attribute("birthdate", "DateTime", true, true)
+            + "," + attribute("annualincome", "Money", true, true)
+            + "," + attribute("gendercode", "Picklist", true, true)
+            + "," + attribute("donotemail", "Boolean", true, true)
+            + "," + attribute("parentcustomerid", "Customer", true, true)
+            + "],\"ManyToOneRelationships\":["
+            + "{\"ReferencingAttribute\":\"parentcustomerid\",\"ReferencingEntityNavigationPropertyName\":\"parentcustomerid_account\",\"ReferencedEntity\":\"account\"},"
+            + "{\"ReferencingAttribute\":\"parentcustomerid\",\"ReferencingEntityNavigationPropertyName\":\"parentcustomerid_contact\",\"ReferencedEntity\":\"contact\"}"
+            + "]}";
+
+    private MockWebServer mockWebServer;
+    private MetadataProperties properties;
+    private MutableClock clock;
+    private SimpleMeterRegistry registry;
+    private MetadataCache metadataCache;
+    private RequestUrls requestUrls;
+
+    private static String attribute(String name, String type, boolean create, boolean update) {
+        return "{\"LogicalName\":\"" + name + "\",\"AttributeType\":\"" + type + "\",\"IsValidForCreate\":" + create
+                + ",\"IsValidForUpdate\":" + update + ",\"IsValidForRead\":true}";
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        properties = new MetadataProperties();
+        properties.setEnabled(true);
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        registry = new SimpleMeterRegistry();
+        metadataCache = new MetadataCache(new ExecuteRequestService(WebClient.create()), properties, clock, registry);
+        requestUrls = new RequestUrls(new DataverseProperties());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private void enqueue(String body) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body));
+    }
+
+    private EntitySetUrl entitySet(String name) {
+        return requestUrls.entitySet(mockWebServer.url("/").toString(), name);
+    }
+
+    private EntityMetadata contact() {
+        enqueue(ENTITY_SETS);
+        enqueue(CONTACT);
+        return metadataCache.entity(entitySet("contacts"), "token").block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testDefinitionIsLoadedOnceAndRefreshedInBackground() throws Exception {
+        EntityMetadata contact = contact();
+        assertThat(contact.logicalName()).isEqualTo("contact");
+        assertThat(contact.lookups().get("parentcustomerid")).hasSize(2);
+        assertThat(mockWebServer.takeRequest(1, TimeUnit.SECONDS).getPath()).contains("EntityDefinitions?$select=LogicalName,EntitySetName");
+        RecordedRequest definition = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(definition.getPath()).contains("EntityDefinitions(LogicalName='contact')").contains("$expand=Attributes");
+
+        StepVerifier.create(metadataCache.entity(entitySet("contacts"), "token"))
+                .expectNext(contact)
+                .verifyComplete();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        assertThat(registry.get("dynamics.connector.metadata.lookups").tag("result", "hit").counter().count()).isEqualTo(2);
+
+        clock.advance(properties.getRefreshInterval());
+        enqueue(ENTITY_SETS);
+        enqueue(CONTACT);
+        StepVerifier.create(metadataCache.entity(entitySet("contacts"), "token"))
+                .expectNext(contact)
+                .verifyComplete();
+        assertThat(mockWebServer.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void testUnknownEntitySetFailsFast() {
+        enqueue(ENTITY_SETS);
+
+        StepVerifier.create(metadataCache.entity(entitySet("incidents"), "token"))
+                .expectErrorSatisfies(throwable -> assertThat(throwable).isInstanceOf(BadRequestException.class)
+                        .hasMessageContaining("incidents"))
+                .verify();
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testFieldsAreChecked() {
+        EntityMetadata contact = contact();
+
+        RequestSchema.checkFields(contact, List.of("fullname", "_parentcustomerid_value"));
+        assertThatThrownBy(() -> RequestSchema.checkFields(contact, List.of("fullname", "name", "parentcustomerid")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("name is not a column of contact")
+                .hasMessageContaining("select it as _parentcustomerid_value");
+    }
+
+    @Test
+    void testRequestBodyIsConvertedToColumnTypes() {
+        EntityMetadata contact = contact();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("lastname", "Smith");
+        body.put("birthdate", "1990-05-01");
+        body.put("annualincome", "1234.50");
+        body.put("gendercode", 2.0);
+        body.put("donotemail", "TRUE");
+        body.put("parentcustomerid", "accounts(" + ID + ")");
+
+        Map<String, Object> serialized = RequestSchema.serialize(contact, body, true);
+
+        assertThat(serialized)
+                .containsEntry("lastname", "Smith")
+                .containsEntry("birthdate", "1990-05-01")
+                .containsEntry("annualincome", new BigDecimal("1234.50"))
+                .containsEntry("gendercode", 2)
+                .containsEntry("donotemail", true)
+                .containsEntry("parentcustomerid_account@odata.bind", "/accounts(" + ID + ")")
+                .doesNotContainKey("parentcustomerid");
+        assertThat(RequestSchema.serialize(contact, Map.of("birthdate", "2024-03-01T10:15:00+02:00"), false))
+                .containsEntry("birthdate", "2024-03-01T08:15:00Z");
+    }
+
+    @Test
+    void testInvalidRequestBodyIsRejected() {
+        EntityMetadata contact = contact();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("fullname", "John Smith");
+        body.put("nickname", "Johnny");
+        body.put("annualincome", "a lot");
+        body.put("gendercode", 1.5);
+        body.put("parentcustomerid", ID);
+
+        assertThatThrownBy(() -> RequestSchema.serialize(contact, body, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("fullname cannot be updated")
+                .hasMessageContaining("nickname is not a column of contact")
+                .hasMessageContaining("annualincome: expected a number")
+                .hasMessageContaining("gendercode")
+                .hasMessageContaining("parentcustomerid: references one of [accounts, contacts]");
+    }
+
+    private static class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
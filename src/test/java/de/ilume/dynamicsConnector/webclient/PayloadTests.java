@@ -0,0 +1,135 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.ClientMetrics;
+import de.ilume.dynamicsConnector.PayloadProperties;
+import de.ilume.dynamicsConnector.payload.PayloadFilter;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadTests {
+
+    private MockWebServer mockWebServer;
+    private PayloadProperties properties;
+    private SimpleMeterRegistry registry;
+    private ExecuteRequestService executeRequestService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        properties = new PayloadProperties();
+        registry = new SimpleMeterRegistry();
+        executeRequestService = new ExecuteRequestService(WebClient.builder()
+                .filter(new PayloadFilter(properties, registry))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private MockResponse json(String body) {
+        return new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE).setBody(body);
+    }
+
+    @Test
+    void testProfileOfOperationIsNegotiated() throws Exception {
+        properties.getOperations().put("getAll", "lean");
+        properties.getOperations().put("get", "formatted");
+        mockWebServer.enqueue(json("{\"value\":[]}"));
+        mockWebServer.enqueue(json("{\"name\":\"Contoso\"}"));
+        mockWebServer.enqueue(json("{\"name\":\"Contoso\"}"));
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(executeRequestService.getJson(url, "token").contextWrite(ClientMetrics.operation("getAll")))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(executeRequestService.getJson(url + "(1)", "token").contextWrite(ClientMetrics.operation("get")))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(executeRequestService.getJson(url + "(2)", "token").contextWrite(ClientMetrics.operation("create")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        RecordedRequest lean = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(lean.getHeader(HttpHeaders.ACCEPT)).isEqualTo("application/json;odata.metadata=none");
+        assertThat(lean.getHeader(HttpHeaders.ACCEPT_ENCODING)).isEqualTo("gzip");
+        assertThat(lean.getHeaders().values("Prefer")).isEmpty();
+
+        RecordedRequest formatted = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(formatted.getHeader(HttpHeaders.ACCEPT)).isEqualTo("application/json;odata.metadata=minimal");
+        assertThat(formatted.getHeaders().values("Prefer"))
+                .containsExactly("odata.include-annotations=\"OData.Community.Display.V1.FormattedValue\"");
+
+        RecordedRequest fallback = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(fallback.getHeader(HttpHeaders.ACCEPT)).isEqualTo("application/json;odata.metadata=minimal");
+    }
+
+    @Test
+    void testChangeTrackingKeepsRepresentation() throws Exception {
+        properties.setProfile("lean");
+        mockWebServer.enqueue(json("{\"value\":[],\"@odata.deltaLink\":\"delta\"}"));
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(executeRequestService.getChangePages(url, "token", 10))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        RecordedRequest request = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(request.getHeader(HttpHeaders.ACCEPT)).isNotEqualTo("application/json;odata.metadata=none");
+    }
+
+    @Test
+    void testLargeRequestBodyIsCompressed() throws Exception {
+        properties.setRequestCompression(true);
+        properties.setRequestCompressionThreshold(DataSize.ofBytes(1024));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+        String description = "x".repeat(4096);
+
+        StepVerifier.create(executeRequestService.postJson(url, "token", Map.of(), Map.of("description", description))
+                        .contextWrite(ClientMetrics.operation("create")))
+                .verifyComplete();
+        StepVerifier.create(executeRequestService.postJson(url, "token", Map.of(), Map.of("name", "Contoso"))
+                        .contextWrite(ClientMetrics.operation("create")))
+                .verifyComplete();
+
+        RecordedRequest compressed = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(compressed.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.getBody().readByteArray()))) {
+            assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8)).contains(description);
+        }
+
+        RecordedRequest small = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(small.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(small.getBody().readUtf8()).isEqualTo("{\"name\":\"Contoso\"}");
+
+        var raw = registry.get("dynamics.connector.request.size").tags("operation", "create", "stage", "raw").summary();
+        var sent = registry.get("dynamics.connector.request.size").tags("operation", "create", "stage", "sent").summary();
+        assertThat(raw.count()).isEqualTo(2);
+        assertThat(sent.totalAmount()).isLessThan(raw.totalAmount());
+    }
+}
@@ -0,0 +1,145 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.PollingProperties;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.inbound.CheckpointStore;
+import de.ilume.dynamicsConnector.inbound.ConnectorBeans;
+import de.ilume.dynamicsConnector.inbound.DynamicsPollingConnector;
+import de.ilume.dynamicsConnector.inbound.DynamicsPollingRequest;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import de.ilume.dynamicsConnector.service.ChangeTrackingService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import io.camunda.connector.api.annotation.InboundConnector;
+import io.camunda.connector.api.inbound.Health;
+import io.camunda.connector.api.inbound.InboundConnectorContext;
+import io.camunda.connector.api.inbound.InboundConnectorExecutable;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PollingConnectorTests {
+
+    private static final String TYPE = "io.ilume:dynamics-polling:1";
+
+    private MockWebServer mockWebServer;
+    private GenericApplicationContext applicationContext;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if ("/token".equals(request.getPath())) {
+                    return json("{\"access_token\":\"token\",\"expires_in\":3600}");
+                }
+                return json("{\"value\":[{\"@odata.etag\":\"W/\\\"1\\\"\",\"name\":\"Account 1\",\"accountid\":\"1\"}],"
+                        + "\"@odata.deltaLink\":\"" + mockWebServer.url("/api/data/v9.2/accounts") + "?$deltatoken=1\"}");
+            }
+        });
+        mockWebServer.start();
+
+        WebClient webClient = WebClient.create();
+        applicationContext = new GenericApplicationContext();
+        applicationContext.registerBean(ConnectorBeans.class);
+        applicationContext.registerBean(PollingProperties.class);
+        applicationContext.registerBean(RequestUrls.class, () -> new RequestUrls(new DataverseProperties()));
+        applicationContext.registerBean(CheckpointStore.class, () -> new CheckpointStore((Path) null));
+        applicationContext.registerBean(ChangeTrackingService.class, () -> new ChangeTrackingService(
+                new ExecuteRequestService(webClient), new ResultLimiter(new ObjectMapper(), new ResultProperties())));
+        applicationContext.registerBean(GenerateTokenService.class, () -> new GenerateTokenService(webClient,
+                new TokenCache(new TokenCacheProperties())));
+        applicationContext.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        applicationContext.close();
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testConnectorIsRegisteredForTheServiceLoader() {
+        assertThat(ServiceLoader.load(InboundConnectorExecutable.class).stream().map(ServiceLoader.Provider::type))
+                .contains(DynamicsPollingConnector.class);
+    }
+
+    @Test
+    void testDiscoveredConnectorPollsAndCorrelatesChanges() throws Exception {
+        InboundConnectorExecutable<InboundConnectorContext> connector = discover(TYPE);
+        InboundConnectorContext context = mock(InboundConnectorContext.class);
+        Authentication authentication = new Authentication(mockWebServer.url("/").toString(), "client", "secret",
+                ".default", mockWebServer.url("/token").toString());
+        when(context.bindProperties(DynamicsPollingRequest.class)).thenReturn(new DynamicsPollingRequest(authentication,
+                "accounts", List.of("name"), null, null, null, null, true));
+
+        connector.activate(context);
+        try {
+            verify(context, timeout(5000)).correlateWithResult(argThat(event -> event instanceof Map<?, ?> change
+                    && "changed".equals(change.get("type")) && "1".equals(change.get("id"))));
+            verify(context, timeout(5000)).reportHealth(any(Health.class));
+        } finally {
+            connector.deactivate();
+        }
+    }
+
+    @Test
+    void testConnectorIsNotCreatedWithoutApplicationContext() {
+        applicationContext.close();
+
+        assertThatThrownBy(() -> discover(TYPE))
+                .isInstanceOf(ServiceConfigurationError.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Finds the connector of the type the way the runtime does and creates it through its no-args constructor,
+     * which takes its collaborators from the application context
+     */
+    @SuppressWarnings("unchecked")
+    private static InboundConnectorExecutable<InboundConnectorContext> discover(String type) {
+        return ServiceLoader.load(InboundConnectorExecutable.class).stream()
+                .filter(provider -> provider.type().isAnnotationPresent(InboundConnector.class)
+                        && type.equals(provider.type().getAnnotation(InboundConnector.class).type()))
+                .map(provider -> (InboundConnectorExecutable<InboundConnectorContext>) provider.get())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body);
+    }
+}
@@ -0,0 +1,103 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.dto.Query;
+import de.ilume.dynamicsConnector.odata.QueryOptions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryOptionsTests {
+
+    @Test
+    void testQueryIsCompiledAndEncoded() {
+        Query query = new Query(
+                List.of(new Query.FilterCondition("name", "contains", "O'Brien & Sons"),
+                        new Query.FilterCondition("revenue", "ge", 1000),
+                        new Query.FilterCondition("_primarycontactid_value", "eq", "f9beedd9-d85a-ef11-bfe2-002248d8793d", "guid"),
+                        new Query.FilterCondition("statecode", "in", List.of(0, 1))),
+                List.of("revenue desc", "name"),
+                10,
+                List.of(new Query.Expand("primarycontactid", List.of("fullname", "emailaddress1"))),
+                null);
+
+        assertThat(QueryOptions.compile(List.of("name", "revenue"), query)).isEqualTo(
+                "$select=name,revenue"
+                        + "&$filter=contains(name,'O''Brien%20%26%20Sons')%20and%20revenue%20ge%201000"
+                        + "%20and%20_primarycontactid_value%20eq%20f9beedd9-d85a-ef11-bfe2-002248d8793d"
+                        + "%20and%20(statecode%20eq%200%20or%20statecode%20eq%201)"
+                        + "&$orderby=revenue%20desc,name"
+                        + "&$top=10"
+                        + "&$expand=primarycontactid($select%3Dfullname,emailaddress1)");
+    }
+
+    @Test
+    void testValuesAreFormattedByTheirType() {
+        Query query = new Query(
+                List.of(new Query.FilterCondition("createdon", "ge", "2024-01-01T00:00:00Z", "dateTime"),
+                        new Query.FilterCondition("birthdate", "lt", LocalDate.of(2000, 1, 31)),
+                        new Query.FilterCondition("modifiedon", "lt", OffsetDateTime.of(2024, 2, 1, 12, 0, 0, 0, ZoneOffset.UTC)),
+                        new Query.FilterCondition("anniversary", "eq", "2024-05-01", "date"),
+                        new Query.FilterCondition("accountid", "in", List.of("f9beedd9-d85a-ef11-bfe2-002248d8793d"), "guid")),
+                null, null, null, null);
+
+        assertThat(QueryOptions.compile(null, query)).isEqualTo(
+                "$filter=createdon%20ge%202024-01-01T00:00:00Z"
+                        + "%20and%20birthdate%20lt%202000-01-31"
+                        + "%20and%20modifiedon%20lt%202024-02-01T12:00:00Z"
+                        + "%20and%20anniversary%20eq%202024-05-01"
+                        + "%20and%20(accountid%20eq%20f9beedd9-d85a-ef11-bfe2-002248d8793d)");
+    }
+
+    @Test
+    void testTextLookingLikeAGuidIsComparedAsString() {
+        Query query = new Query(
+                List.of(new Query.FilterCondition("accountnumber", "eq", "f9beedd9-d85a-ef11-bfe2-002248d8793d")),
+                null, null, null, null);
+
+        assertThat(QueryOptions.compile(null, query))
+                .isEqualTo("$filter=accountnumber%20eq%20'f9beedd9-d85a-ef11-bfe2-002248d8793d'");
+    }
+
+    @Test
+    void testValuesNotMatchingTheirTypeAreRejected() {
+        assertThatThrownBy(() -> QueryOptions.compile(null, new Query(
+                List.of(new Query.FilterCondition("accountid", "eq", "1 or 1 eq 1", "guid")), null, null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QueryOptions.compile(null, new Query(
+                List.of(new Query.FilterCondition("createdon", "ge", "yesterday", "dateTime")), null, null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QueryOptions.compile(null, new Query(
+                List.of(new Query.FilterCondition("createdon", "ge", "2024-01-01", "timestamp")), null, null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testFilterBecomesPartOfAggregation() {
+        Query query = new Query(
+                List.of(new Query.FilterCondition("statecode", "eq", 0)),
+                null, null, null,
+                new Query.Aggregation(List.of("address1_city"), List.of(
+                        new Query.Aggregate("revenue", "sum", "total"),
+                        new Query.Aggregate(null, "count", "accounts"))));
+
+        assertThat(QueryOptions.compile(null, query)).isEqualTo(
+                "$apply=filter(statecode%20eq%200)/groupby((address1_city),aggregate(revenue%20with%20sum%20as%20total,$count%20as%20accounts))");
+    }
+
+    @Test
+    void testInvalidNamesAreRejected() {
+        assertThatThrownBy(() -> QueryOptions.compile(List.of("name&$top=1"), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QueryOptions.compile(null, new Query(
+                List.of(new Query.FilterCondition("name", "eq) or (1", "x")), null, null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QueryOptions.compile(null, new Query(null, List.of("name; drop"), null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,110 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.CoalescingProperties;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.RequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCoalescerTests {
+
+    private static final String ACCOUNT = "{\"name\":\"MS Account Info\",\"accountid\":\"f9beedd9-d85a-ef11-bfe2-002248d8793d\"}";
+
+    private MockWebServer mockWebServer;
+    private SimpleMeterRegistry registry;
+    private RequestCoalescer requestCoalescer;
+    private ExecuteRequestService executeRequestService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        registry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(new CoalescingProperties(), registry);
+        executeRequestService = new ExecuteRequestService(WebClient.create(), requestCoalescer);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testConcurrentIdenticalReadsShareOneRequest() {
+        enqueue(ACCOUNT);
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(Flux.range(0, 10).flatMap(i -> executeRequestService.getJson(url, "token")))
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        assertThat(registry.get("dynamics.connector.reads").tag("coalesced", "true").counter().count()).isEqualTo(9);
+        assertThat(registry.get("dynamics.connector.reads").tag("coalesced", "false").counter().count()).isEqualTo(1);
+        assertThat(requestCoalescer.inFlight()).isZero();
+    }
+
+    @Test
+    void testReadsOfDifferentTokensAreNotShared() {
+        enqueue(ACCOUNT);
+        enqueue(ACCOUNT);
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(Flux.merge(executeRequestService.getJson(url, "token-a"), executeRequestService.getJson(url, "token-b")))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testCompletedReadIsNotReused() {
+        enqueue(ACCOUNT);
+        enqueue("{\"name\":\"Updated\"}");
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(executeRequestService.getJson(url, "token")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(executeRequestService.getJson(url, "token"))
+                .assertNext(result -> assertThat(result).isEqualTo(Map.of("name", "Updated")))
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailureIsSharedAndNotKept() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404).setBody("not found").setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        enqueue(ACCOUNT);
+        String url = mockWebServer.url("/api/data/v9.2/accounts").toString();
+
+        StepVerifier.create(Flux.range(0, 3).flatMap(i -> executeRequestService.getJson(url, "token").onErrorReturn(Map.of())))
+                .expectNext(Map.of(), Map.of(), Map.of())
+                .verifyComplete();
+        StepVerifier.create(executeRequestService.getJson(url, "token")).expectNextCount(1).verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    private void enqueue(String body) {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setHeadersDelay(200, TimeUnit.MILLISECONDS)
+                .setBody(body));
+    }
+}
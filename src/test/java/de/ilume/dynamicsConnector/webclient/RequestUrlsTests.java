@@ -0,0 +1,83 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.DataverseProperties;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.odata.ODataLiteral;
+import de.ilume.dynamicsConnector.odata.RequestUrls;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestUrlsTests {
+
+    private final RequestUrls requestUrls = new RequestUrls(new DataverseProperties());
+
+    @Test
+    void testEntitySetUrlsAreBuiltFromBaseUrl() {
+        EntitySetUrl contacts = requestUrls.entitySet("https://org.crm4.dynamics.com/.", "contacts");
+
+        assertThat(contacts.serviceUrl()).isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2");
+        assertThat(contacts.collection()).isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/contacts");
+        assertThat(contacts.entry("f9beedd9-d85a-ef11-bfe2-002248d8793d"))
+                .isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/contacts(f9beedd9-d85a-ef11-bfe2-002248d8793d)");
+        assertThat(contacts.entry("f9beedd9-d85a-ef11-bfe2-002248d8793d", List.of("fullname", "emailaddress1")))
+                .isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/contacts(f9beedd9-d85a-ef11-bfe2-002248d8793d)?$select=fullname,emailaddress1");
+        assertThat(contacts.entry("", List.of("fullname")))
+                .isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/contacts?$select=fullname");
+        assertThat(contacts.batch()).isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/$batch");
+    }
+
+    @Test
+    void testAlternateKeysAreEncoded() {
+        EntitySetUrl accounts = requestUrls.entitySet("https://org.crm4.dynamics.com/", "accounts");
+
+        assertThat(accounts.entry("accountnumber='A-1',name='O''Brien & Sons?'"))
+                .isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/accounts(accountnumber='A-1',name='O''Brien%20%26%20Sons%3F')");
+        assertThat(accounts.entry("sequence=42,_parentaccountid_value=f9beedd9-d85a-ef11-bfe2-002248d8793d"))
+                .isEqualTo("https://org.crm4.dynamics.com/api/data/v9.2/accounts(sequence=42,_parentaccountid_value=f9beedd9-d85a-ef11-bfe2-002248d8793d)");
+    }
+
+    @Test
+    void testInvalidEntryIdsAreRejected() {
+        EntitySetUrl accounts = requestUrls.entitySet("https://org.crm4.dynamics.com/", "accounts");
+
+        assertThatThrownBy(() -> accounts.entry("f9beedd9-d85a-ef11-bfe2-002248d8793d)/primarycontactid/$ref"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> accounts.entry("1?$top=1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> accounts.entry("accountnumber='A-1')/primarycontactid('x"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> accounts.entry("accountnumber='A-1',"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ODataLiteral.key(""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testEntitySetUrlsAreCachedPerEnvironment() {
+        assertThat(requestUrls.entitySet("https://org.crm4.dynamics.com/", "accounts"))
+                .isSameAs(requestUrls.entitySet("https://org.crm4.dynamics.com/", "accounts"));
+        assertThat(requestUrls.entitySet("https://other.crm4.dynamics.com/", "accounts").collection())
+                .isEqualTo("https://other.crm4.dynamics.com/api/data/v9.2/accounts");
+    }
+
+    @Test
+    void testApiVersionIsConfigurable() {
+        DataverseProperties properties = new DataverseProperties();
+        properties.setApiVersion("v9.1");
+
+        assertThat(new RequestUrls(properties).entitySet("https://org.crm4.dynamics.com", "accounts").collection())
+                .isEqualTo("https://org.crm4.dynamics.com/api/data/v9.1/accounts");
+    }
+
+    @Test
+    void testInvalidEntitySetIsRejected() {
+        assertThatThrownBy(() -> requestUrls.entitySet("https://org.crm4.dynamics.com/", "accounts?$top=1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> requestUrls.entitySet("", "accounts"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,141 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.ResultProperties;
+import de.ilume.dynamicsConnector.dto.Projection;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.exception.PayloadTooLargeException;
+import de.ilume.dynamicsConnector.service.ResultLimiter;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultLimiterTests {
+
+    private final ResultLimiter resultLimiter = new ResultLimiter(new ObjectMapper(), new ResultProperties());
+
+    @Test
+    void testProjectionKeepsFieldsAndStripsAnnotations() {
+        Map<String, Object> result = Map.of(
+                "@odata.context", "https://org.crm4.dynamics.com/api/data/v9.2/$metadata#accounts",
+                "@odata.nextLink", "https://org.crm4.dynamics.com/api/data/v9.2/accounts?$skiptoken=1",
+                "value", List.of(account(0)));
+
+        StepVerifier.create(resultLimiter.limit(result,
+                        new Projection(List.of("name", "primarycontactid.fullname"), true, null, null), true))
+                .assertNext(projected -> {
+                    assertThat(projected).containsOnlyKeys("value", "@odata.nextLink");
+                    assertThat((List<?>) projected.get("value")).containsExactly(Map.of(
+                            "name", "Account 0",
+                            "primarycontactid", Map.of("fullname", "Contact 0")));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testSingleRecordIsProjected() {
+        StepVerifier.create(resultLimiter.limit(account(1), new Projection(List.of("accountid"), false, null, null), true))
+                .assertNext(projected -> assertThat(projected).containsOnlyKeys("accountid"))
+                .verifyComplete();
+    }
+
+    @Test
+    void testResultWithoutRecordsIsNotProjected() {
+        Map<String, Object> result = Map.of("succeeded", 2, "failed", 0);
+
+        StepVerifier.create(resultLimiter.limit(result, new Projection(List.of("name"), true, null, null), false))
+                .assertNext(projected -> assertThat(projected).isEqualTo(result))
+                .verifyComplete();
+    }
+
+    @Test
+    void testOversizeResultFailsTheJob() {
+        Map<String, Object> result = Map.of("value", accounts(100));
+
+        StepVerifier.create(resultLimiter.limit(result, new Projection(null, null, 1000, null), true))
+                .expectError(PayloadTooLargeException.class)
+                .verify();
+    }
+
+    @Test
+    void testOversizeResultIsTruncated() throws Exception {
+        Map<String, Object> result = Map.of("value", accounts(100));
+
+        StepVerifier.create(resultLimiter.limit(result, new Projection(null, null, 1000, "truncate"), true))
+                .assertNext(truncated -> {
+                    assertThat(truncated).containsEntry("truncated", true);
+                    assertThat((List<?>) truncated.get("value")).hasSize((Integer) truncated.get("count"));
+                    assertThat((Integer) truncated.get("count")).isBetween(1, 99);
+                    try {
+                        assertThat(new ObjectMapper().writeValueAsBytes(truncated).length).isLessThanOrEqualTo(1000);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testInvalidPathIsRejected() {
+        StepVerifier.create(resultLimiter.limit(account(0), new Projection(List.of("primarycontactid..fullname"), false, null, null), true))
+                .expectError(BadRequestException.class)
+                .verify();
+    }
+
+    @Test
+    void testCollectStopsReadingOnceTheLimitIsReached() {
+        AtomicInteger read = new AtomicInteger();
+        Flux<Map<String, Object>> records = Flux.range(0, 10_000)
+                .map(ResultLimiterTests::account)
+                .doOnNext(record -> read.incrementAndGet());
+
+        StepVerifier.create(resultLimiter.collect(records, new Projection(List.of("name"), false, 2000, "truncate"), null))
+                .assertNext(result -> {
+                    assertThat(result).containsEntry("truncated", true);
+                    assertThat((List<?>) result.get("value")).hasSize((Integer) result.get("count"));
+                })
+                .verifyComplete();
+        assertThat(read.get()).isLessThan(200);
+    }
+
+    @Test
+    void testCollectFailsOnceTheLimitIsReached() {
+        StepVerifier.create(resultLimiter.collect(Flux.fromIterable(accounts(100)), new Projection(null, null, 1000, "fail"), null))
+                .expectError(PayloadTooLargeException.class)
+                .verify();
+    }
+
+    @Test
+    void testCollectHonorsMaximumRecords() {
+        StepVerifier.create(resultLimiter.collect(Flux.fromIterable(accounts(10)), null, 5))
+                .assertNext(result -> {
+                    assertThat(result).containsEntry("count", 5).containsEntry("truncated", true);
+                    assertThat((List<?>) result.get("value")).hasSize(5);
+                })
+                .verifyComplete();
+    }
+
+    private static List<Map<String, Object>> accounts(int count) {
+        List<Map<String, Object>> accounts = new ArrayList<>();
+        IntStream.range(0, count).forEach(i -> accounts.add(account(i)));
+        return accounts;
+    }
+
+    private static Map<String, Object> account(int i) {
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("@odata.etag", "W/\"" + (7651045 + i) + "\"");
+        account.put("name", "Account " + i);
+        account.put("accountid", "f9beedd9-d85a-ef11-bfe2-" + String.format("%012d", i));
+        account.put("primarycontactid", Map.of("fullname", "Contact " + i, "contactid", "c" + i));
+        return account;
+    }
+}
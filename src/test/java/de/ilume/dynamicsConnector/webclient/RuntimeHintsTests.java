@@ -0,0 +1,72 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.DynamicsConnectorFunction;
+import de.ilume.dynamicsConnector.aot.ConnectorRuntimeHints;
+import de.ilume.dynamicsConnector.dto.Authentication;
+import de.ilume.dynamicsConnector.dto.DynamicsConnectorRequest;
+import de.ilume.dynamicsConnector.dto.Paging;
+import de.ilume.dynamicsConnector.dto.ValuePage;
+import de.ilume.dynamicsConnector.inbound.DynamicsPollingConnector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.ResourcePatternHint;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuntimeHintsTests {
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    void setUp() {
+        hints = new RuntimeHints();
+        new ConnectorRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testHintsAreRegisteredThroughAotFactories() {
+        assertThat(SpringFactoriesLoader.forResourceLocation("META-INF/spring/aot.factories")
+                .load(RuntimeHintsRegistrar.class))
+                .hasAtLeastOneElementOfType(ConnectorRuntimeHints.class);
+    }
+
+    @Test
+    void testRequestIsBoundThroughReflection() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection().onType(DynamicsConnectorRequest.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(DynamicsConnectorRequest.class.getMethod("authentication"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Authentication.class.getMethod("base"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Paging.class.getMethod("pageSize"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(ValuePage.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+    }
+
+    @Test
+    void testConnectorIsDiscoveredAndInstantiated() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(DynamicsConnectorFunction.class.getDeclaredConstructor()).invoke())
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(DynamicsPollingConnector.class.getDeclaredConstructor()).invoke())
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource()
+                .forResource("META-INF/services/io.camunda.connector.api.outbound.OutboundConnectorFunction"))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource()
+                .forResource("META-INF/services/io.camunda.connector.api.inbound.InboundConnectorExecutable"))
+                .accepts(hints);
+    }
+
+    @Test
+    void testRegisteredResourcesExist() {
+        assertThat(hints.resources().resourcePatternHints()
+                .flatMap(patterns -> patterns.getIncludes().stream())
+                .map(ResourcePatternHint::getPattern))
+                .isNotEmpty()
+                .allSatisfy(pattern -> assertThat(getClass().getClassLoader().getResource(pattern))
+                        .as("resource %s", pattern)
+                        .isNotNull());
+    }
+}
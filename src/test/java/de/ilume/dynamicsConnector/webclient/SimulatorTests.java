@@ -0,0 +1,155 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.ThrottlingProperties;
+import de.ilume.dynamicsConnector.TokenCacheProperties;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.GenerateTokenService;
+import de.ilume.dynamicsConnector.service.TokenCache;
+import de.ilume.dynamicsConnector.simulator.DataverseSimulator;
+import de.ilume.dynamicsConnector.simulator.Latency;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimulatorTests {
+
+    private DataverseSimulator simulator;
+    private ExecuteRequestService executeRequestService;
+    private GenerateTokenService generateTokenService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        simulator = new DataverseSimulator().start();
+
+        ThrottlingProperties throttling = new ThrottlingProperties();
+        throttling.setInitialBackoff(Duration.ofMillis(10));
+        WebClient webClient = WebClient.builder()
+                .filter(new ThrottlingFilter(throttling))
+                .build();
+        executeRequestService = new ExecuteRequestService(webClient);
+        generateTokenService = new GenerateTokenService(webClient, new TokenCache(new TokenCacheProperties()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        simulator.close();
+    }
+
+    private Mono<String> token() {
+        return generateTokenService.getToken(simulator.baseUrl(), "client", "secret", ".default", simulator.tokenUrl());
+    }
+
+    @Test
+    void testCollectionIsPagedThroughNextLink() {
+        simulator.records(250);
+
+        StepVerifier.create(token().flatMapMany(token ->
+                        executeRequestService.getPages(simulator.serviceUrl() + "/accounts", token, 100)))
+                .assertNext(page -> {
+                    assertThat(page.records()).hasSize(100);
+                    assertThat(page.records().get(0).get("accountid")).isEqualTo(DataverseSimulator.id(0));
+                })
+                .assertNext(page -> assertThat(page.records()).hasSize(100))
+                .assertNext(page -> {
+                    assertThat(page.records()).hasSize(50);
+                    assertThat(page.records().get(49).get("accountid")).isEqualTo(DataverseSimulator.id(249));
+                    assertThat(page.nextLink()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testThrottledRequestsAreRetriedAfterRetryAfter() {
+        simulator.requestsPerSecond(5);
+
+        StepVerifier.create(token().flatMapMany(token -> Flux.range(0, 10)
+                        .flatMap(i -> executeRequestService.getJson(simulator.serviceUrl() + "/accounts(" + DataverseSimulator.id(i) + ")", token))))
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertThat(simulator.throttled()).isPositive();
+    }
+
+    @Test
+    void testTokensAreRefreshedBeforeTheyExpire() {
+        simulator.tokenLifetime(Duration.ofSeconds(2));
+
+        StepVerifier.create(Flux.range(0, 6)
+                        .concatMap(i -> Mono.delay(Duration.ofMillis(500))
+                                .then(token())
+                                .flatMap(token -> executeRequestService.getJson(simulator.serviceUrl() + "/accounts(" + DataverseSimulator.id(i) + ")", token))))
+                .expectNextCount(6)
+                .verifyComplete();
+
+        assertThat(simulator.tokensIssued()).isGreaterThanOrEqualTo(2);
+        assertThat(simulator.rejected()).isZero();
+    }
+
+    @Test
+    void testExpiredTokenIsRejected() {
+        simulator.tokenLifetime(Duration.ofSeconds(1));
+        String token = token().block();
+
+        StepVerifier.create(Mono.delay(Duration.ofMillis(1100))
+                        .then(executeRequestService.getJson(simulator.serviceUrl() + "/accounts", token)))
+                .expectErrorMatches(throwable -> throwable.getMessage().contains("expired"))
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(simulator.rejected()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchIsAnsweredPerOperation() {
+        BatchService batchService = new BatchService(executeRequestService, new ObjectMapper());
+        List<BatchOperation> operations = List.of(
+                new BatchOperation("createEntry", null, Map.of("name", "Created Account"), "accounts"),
+                new BatchOperation("updateEntry", DataverseSimulator.id(0), Map.of("name", "Updated Account"), "accounts"),
+                new BatchOperation("getEntry", DataverseSimulator.id(1), null, null),
+                new BatchOperation("deleteEntry", DataverseSimulator.id(1000), null, null));
+
+        StepVerifier.create(token().flatMap(token -> batchService.execute(simulator.serviceUrl(), "accounts", token, operations)))
+                .assertNext(result -> {
+                    assertThat(result).containsEntry("succeeded", 3).containsEntry("failed", 1);
+                    List<Map<String, Object>> responses = (List<Map<String, Object>>) result.get("responses");
+                    assertThat(responses.get(0)).containsEntry("status", 201).containsKey("id");
+                    assertThat((Map<String, Object>) responses.get(1).get("body")).containsEntry("name", "Updated Account");
+                    assertThat((Map<String, Object>) responses.get(2).get("body")).containsEntry("accountid", DataverseSimulator.id(1));
+                    assertThat(responses.get(3)).containsEntry("status", 404);
+                })
+                .verifyComplete();
+
+        assertThat(simulator.batches()).isEqualTo(1);
+    }
+
+    @Test
+    void testLogNormalLatencyMatchesMedianAndP99() {
+        Latency latency = Latency.logNormal(Duration.ofMillis(100), Duration.ofMillis(400));
+        Random random = new Random(42);
+        List<Long> samples = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            samples.add(latency.next(random).toMillis());
+        }
+        samples.sort(null);
+
+        assertThat(samples.get(10_000)).isBetween(90L, 110L);
+        assertThat(samples.get(19_800)).isBetween(340L, 460L);
+    }
+}
@@ -0,0 +1,100 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import de.ilume.dynamicsConnector.ThrottlingProperties;
+import de.ilume.dynamicsConnector.exception.TooManyRequestsException;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.throttling.AdaptiveTokenBucket;
+import de.ilume.dynamicsConnector.throttling.ThrottlingFilter;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThrottlingTests {
+
+    private MockWebServer mockWebServer;
+    private ThrottlingProperties properties;
+    private ExecuteRequestService executeRequestService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        properties = new ThrottlingProperties();
+        properties.setInitialBackoff(Duration.ofMillis(10));
+        properties.setMaxRetries(2);
+        executeRequestService = new ExecuteRequestService(WebClient.builder()
+                .filter(new ThrottlingFilter(properties))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testThrottledRequestIsRetriedAfterRetryAfter() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(429)
+                .setHeader(HttpHeaders.RETRY_AFTER, "1")
+                .setBody("{\"error\":{\"code\":\"0x80072322\",\"message\":\"Number of requests exceeded the limit\"}}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"value\":[]}"));
+
+        long start = System.nanoTime();
+        StepVerifier.create(executeRequestService.getJson(mockWebServer.url("/api/data/v9.2/accounts").toString(), "token"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testThrottledRequestFailsAfterMaxRetries() {
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                    .setResponseCode(429)
+                    .setBody("{\"error\":{\"code\":\"0x80072322\",\"message\":\"Number of requests exceeded the limit\"}}"));
+        }
+
+        StepVerifier.create(executeRequestService.getJson(mockWebServer.url("/api/data/v9.2/accounts").toString(), "token"))
+                .expectError(TooManyRequestsException.class)
+                .verify(Duration.ofSeconds(10));
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testBucketPacesAndBacksOff() {
+        AtomicLong now = new AtomicLong();
+        AdaptiveTokenBucket bucket = new AdaptiveTokenBucket(2, 0.5, 2, now::get);
+
+        // the burst is handed out at once, then one token every 500 ms
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isEqualTo(Duration.ofMillis(500));
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        bucket.onThrottled(Duration.ofSeconds(5));
+        assertThat(bucket.rate()).isEqualTo(1.0);
+        assertThat(bucket.reserve()).isEqualTo(Duration.ofSeconds(6));
+
+        bucket.onSuccess(-1);
+        assertThat(bucket.rate()).isGreaterThan(1.0);
+    }
+}
@@ -0,0 +1,197 @@
+package de.ilume.dynamicsConnector.webclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ilume.dynamicsConnector.ThrottlingProperties;
+import de.ilume.dynamicsConnector.WriteBatchingProperties;
+import de.ilume.dynamicsConnector.dto.BatchOperation;
+import de.ilume.dynamicsConnector.exception.BadRequestException;
+import de.ilume.dynamicsConnector.exception.NotFoundException;
+import de.ilume.dynamicsConnector.exception.TooManyRequestsException;
+import de.ilume.dynamicsConnector.odata.EntitySetUrl;
+import de.ilume.dynamicsConnector.service.BatchService;
+import de.ilume.dynamicsConnector.service.ExecuteRequestService;
+import de.ilume.dynamicsConnector.service.WriteAggregator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteAggregatorTests {
+
+    private MockWebServer mockWebServer;
+    private EntitySetUrl accounts;
+    private WriteBatchingProperties properties;
+    private SimpleMeterRegistry registry;
+    private WriteAggregator writeAggregator;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        accounts = new EntitySetUrl(mockWebServer.url("/api/data/v9.2").toString(), "accounts");
+        properties = new WriteBatchingProperties();
+        properties.setEnabled(true);
+        registry = new SimpleMeterRegistry();
+        ThrottlingProperties throttlingProperties = new ThrottlingProperties();
+        throttlingProperties.setInitialBackoff(Duration.ofMillis(10));
+        writeAggregator = new WriteAggregator(
+                new BatchService(new ExecuteRequestService(WebClient.builder().build()), new ObjectMapper()),
+                new ObjectMapper(), properties, throttlingProperties, registry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private static String part(int contentId, String status, String body) {
+        return "--batchresponse_1\r\n" +
+                "Content-Type: application/http\r\n" +
+                "Content-Transfer-Encoding: binary\r\n" +
+                "Content-ID: " + contentId + "\r\n" +
+                "\r\n" +
+                "HTTP/1.1 " + status + "\r\n" +
+                "Content-Type: application/json; odata.metadata=minimal\r\n" +
+                "\r\n" +
+                body + "\r\n";
+    }
+
+    private static String throttledPart(int contentId) {
+        return "--batchresponse_1\r\n" +
+                "Content-Type: application/http\r\n" +
+                "Content-Transfer-Encoding: binary\r\n" +
+                "Content-ID: " + contentId + "\r\n" +
+                "\r\n" +
+                "HTTP/1.1 429 Too Many Requests\r\n" +
+                "Content-Type: application/json; odata.metadata=minimal\r\n" +
+                "Retry-After: 0\r\n" +
+                "\r\n" +
+                "{\"error\":{\"code\":\"0x80072322\",\"message\":\"Number of requests exceeded the limit\"}}\r\n";
+    }
+
+    private void enqueueBatchResponse(String... parts) {
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("Content-Type", "multipart/mixed; boundary=batchresponse_1")
+                .setBody(String.join("", parts) + "--batchresponse_1--\r\n"));
+    }
+
+    @Test
+    void testConcurrentWritesShareOneBatch() throws Exception {
+        properties.setWindow(Duration.ofMillis(200));
+        enqueueBatchResponse(
+                part(1, "201 Created", "{\"name\":\"Contoso\"}"),
+                part(2, "404 Not Found", "{\"error\":{\"code\":\"0x80040217\",\"message\":\"account Does Not Exist\"}}"));
+
+        Mono<Map<String, Object>> created = writeAggregator.submit("client", accounts, "token",
+                new BatchOperation("createEntry", null, Map.of("name", "Contoso"), null));
+        Mono<Throwable> failed = writeAggregator.submit("client", accounts, "token",
+                        new BatchOperation("updateEntry", "00000000-0000-0000-0000-000000000002", Map.of("name", "Fabrikam"), null))
+                .flatMap(result -> Mono.<Throwable>empty())
+                .onErrorResume(Mono::just);
+
+        StepVerifier.create(Mono.zip(created, failed))
+                .assertNext(results -> {
+                    assertThat(results.getT1()).containsEntry("name", "Contoso");
+                    assertThat(results.getT2()).isInstanceOf(NotFoundException.class)
+                            .hasMessageContaining("account Does Not Exist");
+                })
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        RecordedRequest request = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(request.getPath()).isEqualTo("/api/data/v9.2/$batch");
+        String body = request.getBody().readUtf8();
+        assertThat(body).contains("POST " + accounts.collection() + " HTTP/1.1")
+                .contains("PATCH " + accounts.entry("00000000-0000-0000-0000-000000000002") + " HTTP/1.1");
+        assertThat(registry.get("dynamics.connector.write.batch.size").summary().max()).isEqualTo(2);
+    }
+
+    @Test
+    void testFullBatchIsSentBeforeWindowCloses() {
+        properties.setWindow(Duration.ofMinutes(1));
+        properties.setMaxSize(2);
+        enqueueBatchResponse(
+                part(1, "201 Created", "{\"name\":\"Contoso\"}"),
+                part(2, "201 Created", "{\"name\":\"Fabrikam\"}"));
+
+        StepVerifier.create(Mono.zip(
+                        writeAggregator.submit("client", accounts, "token",
+                                new BatchOperation("createEntry", null, Map.of("name", "Contoso"), null)),
+                        writeAggregator.submit("client", accounts, "token",
+                                new BatchOperation("createEntry", null, Map.of("name", "Fabrikam"), null))))
+                .assertNext(results -> {
+                    assertThat(results.getT1()).containsEntry("name", "Contoso");
+                    assertThat(results.getT2()).containsEntry("name", "Fabrikam");
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testThrottledWritesAreSentAgain() throws Exception {
+        properties.setWindow(Duration.ofMillis(200));
+        enqueueBatchResponse(
+                part(1, "200 OK", "{\"name\":\"Contoso\"}"),
+                throttledPart(2));
+        enqueueBatchResponse(
+                part(1, "200 OK", "{\"name\":\"Fabrikam\"}"));
+
+        StepVerifier.create(Mono.zip(
+                        writeAggregator.submit("client", accounts, "token",
+                                new BatchOperation("createEntry", null, Map.of("name", "Contoso"), null)),
+                        writeAggregator.submit("client", accounts, "token",
+                                new BatchOperation("createEntry", null, Map.of("name", "Fabrikam"), null))))
+                .assertNext(results -> {
+                    assertThat(results.getT1()).containsEntry("name", "Contoso");
+                    assertThat(results.getT2()).containsEntry("name", "Fabrikam");
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        String retried = mockWebServer.takeRequest(1, TimeUnit.SECONDS).getBody().readUtf8();
+        assertThat(retried).contains("Fabrikam").doesNotContain("Contoso");
+    }
+
+    @Test
+    void testWriteThrottledBeyondTheRetriesFails() {
+        properties.setWindow(Duration.ofMillis(10));
+        for (int attempt = 0; attempt <= 3; attempt++) {
+            enqueueBatchResponse(throttledPart(1));
+        }
+
+        StepVerifier.create(writeAggregator.submit("client", accounts, "token",
+                        new BatchOperation("createEntry", null, Map.of("name", "Contoso"), null)))
+                .expectError(TooManyRequestsException.class)
+                .verify(Duration.ofSeconds(5));
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(4);
+    }
+
+    @Test
+    void testUpdateWithoutIdIsRejected() {
+        StepVerifier.create(writeAggregator.submit("client", accounts, "token",
+                        new BatchOperation("updateEntry", null, Map.of("name", "Contoso"), null)))
+                .expectError(BadRequestException.class)
+                .verify();
+        StepVerifier.create(writeAggregator.submit("client", accounts, "token",
+                        new BatchOperation("updateEntry", "1)/primarycontactid/$ref", Map.of("name", "Contoso"), null)))
+                .expectError(BadRequestException.class)
+                .verify();
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+}